@@ -0,0 +1,362 @@
+package wargame;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Mesures JMH des méthodes les plus sollicitées de la carte et du moteur (voir bench/pom.xml).
+ * Les parties mesurées sont générées à partir d'une graine fixe, afin que les mesures soient comparables d'une version à l'autre.
+ * Les mesures sur la Carte (affichage, sauvegarde, chargement) nécessitent les ressources du jeu : sans elles, leur préparation échoue
+ * et JMH les signale en erreur, les autres mesures continuant.
+ * Les octets alloués par opération s'obtiennent avec le profileur gc de JMH (-prof gc).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BancCarte
+{
+	/** Graine des parties mesurées. */
+	private static final long GRAINE = 42;
+
+	/** Nombre de requêtes pré-calculées (puissance de 2). */
+	private static final int NB_REQUETES = 1024;
+
+	/** Écart maximal entre les deux cases d'une requête de ligne de vue. */
+	private static final int ECART_MAX = 8;
+
+	/** Nombre de parties jouées par appel de joueMonstres. */
+	private static final int NB_PARTIES = 64;
+
+	/** Moteur d'une partie fraîchement générée. */
+	private Moteur moteur;
+
+	/** Cases de départ et d'arrivée des requêtes. */
+	private int[] depart = new int[NB_REQUETES];
+	private int[] arrivee = new int[NB_REQUETES];
+
+	/** Unités utilisées par les requêtes. */
+	private Unite[] unites = new Unite[NB_REQUETES];
+
+	/** Lignes du champ de vision calculé par calculeOmbres. */
+	private long[] lignes = new long[13];
+
+	/**
+	 * Génère la partie mesurée et les requêtes
+	 */
+	@Setup(Level.Trial)
+	public void initialise()
+	{
+		moteur = new Moteur(IConfig.LARGEUR_CARTE, IConfig.HAUTEUR_CARTE, GRAINE);
+		moteur.generer();
+
+		Random hasard = new Random(GRAINE);
+		int largeur = moteur.getLargeur(), hauteur = moteur.getHauteur();
+
+		for(int i = 0; i < NB_REQUETES; i++) {
+			Unite u = (i % 2 == 0) ? moteur.getHeros().get(hasard.nextInt(moteur.getHeros().size()))
+			                       : moteur.getMonstres().get(hasard.nextInt(moteur.getMonstres().size()));
+
+			int x = u.getCase() % largeur + hasard.nextInt(2 * ECART_MAX + 1) - ECART_MAX;
+			int y = u.getCase() / largeur + hasard.nextInt(2 * ECART_MAX + 1) - ECART_MAX;
+
+			unites[i] = u;
+			depart[i] = u.getCase();
+			arrivee[i] = Math.max(0, Math.min(largeur - 1, x)) + largeur * Math.max(0, Math.min(hauteur - 1, y));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NB_REQUETES)
+	public void obstacleEntreCase(Blackhole trou)
+	{
+		for(int i = 0; i < NB_REQUETES; i++)
+			trou.consume(moteur.obstacleEntreCase(depart[i], arrivee[i]));
+	}
+
+	/** Une opération paire déplace le champ de vision d'un héros d'une case, la suivante le ramène : le brouillard est inchangé à la fin de chaque appel */
+	@Benchmark
+	@OperationsPerInvocation(2 * NB_REQUETES)
+	public void changeBrouillard()
+	{
+		for(int i = 0; i < 2 * NB_REQUETES; i++) {
+			Unite h = moteur.getHeros().get((i >> 1) % moteur.getHeros().size());
+			int pas = (h.getCase() % moteur.getLargeur() == 0) ? 1 : -1;
+
+			moteur.getBrouillard().place(h, ((i & 1) == 0) ? h.getCase() + pas : h.getCase());
+		}
+	}
+
+	/** Champ de vision avec ombres, sans le cache, à la portée 6 */
+	@Benchmark
+	@OperationsPerInvocation(NB_REQUETES)
+	public void calculeOmbres(Blackhole trou)
+	{
+		for(int i = 0; i < NB_REQUETES; i++) {
+			moteur.getBrouillard().calculeOmbres(arrivee[i], 6, lignes);
+			trou.consume(lignes[6]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NB_REQUETES)
+	public void herosAlentour(Blackhole trou)
+	{
+		for(int i = 0; i < NB_REQUETES; i++)
+			trou.consume(moteur.herosAlentour(depart[i], unites[i].getPortee()));
+	}
+
+	/** Grande carte peuplée de centaines de héros : le coût doit dépendre des héros proches, pas de leur nombre total */
+	@State(Scope.Benchmark)
+	public static class GrandeCarteHeros
+	{
+		Moteur grande;
+		int[] cases = new int[NB_REQUETES];
+
+		@Setup(Level.Trial)
+		public void preparer()
+		{
+			grande = new Moteur(100, 100, GRAINE);
+			grande.generer();
+
+			Random hasard = new Random(GRAINE);
+			for(int i = 0; i < 400; i++) {
+				int c = hasard.nextInt(100 * 100);
+				if(grande.estLibre(c))
+					grande.ajouteSoldat(ISoldat.HEROS, c);
+			}
+
+			for(int i = 0; i < NB_REQUETES; i++)
+				cases[i] = hasard.nextInt(100 * 100);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NB_REQUETES)
+	public void herosAlentourGrandeCarte(GrandeCarteHeros etat, Blackhole trou)
+	{
+		for(int i = 0; i < NB_REQUETES; i++)
+			trou.consume(etat.grande.herosAlentour(etat.cases[i], 5));
+	}
+
+	/** Chemins entre cases libres tirées au hasard sur une carte de 512 x 512 : chaque requête a une arrivée différente, le cache ne sert pas */
+	@State(Scope.Benchmark)
+	public static class GrandeCarteChemins
+	{
+		Moteur grande;
+		int[] departs = new int[NB_REQUETES];
+		int[] arrivees = new int[NB_REQUETES];
+		int[] etapes = new int[512 * 512];
+
+		@Setup(Level.Trial)
+		public void preparer()
+		{
+			grande = new Moteur(512, 512, GRAINE);
+			grande.generer();
+
+			Random hasard = new Random(GRAINE);
+			for(int i = 0; i < NB_REQUETES; i++) {
+				departs[i] = grande.getHeros().get(hasard.nextInt(grande.getHeros().size())).getCase();
+				do {
+					arrivees[i] = hasard.nextInt(512 * 512);
+				} while(!grande.estLibre(arrivees[i]));
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NB_REQUETES)
+	public void cheminGrandeCarte(GrandeCarteChemins etat, Blackhole trou)
+	{
+		for(int i = 0; i < NB_REQUETES; i++)
+			trou.consume(etat.grande.chemin(etat.departs[i], etat.arrivees[i], etat.etapes));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NB_REQUETES)
+	public void trouvePositionAleatoire(Blackhole trou)
+	{
+		for(int i = 0; i < NB_REQUETES; i++)
+			trou.consume(moteur.trouvePositionAleatoire(unites[i].getCase()));
+	}
+
+	/** Voisines libres d'une case, en un masque : base de la génération des déplacements */
+	@Benchmark
+	@OperationsPerInvocation(NB_REQUETES)
+	public void voisinesLibres(Blackhole trou)
+	{
+		for(int i = 0; i < NB_REQUETES; i++)
+			trou.consume(moteur.voisinesLibres(arrivee[i]));
+	}
+
+	/** Le tour des monstres modifie la partie : chaque partie est rejouée au plus TOURS_PARTIE fois, puis régénérée avant l'appel */
+	@State(Scope.Benchmark)
+	public static class Parties
+	{
+		private static final int TOURS_PARTIE = 50;
+
+		Moteur[] parties = new Moteur[NB_PARTIES];
+		private int[] tours = new int[NB_PARTIES];
+		private long graine = GRAINE;
+
+		@Setup(Level.Invocation)
+		public void preparer()
+		{
+			for(int i = 0; i < parties.length; i++) {
+				if(parties[i] == null || parties[i].estTerminee() || tours[i] >= TOURS_PARTIE) {
+					parties[i] = new Moteur(IConfig.LARGEUR_CARTE, IConfig.HAUTEUR_CARTE, graine++);
+					parties[i].generer();
+					tours[i] = 0;
+				}
+
+				tours[i]++;
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NB_PARTIES)
+	public void joueMonstres(Parties etat, Blackhole trou)
+	{
+		for(int i = 0; i < NB_PARTIES; i++) {
+			etat.parties[i].joueMonstres();
+			trou.consume(etat.parties[i].getNbHerosRestant());
+		}
+	}
+
+	/** Sauvegarde d'une partie en mémoire, sans l'accès au fichier ni la Carte */
+	@State(Scope.Benchmark)
+	public static class Tampon
+	{
+		ByteBuffer tampon;
+
+		@Setup(Level.Trial)
+		public void preparer(BancCarte banc) throws IOException
+		{
+			tampon = ByteBuffer.allocate(Sauvegarde.taille(banc.moteur));
+			Sauvegarde.ecrit(banc.moteur, tampon);
+		}
+	}
+
+	@Benchmark
+	public int ecritSauvegarde(Tampon etat) throws IOException
+	{
+		etat.tampon.clear();
+		Sauvegarde.ecrit(moteur, etat.tampon);
+		return etat.tampon.position();
+	}
+
+	@Benchmark
+	public int litSauvegarde(Tampon etat) throws IOException
+	{
+		etat.tampon.rewind();
+		return Sauvegarde.lit(etat.tampon).getNbHerosRestant();
+	}
+
+	/** Horloge des animations avec 1000 soldats en mouvement : seuls ceux dont le cran est arrivé sont parcourus */
+	@State(Scope.Benchmark)
+	public static class Animations
+	{
+		Horloge horloge;
+		long heure;
+
+		@Setup(Level.Trial)
+		public void preparer()
+		{
+			horloge = new Horloge(16);
+			horloge.avance(heure);
+			for(int i = 0; i < 1000; i++) {
+				Charset c = new Charset() {
+					protected boolean avance() {
+						return true;
+					}
+				};
+				c.setHorloge(horloge);
+				c.anime();
+			}
+		}
+	}
+
+	/** Une image de l'horloge des animations */
+	@Benchmark
+	public void horlogeAnimations(Animations etat)
+	{
+		etat.heure += 16;
+		etat.horloge.avance(etat.heure);
+	}
+
+	/** Carte générée avec un écouteur muet, pour les mesures d'affichage et de sauvegarde : nécessite les ressources du jeu */
+	@State(Scope.Benchmark)
+	public static class EtatCarte
+	{
+		Carte carte;
+		File fichier;
+		BufferedImage image = new BufferedImage(IConfig.LARGEUR_CARTE * IConfig.NB_PIX_CASE, IConfig.HAUTEUR_CARTE * IConfig.NB_PIX_CASE, BufferedImage.TYPE_INT_RGB);
+		Graphics g = image.getGraphics();
+
+		@Setup(Level.Trial)
+		public void preparer() throws Exception
+		{
+			carte = new Carte();
+			carte.onStateRealized(new CarteListener() {
+				public void joueurPerd() {}
+				public void joueurGagne() {}
+				public void deplaceMonstre() {}
+				public void historique(String s) {}
+				public void information(String s) {}
+				public void sauvegardeTerminee(String chemin, boolean reussie) {}
+				public void chargementTermine(String chemin, boolean reussi) {}
+			});
+			carte.generer();
+
+			fichier = File.createTempFile("wargame", ".ser");
+			fichier.deleteOnExit();
+		}
+	}
+
+	@Benchmark
+	public int paintComponent(EtatCarte etat)
+	{
+		etat.carte.paintComponent(etat.g);
+		return etat.image.getRGB(0, 0);
+	}
+
+	/** Sauvegarde complète : jusqu'à l'écriture sur le disque */
+	@Benchmark
+	public long sauvegarde(EtatCarte etat) throws Exception
+	{
+		etat.carte.sauvegarde(etat.fichier.getPath());
+		etat.carte.attendEntreesSorties();
+		return etat.fichier.length();
+	}
+
+	/** Chargement complet : jusqu'au remplacement de la partie */
+	@Benchmark
+	public int charge(EtatCarte etat) throws Exception
+	{
+		etat.carte.charge(etat.fichier.getPath());
+		etat.carte.attendEntreesSorties();
+		return etat.carte.getMoteur().getTour();
+	}
+}
@@ -0,0 +1,351 @@
+package wargame;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.lang.management.ManagementFactory;
+import java.text.AttributedCharacterIterator;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Contrôle que le tour des monstres du moteur et les images de la carte (avanceImage puis paintComponent) n'allouent aucun octet.
+ * Lancé à la phase test du module bench (mvn -B test), sans compilateur (-Xint) : chaque allocation écrite dans le code est comptée,
+ * sans que l'analyse d'échappement ne la masque, et les recompilations du JIT ne faussent pas le compte. Le build échoue si un octet est alloué.
+ *
+ * La carte est dessinée avec un tileset et des images de soldats synthétiques, les ressources du jeu ne sont pas nécessaires.
+ * Les octets alloués par Java2D pendant la copie des images (drawImage), qui ne dépendent pas du jeu, sont retirés du compte.
+ * Les actions qui lancent les animations (déplacement, mort) ne sont pas comptées, ni l'image qui les suit, où la ligne d'effectifs
+ * peut être reconstruite : seules les images d'animation, et les images où rien ne bouge, le sont.
+ * Les images avec des messages de la file d'Infobulle (combats, repos) ne sont pas contrôlées.
+ */
+public class ControleAllocations
+{
+	/** Graine des parties du contrôle du moteur. */
+	private static final long GRAINE = 42;
+
+	/** Nombre de parties jouées avant le contrôle (chargement des classes), puis contrôlées. */
+	private static final int NB_PARTIES_CHAUFFE = 2;
+	private static final int NB_PARTIES = 50;
+
+	/** Nombre de tours joués au plus par partie. */
+	private static final int TOURS_PARTIE = 50;
+
+	/** Nombre de fois où les scènes de la carte sont jouées avant le contrôle, puis contrôlées. */
+	private static final int NB_SCENES_CHAUFFE = 1;
+	private static final int NB_SCENES = 3;
+
+	/** Nombre d'images sans animation contrôlées par scène. */
+	private static final int NB_IMAGES_FIXES = 30;
+
+	/** Compteur d'allocations des fils. */
+	private static final com.sun.management.ThreadMXBean FILS = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Lance les contrôles
+	 * @param args Inutilisés
+	 * @throws Exception Si le contrôle de la carte échoue
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		boolean reussi = controleTourMonstres();
+
+		final boolean[] carte = new boolean[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				try {
+					carte[0] = controleCarte();
+				}
+				catch(Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+
+		if(!reussi || !carte[0]) {
+			System.out.println("Échec : des octets sont alloués");
+			System.exit(1);
+		}
+
+		System.exit(0);
+	}
+
+	/**
+	 * Octets alloués par le fil courant depuis son démarrage
+	 */
+	private static long compteur()
+	{
+		return FILS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Affiche le résultat d'un contrôle
+	 * @return Vrai si aucun octet n'a été alloué
+	 */
+	private static boolean resultat(String nom, long octets, int nb, String unite)
+	{
+		System.out.println(String.format("%-14s %d octets alloués en %d %s", nom, octets, nb, unite));
+		return octets == 0;
+	}
+
+	/**
+	 * Joue des parties sans affichage, en comptant les octets alloués par chaque fin de tour (tour des monstres, repos des héros).
+	 * Les parties sont générées hors du compte.
+	 */
+	private static boolean controleTourMonstres()
+	{
+		long graine = GRAINE;
+		long octets = 0;
+		int nb_tours = 0;
+
+		for(int p = 0; p < NB_PARTIES_CHAUFFE + NB_PARTIES; p++) {
+			Moteur moteur = new Moteur(IConfig.LARGEUR_CARTE, IConfig.HAUTEUR_CARTE, graine++);
+			moteur.generer();
+
+			for(int t = 0; t < TOURS_PARTIE && !moteur.estTerminee(); t++) {
+				long debut = compteur();
+				moteur.finTour();
+				long alloues = compteur() - debut;
+
+				if(p >= NB_PARTIES_CHAUFFE) {
+					octets += alloues;
+					nb_tours++;
+				}
+			}
+		}
+
+		return resultat("tourMonstres", octets, nb_tours, "tours");
+	}
+
+	/**
+	 * Joue des scènes sur une carte générée, en comptant les octets alloués par chaque image (avanceImage puis paintComponent) :
+	 * images fixes, déplacement de héros (et brouillard), mort d'un monstre.
+	 */
+	private static boolean controleCarte() throws Exception
+	{
+		Son.sonBruitageActive = false;
+		Heros.imageHumain = Heros.imageElfe = Heros.imageSoldat = Heros.imageHobbit = imageSoldat(Color.BLUE);
+		Monstre.imageGobelin = Monstre.imageOrc = Monstre.imageSquelette = imageSoldat(Color.RED);
+
+		Carte carte = new Carte(new Tileset(imageTileset()));
+		carte.onStateRealized(new CarteListener() {
+			public void joueurPerd() {}
+			public void joueurGagne() {}
+			public void deplaceMonstre() {}
+			public void historique(String s) {}
+			public void information(String s) {}
+			public void sauvegardeTerminee(String chemin, boolean reussie) {}
+			public void chargementTermine(String chemin, boolean reussi) {}
+		});
+		carte.setBrouillardActive(true);
+
+		int largeur = IConfig.LARGEUR_CARTE * IConfig.NB_PIX_CASE, hauteur = IConfig.HAUTEUR_CARTE * IConfig.NB_PIX_CASE;
+		BufferedImage image = new BufferedImage(largeur, hauteur, BufferedImage.TYPE_INT_RGB);
+		GraphicsCompte g = new GraphicsCompte(image.getGraphics());
+		g.setClip(0, 0, largeur, hauteur);
+
+		long octets = 0;
+		int nb_images = 0;
+
+		for(int s = 0; s < NB_SCENES_CHAUFFE + NB_SCENES; s++) {
+			carte.generer();
+			Moteur moteur = carte.getMoteur();
+			image(carte, g, largeur, hauteur);
+
+			long[] scene = new long[2];
+
+			/* Images fixes */
+			for(int i = 0; i < NB_IMAGES_FIXES; i++)
+				compte(scene, carte, g, largeur, hauteur);
+
+			/* Chaque héros sauf le premier fait un pas, le brouillard change : le tour du joueur continue, les monstres ne jouent pas */
+			for(int i = 1; i < moteur.getHeros().size(); i++) {
+				Unite h = moteur.getHeros().get(i);
+				int voisines = moteur.voisinesLibres(h.getCase());
+				if(voisines != 0) {
+					int b = Integer.numberOfTrailingZeros(voisines);
+					moteur.deplaceSoldat(h, h.getCase() + (b / 3 - 1) + IConfig.LARGEUR_CARTE * (b % 3 - 1));
+				}
+			}
+			animations(scene, carte, g, largeur, hauteur);
+
+			/* Un monstre meurt */
+			moteur.tue(moteur.getMonstres().get(0));
+			animations(scene, carte, g, largeur, hauteur);
+
+			if(s >= NB_SCENES_CHAUFFE) {
+				octets += scene[0];
+				nb_images += (int)scene[1];
+			}
+		}
+
+		g.dispose();
+		return resultat("avanceImage", octets, nb_images, "images");
+	}
+
+	/**
+	 * Avance et dessine les images de la carte jusqu'à la fin des animations, au rythme du timer de la carte.
+	 * L'image qui suit l'action n'est pas comptée.
+	 */
+	private static void animations(long[] scene, Carte carte, GraphicsCompte g, int largeur, int hauteur) throws InterruptedException
+	{
+		image(carte, g, largeur, hauteur);
+
+		while(!carte.affichageTermine()) {
+			Thread.sleep((long)(1000.0 / IConfig.FPS));
+			compte(scene, carte, g, largeur, hauteur);
+		}
+	}
+
+	/**
+	 * Avance et dessine une image de la carte, en comptant ses octets alloués hors de Java2D
+	 * @param scene Octets alloués et nombre d'images de la scène, augmentés de ceux de l'image
+	 */
+	private static void compte(long[] scene, Carte carte, GraphicsCompte g, int largeur, int hauteur)
+	{
+		long java2d = g.octets;
+		long debut = compteur();
+		image(carte, g, largeur, hauteur);
+		scene[0] += compteur() - debut - (g.octets - java2d);
+		scene[1]++;
+	}
+
+	/**
+	 * Avance et dessine une image de la carte
+	 */
+	private static void image(Carte carte, Graphics g, int largeur, int hauteur)
+	{
+		carte.avanceImage();
+		carte.dessineImage(g, largeur, hauteur);
+	}
+
+	/**
+	 * Image synthétique d'un tileset : un tile uni par numéro
+	 */
+	private static BufferedImage imageTileset()
+	{
+		int cote = Terrain.LARGEUR_TILESET * IConfig.NB_PIX_CASE;
+		BufferedImage image = new BufferedImage(cote, cote, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+
+		for(int i = 0; i < Terrain.LARGEUR_TILESET * Terrain.LARGEUR_TILESET; i++) {
+			g.setColor(Terrain.estPraticable(i) ? new Color(0x3c8c3c) : new Color(0x6e6e6e));
+			g.fillRect((i % Terrain.LARGEUR_TILESET) * IConfig.NB_PIX_CASE, (i / Terrain.LARGEUR_TILESET) * IConfig.NB_PIX_CASE, IConfig.NB_PIX_CASE, IConfig.NB_PIX_CASE);
+		}
+
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * Image synthétique d'un soldat : N_ANIMATIONS images par direction, de 32 x 48 pixels
+	 */
+	private static BufferedImage imageSoldat(Color couleur)
+	{
+		BufferedImage image = new BufferedImage(Charset.N_ANIMATIONS * 32, Charset.N_DIRECTIONS * 48, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+
+		g.setColor(couleur);
+		for(int a = 0; a < Charset.N_ANIMATIONS; a++)
+			for(int d = 0; d < Charset.N_DIRECTIONS; d++)
+				g.fillOval(a * 32 + 4 + a, d * 48 + 8, 24, 40);
+
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * Graphics qui dessine dans un autre, en comptant les octets alloués par Java2D pendant la copie des images
+	 */
+	private static final class GraphicsCompte extends Graphics
+	{
+		/** Graphics où l'on dessine. */
+		private final Graphics g;
+
+		/** Octets alloués par les appels à drawImage. */
+		long octets;
+
+		GraphicsCompte(Graphics g)
+		{
+			this.g = g;
+		}
+
+		public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, ImageObserver observer)
+		{
+			long debut = compteur();
+			boolean b = g.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, observer);
+			octets += compteur() - debut;
+			return b;
+		}
+
+		public boolean drawImage(Image img, int x, int y, ImageObserver observer)
+		{
+			long debut = compteur();
+			boolean b = g.drawImage(img, x, y, observer);
+			octets += compteur() - debut;
+			return b;
+		}
+
+		public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer)
+		{
+			return g.drawImage(img, x, y, width, height, observer);
+		}
+
+		public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer)
+		{
+			return g.drawImage(img, x, y, bgcolor, observer);
+		}
+
+		public boolean drawImage(Image img, int x, int y, int width, int height, Color bgcolor, ImageObserver observer)
+		{
+			return g.drawImage(img, x, y, width, height, bgcolor, observer);
+		}
+
+		public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, Color bgcolor, ImageObserver observer)
+		{
+			return g.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, bgcolor, observer);
+		}
+
+		public Graphics create() { return g.create(); }
+		public void translate(int x, int y) { g.translate(x, y); }
+		public Color getColor() { return g.getColor(); }
+		public void setColor(Color c) { g.setColor(c); }
+		public void setPaintMode() { g.setPaintMode(); }
+		public void setXORMode(Color c) { g.setXORMode(c); }
+		public Font getFont() { return g.getFont(); }
+		public void setFont(Font font) { g.setFont(font); }
+		public FontMetrics getFontMetrics(Font f) { return g.getFontMetrics(f); }
+		public Rectangle getClipBounds() { return g.getClipBounds(); }
+		public Rectangle getClipBounds(Rectangle r) { return g.getClipBounds(r); }
+		public void clipRect(int x, int y, int width, int height) { g.clipRect(x, y, width, height); }
+		public void setClip(int x, int y, int width, int height) { g.setClip(x, y, width, height); }
+		public Shape getClip() { return g.getClip(); }
+		public void setClip(Shape clip) { g.setClip(clip); }
+		public void copyArea(int x, int y, int width, int height, int dx, int dy) { g.copyArea(x, y, width, height, dx, dy); }
+		public void drawLine(int x1, int y1, int x2, int y2) { g.drawLine(x1, y1, x2, y2); }
+		public void fillRect(int x, int y, int width, int height) { g.fillRect(x, y, width, height); }
+		public void drawRect(int x, int y, int width, int height) { g.drawRect(x, y, width, height); }
+		public void clearRect(int x, int y, int width, int height) { g.clearRect(x, y, width, height); }
+		public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) { g.drawRoundRect(x, y, width, height, arcWidth, arcHeight); }
+		public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) { g.fillRoundRect(x, y, width, height, arcWidth, arcHeight); }
+		public void drawOval(int x, int y, int width, int height) { g.drawOval(x, y, width, height); }
+		public void fillOval(int x, int y, int width, int height) { g.fillOval(x, y, width, height); }
+		public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) { g.drawArc(x, y, width, height, startAngle, arcAngle); }
+		public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) { g.fillArc(x, y, width, height, startAngle, arcAngle); }
+		public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) { g.drawPolyline(xPoints, yPoints, nPoints); }
+		public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) { g.drawPolygon(xPoints, yPoints, nPoints); }
+		public void drawPolygon(Polygon p) { g.drawPolygon(p); }
+		public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) { g.fillPolygon(xPoints, yPoints, nPoints); }
+		public void drawString(String str, int x, int y) { g.drawString(str, x, y); }
+		public void drawString(AttributedCharacterIterator iterator, int x, int y) { g.drawString(iterator, x, y); }
+		public void dispose() { g.dispose(); }
+	}
+}
@@ -1,10 +1,18 @@
 package wargame;
 
 /**
- * Classe permettant de générer des nombres aléatoires
+ * Classe permettant de générer des nombres aléatoires hors d'une partie (musique, positions au hasard...).
+ * Chaque fil a son propre générateur : les parties, elles, utilisent le générateur ensemencé du Moteur.
  */
 public final class Aleatoire {
 	
+	/** Générateur de chaque fil. */
+	private static final ThreadLocal<Hasard> HASARD = new ThreadLocal<Hasard>() {
+		protected Hasard initialValue() {
+			return new Hasard(Hasard.graineAleatoire());
+		}
+	};
+	
 	private Aleatoire(){}
 	
 	/**
@@ -14,6 +22,14 @@ public final class Aleatoire {
 	 * @return Nombre aléatoire compris entre min et max
 	 */
 	public static final int nombreAleatoire (int min , int max) {
-		return min + (int)(Math.random() * (max - min + 1));
+		return min + HASARD.get().entier(max - min + 1);
+	}
+
+	/**
+	 * Générateur du fil courant, pour les tirages hors partie du moteur
+	 * @return Le générateur
+	 */
+	static Hasard getHasard() {
+		return HASARD.get();
 	}
 }
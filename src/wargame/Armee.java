@@ -0,0 +1,252 @@
+package wargame;
+
+import java.util.Arrays;
+
+/**
+ * État de toutes les unités d'une partie, rangé par colonnes : un tableau par caractéristique, indexé par le numéro de l'unité.
+ * Les caractéristiques fixes (vie maximale, portée, puissance, tir) sont lues dans des tables par type,
+ * les drapeaux (mort, a joué) sont des tables de bits.
+ * Une Unite n'est qu'une poignée (armée, numéro) sur cet état, créée à la première demande : le moteur travaille sur les numéros,
+ * seuls l'affichage, l'index des héros et l'écouteur de la partie ont besoin de poignées.
+ */
+final class Armee
+{
+	/** Types des héros puis des monstres : le type d'une unité est son rang dans ces tables, décalé de TYPES_H.length pour les monstres. */
+	private static final ISoldat.TypesH[] TYPES_H = ISoldat.TypesH.values();
+	private static final ISoldat.TypesM[] TYPES_M = ISoldat.TypesM.values();
+
+	/** Nombre de types d'unités, héros et monstres. */
+	static final int NB_TYPES = TYPES_H.length + TYPES_M.length;
+
+	/** Caractéristiques de chaque type. */
+	private static final int[] VIE_MAX = new int[NB_TYPES];
+	private static final int[] PORTEE = new int[VIE_MAX.length];
+	private static final int[] PUISSANCE = new int[VIE_MAX.length];
+	private static final int[] TIR = new int[VIE_MAX.length];
+
+	static {
+		for(int t = 0; t < TYPES_H.length; t++) {
+			VIE_MAX[t] = TYPES_H[t].getPoints();
+			PORTEE[t] = TYPES_H[t].getPortee();
+			PUISSANCE[t] = TYPES_H[t].getPuissance();
+			TIR[t] = TYPES_H[t].getTir();
+		}
+
+		for(int t = 0; t < TYPES_M.length; t++) {
+			VIE_MAX[TYPES_H.length + t] = TYPES_M[t].getPoints();
+			PORTEE[TYPES_H.length + t] = TYPES_M[t].getPortee();
+			PUISSANCE[TYPES_H.length + t] = TYPES_M[t].getPuissance();
+			TIR[TYPES_H.length + t] = TYPES_M[t].getTir();
+		}
+	}
+
+	/** Nombre d'unités, mortes comprises. */
+	private int nombre = 0;
+
+	/** Type, vie et case de chaque unité (-1 si elle n'est pas placée). */
+	private byte[] types;
+	private int[] vies;
+	private int[] cases;
+
+	/** Bit à 1 pour les unités mortes, et pour celles ayant joué ce tour. */
+	private long[] morts;
+	private long[] ontJoue;
+
+	/** Poignée de chaque unité, null tant qu'elle n'a pas été demandée (voir getUnite). */
+	private Unite[] unites;
+
+	/**
+	 * Constructeur d'une armée vide
+	 * @param capacite Nombre d'unités prévu, l'armée s'agrandit au besoin
+	 */
+	Armee(int capacite)
+	{
+		capacite = Math.max(capacite, 1);
+
+		types = new byte[capacite];
+		vies = new int[capacite];
+		cases = new int[capacite];
+		unites = new Unite[capacite];
+		morts = new long[(capacite + 63) >>> 6];
+		ontJoue = new long[morts.length];
+	}
+
+	/** Retire toutes les unités. */
+	void vide()
+	{
+		Arrays.fill(unites, 0, nombre, null);
+		Arrays.fill(morts, 0);
+		Arrays.fill(ontJoue, 0);
+		nombre = 0;
+	}
+
+	/**
+	 * Ajoute un héros, non placé
+	 * @param type Type du héros
+	 * @return Le numéro du héros
+	 */
+	int ajoute(ISoldat.TypesH type)
+	{
+		return ajoute(type(type));
+	}
+
+	/**
+	 * Ajoute un monstre, non placé
+	 * @param type Type du monstre
+	 * @return Le numéro du monstre
+	 */
+	int ajoute(ISoldat.TypesM type)
+	{
+		return ajoute(type(type));
+	}
+
+	/**
+	 * Type d'unité d'un type de héros (voir getType)
+	 */
+	static int type(ISoldat.TypesH type)
+	{
+		return type.ordinal();
+	}
+
+	/**
+	 * Type d'unité d'un type de monstre (voir getType)
+	 */
+	static int type(ISoldat.TypesM type)
+	{
+		return TYPES_H.length + type.ordinal();
+	}
+
+	/**
+	 * Ajoute une unité, non placée
+	 * @param type Type de l'unité (voir getType)
+	 * @return Le numéro de l'unité
+	 */
+	int ajoute(int type)
+	{
+		if(nombre == types.length)
+			agrandit(2 * types.length);
+
+		int i = nombre++;
+		types[i] = (byte)type;
+		vies[i] = VIE_MAX[type];
+		cases[i] = -1;
+
+		return i;
+	}
+
+	private void agrandit(int capacite)
+	{
+		types = Arrays.copyOf(types, capacite);
+		vies = Arrays.copyOf(vies, capacite);
+		cases = Arrays.copyOf(cases, capacite);
+		unites = Arrays.copyOf(unites, capacite);
+		morts = Arrays.copyOf(morts, (capacite + 63) >>> 6);
+		ontJoue = Arrays.copyOf(ontJoue, morts.length);
+	}
+
+	int getNombre() {
+		return nombre;
+	}
+
+	/**
+	 * Poignée d'une unité, créée au premier appel
+	 * @param i Numéro de l'unité
+	 * @return La poignée, toujours la même pour une unité
+	 */
+	Unite getUnite(int i) {
+		if(unites[i] == null)
+			unites[i] = new Unite(this, i);
+
+		return unites[i];
+	}
+
+	/**
+	 * Type d'une unité : le rang de son type de héros, ou le nombre de types de héros plus le rang de son type de monstre
+	 */
+	int getType(int i) {
+		return types[i];
+	}
+
+	boolean estHeros(int i) {
+		return types[i] < TYPES_H.length;
+	}
+
+	ISoldat.TypesH getTypeHeros(int i) {
+		return estHeros(i) ? TYPES_H[types[i]] : null;
+	}
+
+	ISoldat.TypesM getTypeMonstre(int i) {
+		return estHeros(i) ? null : TYPES_M[types[i] - TYPES_H.length];
+	}
+
+	String getNom(int i) {
+		return estHeros(i) ? TYPES_H[types[i]].getNom() : TYPES_M[types[i] - TYPES_H.length].getNom();
+	}
+
+	int getVieMax(int i) {
+		return VIE_MAX[types[i]];
+	}
+
+	int getPortee(int i) {
+		return PORTEE[types[i]];
+	}
+
+	int getPuissance(int i) {
+		return PUISSANCE[types[i]];
+	}
+
+	int getTir(int i) {
+		return TIR[types[i]];
+	}
+
+	int getVie(int i) {
+		return vies[i];
+	}
+
+	double getPourcentageVie(int i) {
+		return ((double)(vies[i] / (double)VIE_MAX[types[i]])) * 100.;
+	}
+
+	/**
+	 * Change la vie d'une unité, bornée entre 0 et sa vie maximale
+	 */
+	void setVie(int i, int vie) {
+		vies[i] = Math.max(0, Math.min(VIE_MAX[types[i]], vie));
+	}
+
+	int getCase(int i) {
+		return cases[i];
+	}
+
+	void setCase(int i, int num_case) {
+		cases[i] = num_case;
+	}
+
+	boolean estMort(int i) {
+		return (morts[i >>> 6] & (1L << i)) != 0;
+	}
+
+	void setMort(int i, boolean mort) {
+		if(mort)
+			morts[i >>> 6] |= 1L << i;
+		else
+			morts[i >>> 6] &= ~(1L << i);
+	}
+
+	boolean aJoue(int i) {
+		return (ontJoue[i >>> 6] & (1L << i)) != 0;
+	}
+
+	void setAJoue(int i, boolean a_joue) {
+		if(a_joue)
+			ontJoue[i >>> 6] |= 1L << i;
+		else
+			ontJoue[i >>> 6] &= ~(1L << i);
+	}
+
+	/** Aucune unité n'a joué : début d'un nouveau tour. */
+	void effaceAJoue()
+	{
+		Arrays.fill(ontJoue, 0);
+	}
+}
@@ -0,0 +1,390 @@
+package wargame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Brouillard de guerre : les cases vues par chaque héros, et les cases vues par au moins un héros.
+ * Chaque héros garde la table de bits des cases qu'il voit. Lorsqu'il se déplace, seules les cases qui
+ * entrent ou sortent de son champ de vision sont mises à jour, et sont ajoutées aux cases modifiées
+ * que l'affichage vient récupérer pour ne redessiner que ce qui a changé.
+ *
+ * Avec IConfig.OMBRES_BROUILLARD, les cases dont le tile n'est pas traversable cachent celles situées derrière elles
+ * (ombres portées, calculées en "shadowcasting" récursif). Seul le terrain cache la vue : le champ de vision
+ * d'une case ne dépend que de la case et de la portée, il est calculé une fois puis gardé pour toute la partie.
+ */
+final class Brouillard
+{
+	/**
+	 * Champ de vision d'un héros : la table de bits des cases vues, et l'intervalle des mots non nuls
+	 */
+	private static final class Champ
+	{
+		private final long[] bits;
+		private int debut, fin;
+
+		Champ(int mots)
+		{
+			bits = new long[mots];
+		}
+	}
+
+	private final int largeur;
+	private final int hauteur;
+
+	/** Nombre de héros voyant chaque case. */
+	private final char[] compte;
+
+	/** Bit à 1 pour les cases vues par au moins un héros. */
+	private final long[] visibles;
+
+	/** Champ de vision de chaque héros placé. */
+	private final HashMap<Unite, Champ> champs = new HashMap<Unite, Champ>();
+
+	/** Bit à 1 pour les cases dont le tile laisse passer la vue, partagée avec le plateau. */
+	private final long[] traversables;
+
+	/** Multiplicateurs passant des coordonnées d'un octant à celles de la carte, pour chacun des 8 octants. */
+	private static final int[][] OCTANTS = {
+		{ 1,  0,  0, -1, -1,  0,  0,  1 },
+		{ 0,  1, -1,  0,  0, -1,  1,  0 },
+		{ 0,  1,  1,  0,  0, -1, -1,  0 },
+		{ 1,  0,  0,  1, -1,  0,  0, -1 }
+	};
+
+	/**
+	 * Champs de vision avec ombres déjà calculés, pour chaque case et chaque portée (case * (RAYON + 1) + portee).
+	 * Chaque champ est une ligne de bits par ligne de la fenêtre de côté 2 * portee + 1 centrée sur la case.
+	 * Créé au premier champ calculé : null tant que les ombres ne servent pas.
+	 */
+	private long[][] ombres;
+
+	/** Bit à 1 pour les cases dont la visibilité a changé depuis le dernier appel à prendModifiees. */
+	private final long[] modifiees;
+
+	/** Tampon dans lequel est calculé le nouveau champ de vision d'un héros. */
+	private final long[] tampon;
+
+	/**
+	 * Constructeur d'un brouillard recouvrant toute la carte
+	 * @param largeur Largeur de la carte en nombre de cases
+	 * @param hauteur Hauteur de la carte en nombre de cases
+	 * @param traversables Table de bits des cases traversables (voir Plateau.getTraversables)
+	 */
+	Brouillard(int largeur, int hauteur, long[] traversables)
+	{
+		this.largeur = largeur;
+		this.hauteur = hauteur;
+
+		compte = new char[largeur * hauteur];
+		visibles = new long[(largeur * hauteur + 63) >>> 6];
+		this.traversables = traversables;
+		tampon = new long[visibles.length];
+		modifiees = new long[visibles.length];
+		Arrays.fill(modifiees, -1L);
+	}
+
+	/**
+	 * Oublie les champs de vision avec ombres, une fois les cases traversables du plateau changées
+	 */
+	void terrainModifie()
+	{
+		if(ombres != null)
+			Arrays.fill(ombres, null);
+	}
+
+	/** Recouvre toute la carte, aucun héros n'est plus placé. */
+	void vide()
+	{
+		Arrays.fill(compte, (char)0);
+		Arrays.fill(visibles, 0);
+		Arrays.fill(modifiees, -1L);
+		champs.clear();
+	}
+
+	/**
+	 * Place (ou déplace) le champ de vision d'un héros sur une case
+	 * @param h Le héros
+	 * @param num_case La case où se trouve le héros
+	 */
+	void place(Unite h, int num_case)
+	{
+		Champ champ = champs.get(h);
+
+		if(champ == null) {
+			champ = new Champ(visibles.length);
+			champs.put(h, champ);
+		}
+
+		int px = num_case % largeur, py = num_case / largeur, portee = h.getPortee();
+		int y1 = Math.max(0, py - portee), y2 = Math.min(hauteur - 1, py + portee);
+
+		/* Avec les ombres, chaque ligne du champ gardé en cache est recopiée sur la carte */
+		if(IConfig.OMBRES_BROUILLARD && portee <= LigneDeVue.RAYON) {
+			int i = num_case * (LigneDeVue.RAYON + 1) + portee;
+
+			if(ombres == null)
+				ombres = new long[largeur * hauteur * (LigneDeVue.RAYON + 1)][];
+
+			if(ombres[i] == null) {
+				ombres[i] = new long[2 * portee + 1];
+				calculeOmbres(num_case, portee, ombres[i]);
+			}
+
+			for(int y = y1; y <= y2; y++)
+				ajouteLigne(tampon, px - portee, y, ombres[i][y - py + portee]);
+		}
+		/* Sinon chaque ligne du champ est un intervalle de cases, rempli mot par mot */
+		else {
+			for(int y = y1; y <= y2; y++) {
+				int demi_largeur = demiLargeur(portee, Math.abs(y - py));
+
+				if(demi_largeur >= 0)
+					remplit(tampon, Math.max(0, px - demi_largeur) + largeur * y, Math.min(largeur - 1, px + demi_largeur) + largeur * y);
+			}
+		}
+
+		change(champ, (largeur * y1) >>> 6, ((largeur * (y2 + 1) - 1) >>> 6) + 1);
+	}
+
+	/**
+	 * Calcule la demi largeur d'une ligne du champ de vision : un carré, ou un losange avec AFFICHAGE_REEL_BROUILLARD
+	 * (voir Moteur.distance, où la case en diagonale est à une distance de 1)
+	 * @param portee La portée du héros
+	 * @param ecart Écart vertical entre la ligne et le héros
+	 * @return La demi largeur de la ligne, négative si la ligne est vide
+	 */
+	private static int demiLargeur(int portee, int ecart)
+	{
+		if(!IConfig.AFFICHAGE_REEL_BROUILLARD)
+			return portee;
+
+		if(ecart == 1)
+			return Math.max(portee - 1, 1);
+
+		return portee - ecart;
+	}
+
+	/**
+	 * Met à 1 un intervalle de bits d'une table de bits
+	 * @param t La table de bits
+	 * @param debut Premier bit de l'intervalle
+	 * @param fin Dernier bit de l'intervalle (compris)
+	 */
+	private static void remplit(long[] t, int debut, int fin)
+	{
+		int m1 = debut >>> 6, m2 = fin >>> 6;
+		long masque_debut = -1L << debut, masque_fin = -1L >>> (63 - (fin & 63));
+
+		if(m1 == m2) {
+			t[m1] |= masque_debut & masque_fin;
+			return;
+		}
+
+		t[m1] |= masque_debut;
+		for(int m = m1 + 1; m < m2; m++)
+			t[m] = -1L;
+		t[m2] |= masque_fin;
+	}
+
+	/**
+	 * Ajoute une ligne de la fenêtre d'un champ de vision à une table de bits de la carte
+	 * @param t La table de bits de la carte
+	 * @param x Colonne de la carte correspondant au premier bit de la ligne (peut être négative)
+	 * @param y Ligne de la carte
+	 * @param ligne Les bits de la ligne de la fenêtre
+	 */
+	private void ajouteLigne(long[] t, int x, int y, long ligne)
+	{
+		/* On retire ce qui sort de la carte à gauche, puis à droite */
+		if(x < 0) {
+			ligne >>>= -x;
+			x = 0;
+		}
+
+		if(largeur - x < 64)
+			ligne &= (1L << (largeur - x)) - 1;
+
+		if(ligne == 0)
+			return;
+
+		int b = x + largeur * y, m = b >>> 6, r = b & 63;
+
+		t[m] |= ligne << r;
+		if(r != 0 && (ligne >>> (64 - r)) != 0)
+			t[m + 1] |= ligne >>> (64 - r);
+	}
+
+	/**
+	 * Calcule le champ de vision d'une case en tenant compte des cases cachant la vue
+	 * (shadowcasting récursif : chacun des 8 octants est parcouru ligne par ligne en partant de la case,
+	 * chaque obstacle rencontré réduisant l'intervalle de pentes encore visible pour les lignes suivantes).
+	 * Les obstacles eux-mêmes sont visibles, pas ce qui est derrière.
+	 * @param num_case La case d'où l'on regarde
+	 * @param portee La portée de la vue, au plus 31
+	 * @param lignes Rempli avec une ligne de bits par ligne de la fenêtre de côté 2 * portee + 1 centrée sur la case
+	 */
+	void calculeOmbres(int num_case, int portee, long[] lignes)
+	{
+		int px = num_case % largeur, py = num_case / largeur;
+
+		Arrays.fill(lignes, 0, 2 * portee + 1, 0);
+		lignes[portee] |= 1L << portee;
+
+		for(int o = 0; o < 8; o++)
+			ombre(px, py, portee, 1, 1.0, 0.0, OCTANTS[0][o], OCTANTS[1][o], OCTANTS[2][o], OCTANTS[3][o], lignes);
+	}
+
+	/**
+	 * Parcourt un octant à partir d'une ligne, entre deux pentes
+	 * @param px Colonne de la case d'où l'on regarde
+	 * @param py Ligne de la case d'où l'on regarde
+	 * @param portee La portée de la vue
+	 * @param ligne Première ligne de l'octant à parcourir
+	 * @param debut Pente de début de l'intervalle visible
+	 * @param fin Pente de fin de l'intervalle visible
+	 * @param xx Multiplicateurs de l'octant
+	 * @param xy Multiplicateurs de l'octant
+	 * @param yx Multiplicateurs de l'octant
+	 * @param yy Multiplicateurs de l'octant
+	 * @param lignes Le champ de vision à remplir
+	 */
+	private void ombre(int px, int py, int portee, int ligne, double debut, double fin, int xx, int xy, int yx, int yy, long[] lignes)
+	{
+		if(debut < fin)
+			return;
+
+		double nouveau_debut = 0;
+
+		for(int j = ligne; j <= portee; j++) {
+			boolean cache = false;
+
+			for(int dx = -j; dx <= 0; dx++) {
+				int dy = -j;
+				double pente_gauche = (dx - 0.5) / (dy + 0.5);
+				double pente_droite = (dx + 0.5) / (dy - 0.5);
+
+				if(debut < pente_droite)
+					continue;
+				if(fin > pente_gauche)
+					break;
+
+				int ox = dx * xx + dy * xy, oy = dx * yx + dy * yy;
+				int x = px + ox, y = py + oy;
+				boolean dedans = x >= 0 && x < largeur && y >= 0 && y < hauteur;
+				boolean opaque = !dedans || (traversables[(x + largeur * y) >>> 6] & (1L << (x + largeur * y))) == 0;
+
+				if(dedans && Math.abs(ox) <= demiLargeur(portee, Math.abs(oy)))
+					lignes[oy + portee] |= 1L << (ox + portee);
+
+				if(cache) {
+					/* On longe un obstacle : l'ombre continue */
+					if(opaque) {
+						nouveau_debut = pente_droite;
+						continue;
+					}
+
+					cache = false;
+					debut = nouveau_debut;
+				}
+				else if(opaque && j < portee) {
+					/* Début d'un obstacle : on parcourt la partie visible avant lui, puis on continue après lui */
+					cache = true;
+					ombre(px, py, portee, j + 1, debut, pente_gauche, xx, xy, yx, yy, lignes);
+					nouveau_debut = pente_droite;
+				}
+			}
+
+			if(cache)
+				break;
+		}
+	}
+
+	/**
+	 * Retire le champ de vision d'un héros (mort, ou retiré de la carte)
+	 * @param h Le héros
+	 */
+	void retire(Unite h)
+	{
+		Champ champ = champs.remove(h);
+
+		if(champ != null)
+			change(champ, 0, 0);
+	}
+
+	/**
+	 * Remplace le champ de vision d'un héros par celui calculé dans le tampon, en ne parcourant que les mots
+	 * de l'ancien et du nouveau champ, puis vide le tampon
+	 * @param champ Le champ du héros
+	 * @param debut Premier mot non nul du tampon
+	 * @param fin Mot suivant le dernier mot non nul du tampon
+	 */
+	private void change(Champ champ, int debut, int fin)
+	{
+		int premier = (champ.debut < champ.fin) ? Math.min(champ.debut, debut) : debut;
+		int dernier = (champ.debut < champ.fin) ? Math.max(champ.fin, fin) : fin;
+
+		for(int m = premier; m < dernier; m++) {
+			long ancien = champ.bits[m], nouveau = tampon[m];
+
+			/* Cases qui sortent du champ de vision */
+			for(long perdues = ancien & ~nouveau; perdues != 0; perdues &= perdues - 1) {
+				int c = (m << 6) + Long.numberOfTrailingZeros(perdues);
+
+				if(--compte[c] == 0) {
+					visibles[m] &= ~(1L << c);
+					modifiees[m] |= 1L << c;
+				}
+			}
+
+			/* Cases qui entrent dans le champ de vision */
+			for(long gagnees = nouveau & ~ancien; gagnees != 0; gagnees &= gagnees - 1) {
+				int c = (m << 6) + Long.numberOfTrailingZeros(gagnees);
+
+				if(compte[c]++ == 0) {
+					visibles[m] |= 1L << c;
+					modifiees[m] |= 1L << c;
+				}
+			}
+
+			champ.bits[m] = nouveau;
+			tampon[m] = 0;
+		}
+
+		champ.debut = debut;
+		champ.fin = fin;
+	}
+
+	/**
+	 * Teste si une case est visible par au moins un héros
+	 * @param num_case Numéro de la case
+	 * @return Vrai si la case est visible, faux sinon
+	 */
+	boolean estVisible(int num_case)
+	{
+		return (visibles[num_case >>> 6] & (1L << num_case)) != 0;
+	}
+
+	/**
+	 * Récupère les cases dont la visibilité a changé depuis le dernier appel, et les oublie
+	 * @param cases Tableau d'au moins largeur * hauteur cases, rempli avec les numéros des cases modifiées
+	 * @return Le nombre de cases modifiées
+	 */
+	int prendModifiees(int[] cases)
+	{
+		int nb_cases = 0;
+
+		for(int m = 0; m < modifiees.length; m++) {
+			for(long bits = modifiees[m]; bits != 0; bits &= bits - 1) {
+				int c = (m << 6) + Long.numberOfTrailingZeros(bits);
+
+				if(c < compte.length)
+					cases[nb_cases++] = c;
+			}
+
+			modifiees[m] = 0;
+		}
+
+		return nb_cases;
+	}
+}
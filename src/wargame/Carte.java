@@ -1,71 +1,129 @@
 package wargame;
 
+import java.awt.AlphaComposite;
+import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.Point;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiUnavailableException;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 import wargame.Charset.Direction;
 
-/** Classe de la Carte du jeu. */
-public class Carte extends JPanel implements ICarte, ActionListener, Serializable
-{	
+/** Classe de la Carte du jeu : affichage et contrôle d'une partie jouée par le Moteur. */
+public class Carte extends JPanel implements ICarte, MoteurListener, ActionListener, Serializable
+{
 	private static final long serialVersionUID = 1845646587235566472L;
 
-	private int nbHerosRestant;
-	private int nbMonstresRestant;
-	private int nbSoldatAJouer; 
-	private int tour;
-	
+	/** Couleur des cases visibles sur le calque du brouillard. */
+	private static final Color TRANSPARENT = new Color(0, 0, 0, 0);
+
+	/** Fil des sauvegardes et des chargements : un seul, pour qu'ils se terminent dans l'ordre où ils ont été demandés. */
+	private static final ExecutorService ENTREES_SORTIES = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Sauvegardes");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/** Moteur de la partie en cours. */
+	private Moteur moteur;
+
+	/** Sauvegarde automatique de la partie en cours. */
+	private transient Journal journal = new Journal(IConfig.CHEMIN_SAUVEGARDE + IConfig.NOM_AUTOSAUVEGARDE + ".ser",
+	                                                IConfig.CHEMIN_SAUVEGARDE + IConfig.NOM_AUTOSAUVEGARDE + ".journal",
+	                                                Relecture.CHEMIN, IConfig.TOURS_AUTOSAUVEGARDE, ENTREES_SORTIES);
+
+	/** Relecture affichée à la place d'une partie jouée, null s'il n'y en a pas. Elle reste en place, terminée, une fois rejouée jusqu'au bout. */
+	private transient Relecture relecture;
+
 	/** Listener de la carte */
 	private CarteListener carteListener;
-	
+
 	/** Tileset de la carte. */
 	private Tileset tileset;
 
-	/** Brouillard. */
-	private char []brouillard;
+	/** Affichage du brouillard. */
 	private boolean brouillardActive = true;
-	
-	/** Carte. */
-	protected char []carte;
 
-	/** Monstres. */
-	private ArrayList<Monstre> monstre;
+	/** Calque du terrain, redessiné seulement lorsque le terrain change : une seule image à afficher par image. */
+	private transient BufferedImage calqueTerrain;
+
+	/** Moteur et version de son terrain dessinés sur le calque du terrain. */
+	private transient Moteur moteurTerrain;
+	private transient int versionTerrain;
+
+	/** Calque du brouillard, dont seules les cases modifiées sont redessinées. */
+	private transient BufferedImage calqueBrouillard;
+
+	/** Cases du brouillard modifiées depuis le dernier affichage. */
+	private transient int[] casesBrouillard;
+
+	/** Zone de la carte à redessiner, réunion des zones modifiées depuis la dernière image : rien n'est redessiné tant qu'elle est vide. */
+	private transient Rectangle zoneModifiee = new Rectangle();
+
+	/** Zone d'une case ou d'un voisinage, ajoutée à la zone à redessiner : réutilisée d'un relevé à l'autre. */
+	private transient Rectangle zoneCases = new Rectangle();
+
+	/** Zone où dessine paintComponent, réutilisée d'une image à l'autre. */
+	private transient Rectangle zoneDessin = new Rectangle();
+
+	/** Case sélectionnée et ce qui y était affiché (voisines libres, ou soldat ayant joué) au dernier relevé des modifications. */
+	private int caseAffichee = -1;
+	private int selectionAffichee = -1;
+
+	/** Soldat dont l'infobulle était affichée au dernier relevé, son état (vie, case), et la zone de l'infobulle. */
+	private Soldat soldatPointeAffiche;
+	private int etatPointeAffiche;
+	private Rectangle infobulleAffichee = new Rectangle();
 
-	/** Héros. */
-	private ArrayList<Heros> heros;
-	
-	/** Héros ciblés par les monstres */
-	private ArrayList<Heros> herosCibles = new ArrayList<Heros>();
+	/** Métriques de la police des messages de la file d'Infobulle. */
+	private transient FontMetrics metriquesMessages;
 
-	/** Table de jeu de la carte. */
-	private Soldat []soldat;
+	/** Soldats affichés, y compris ceux dont l'animation de mort n'est pas terminée. */
+	private ArrayList<Soldat> soldats = new ArrayList<Soldat>();
+
+	/** Soldat affichant chaque unité du moteur, indexé par le numéro de l'unité dans son armée. */
+	private Soldat[] vues = new Soldat[IConfig.NB_HEROS + IConfig.NB_MONSTRES];
 
 	/** La carte est-elle générée ? */
 	private boolean generee = false;
 
 	/** Indique la case courante sélectionnée. Correspond également au soldat selectionné dans le combat. */
 	private int caseActionnee = -1;
-	
+
+	/** Effectifs affichés par le dernier message d'information. */
+	private int nbMonstresAffiche = -1;
+	private int nbHerosAffiche = -1;
+
+	/** Premier pas du chemin vers la case cliquée, pour les déplacements lointains. */
+	private int[] premierPas = new int[1];
+
 	/** Indique le soldat actuellement pointé par le curseur de la souris */
 	private Soldat soldatPointe = null;
 
@@ -74,15 +132,32 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 
 	/** Timer. */
 	private Timer timer;
-	
+
+	/** Horloge des animations des soldats, avancée à chaque image par le timer. */
+	private transient Horloge horloge;
+
+	/** Canvas de l'affichage actif (voir IConfig.RENDU_ACTIF), placé sur la carte une fois celle-ci générée. */
+	private transient RenduActif renduActif;
+
 	/** Controle si on doit ou non afficher l'historique */
 	private String afficheHistorique = "";
-	
+
 	/** Est-ce au tour de joueur ? */
 	private boolean tourJoueur;
-	
+
+	/** Étapes d'un tour. */
+	private enum Tour {
+		/** Le joueur joue (ou la partie est finie, ou relue). */
+		JOUEUR,
+		/** Les monstres ont joué, leurs actions s'affichent : le joueur reprend la main à la fin des animations et des messages. */
+		MONSTRES
+	}
+
+	/** Étape du tour en cours, changée depuis le fil de l'interface. */
+	private Tour tour = Tour.JOUEUR;
+
 	/** Controle l'affichage ou non du message de victoire ou défaite */
-	private String stringFinJeu = ""; 
+	private String stringFinJeu = "";
 
 	/** Booleen permettant de savoir si on est dans le mode armagedon (tue n'importe quel soldat) */
 	private boolean armagedon = false;
@@ -90,123 +165,91 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 	private boolean ajoutMonstre = false;
 	/** Booleen permettant de savoir si on est dans le mode qui permet de savoir si on est dans le mode où on peut créer des Heros au clic */
 	private boolean ajoutHeros = false;
-	
-	/** Constructeur par défaut. 
-	 * @throws MidiUnavailableException 
-	 * @throws IOException 
-	 * @throws InvalidMidiDataException 
+
+	/** Constructeur par défaut.
+	 * @throws MidiUnavailableException
+	 * @throws IOException
+	 * @throws InvalidMidiDataException
 	 */
 	Carte() throws InvalidMidiDataException, IOException, MidiUnavailableException
-	{		
-		/* Initialisation taux de rafraichissement. */
-		timer = new Timer((int)(1000.0 * 1.0 / IConfig.FPS), this);
-		timer.setInitialDelay(0);
-		timer.start();	             
-		
-		/* Création d'une carte vide. */
-		carte = new char [IConfig.LARGEUR_CARTE * IConfig.LARGEUR_CARTE];	
-
-		/* Création du brouillard */
-		brouillard = new char [IConfig.LARGEUR_CARTE * IConfig.LARGEUR_CARTE];
-		
+	{
+		this(null);
+
 		/* Image de présentation, avant donc que la carte ne soit générée */
 		imagePresentation = new JLabel(new ImageIcon( this.getClass().getResource(IConfig.CHEMIN_IMAGE + "image_presentation2.png")));
 		this.add(imagePresentation);
+	}
+
+	/**
+	 * Constructeur d'une carte dessinée avec un tileset donné, sans image de présentation
+	 * @param tileset Le tileset, chargé depuis IConfig.NOM_TILESET à la première partie si null
+	 */
+	Carte(Tileset tileset)
+	{
+		this.tileset = tileset;
+
+		/* Initialisation taux de rafraichissement. */
+		timer = new Timer((int)(1000.0 * 1.0 / IConfig.FPS), this);
+		horloge = new Horloge(timer.getDelay());
+		timer.setInitialDelay(0);
+		timer.start();
 
 		/* Capture d'évènements de la souris. */
 		addMouseListener(new MouseAdapter() {
 			/* Capture du clic sur la carte */
-			public void mouseClicked(MouseEvent e) { 
+			public void mouseClicked(MouseEvent e) {
 				/* Si la carte n'est pas générée ou que ce n'est pas au tour du joueur alors il n'y a rien à faire donc on quitte */
-				if(!generee || tourJoueur == false)
+				if(!generee || tourJoueur == false || relecture != null)
 					return;
-				
-				/* On crée une position aux coordonnées du clic de la souris pour connaitre la coordonnée de la case (et non pas du pixel) */
-				Position pos = new Position(e.getX() / IConfig.NB_PIX_CASE , e.getY() / IConfig.NB_PIX_CASE);
-				int case_cliquee = pos.getNumCase();
-				
+
+				/* Coordonnée de la case (et non pas du pixel) cliquée */
+				int case_cliquee = e.getX() / IConfig.NB_PIX_CASE + IConfig.LARGEUR_CARTE * (e.getY() / IConfig.NB_PIX_CASE);
+				Unite cible = moteur.getSoldat(case_cliquee);
+
 				/* Pour le mode armagedon */
-				if(armagedon && soldat[case_cliquee] != null && !soldat[case_cliquee].estMort()) {
-					soldat[case_cliquee].setMort(true);
-					
-					if(soldat[case_cliquee] instanceof Heros){
-						nbHerosRestant--;
-						changeBrouillard(soldat[case_cliquee].getPosition(), soldat[case_cliquee].getPortee(), -1);
-					}
-					else{ 
-						nbMonstresRestant--;
-					}
-					
+				if(armagedon && cible != null) {
+					moteur.tue(cible);
 					caseActionnee = -1;
-					
-					if(nbMonstresRestant == 0) 
-						joueurGagne();
-					else if(nbHerosRestant == 0) 
-						joueurPerd();
-					
+					moteur.verifieFin();
 					return;
 				}
-				
+
 				/* Pour le cheat d'ajout de monstre/heros */
-				if( (ajoutMonstre || ajoutHeros) && soldat[case_cliquee] == null && tileset.getTile(carte[case_cliquee]).estPraticable() ) {
-					try {
-						if(ajoutMonstre) {
-							nbMonstresRestant++;
-							Monstre monstre_cree = new Monstre(ISoldat.TypesM.getTypeMAlea());
-							monstre_cree.setDirection(Direction.DROITE);
-							
-							monstre.add(monstre_cree);
-							soldat[case_cliquee] = monstre_cree;
-						}
-						else {
-							nbHerosRestant++;
-							Heros heros_cree = new Heros(ISoldat.TypesH.getTypeHAlea());
-							heros_cree.setDirection(Direction.GAUCHE);
-							
-							heros.add(heros_cree);
-							soldat[case_cliquee] = heros_cree;
-						}
-						
-						soldat[case_cliquee].setPosition(new Position(case_cliquee));
-					} catch (IOException e1) {
-						e1.printStackTrace();
-					}
-					
+				if( (ajoutMonstre || ajoutHeros) && moteur.estLibre(case_cliquee) ) {
+					Unite u = moteur.ajouteSoldat(ajoutMonstre ? ISoldat.MONSTRE : ISoldat.HEROS, case_cliquee);
+					if(u != null)
+						ajouteVue(u);
+
 					return;
 				}
-				
+
 				/* On vient de cliquer sur la même case : on veut se reposer */
-				if(case_cliquee == caseActionnee && !soldat[case_cliquee].getAJoue()) {
-					faitReposer(soldat[case_cliquee], true);
-					nbSoldatAJouer--;
+				if(case_cliquee == caseActionnee && cible != null && !cible.getAJoue()) {
+					moteur.faitReposer(cible, true);
 					caseActionnee = -1;
 					return;
 				}
 
-				/* On change de héros si la case n'est pas vide, qu'il s'agit bien d'un soldat et que le soldat est affiché. */
-				if(soldat[case_cliquee] != null 
-					&& soldat[case_cliquee] instanceof Heros 
-					&& soldat[case_cliquee].estVisible() 
-				) {
+				/* On change de héros si la case contient bien un héros. */
+				if(cible != null && cible.estHeros()) {
 					caseActionnee = case_cliquee;
 				}
 				/* Sinon on va faire une action en rapport avec le soldat sélectionné. */
 				else {
-					if(caseActionnee != -1) {
+					Unite selection = (caseActionnee != -1) ? moteur.getSoldat(caseActionnee) : null;
+
+					if(selection != null) {
 						/* Distance entre la case cliquée et la case actionnée */
-						int distance = new Position(caseActionnee).distance(new Position(case_cliquee));
+						int distance = moteur.distance(caseActionnee, case_cliquee);
 
 						/* Si on clique sur un monste alors combat */
-						if(soldat[case_cliquee] instanceof Monstre 
-							&& distance <= soldat[caseActionnee].getPortee() 
-							&& !soldat[caseActionnee].getAJoue() 
-							&& soldat[case_cliquee].estVisible()
-							&& !soldat[case_cliquee].estMort() 
+						if(cible != null
+							&& distance <= selection.getPortee()
+							&& !selection.getAJoue()
 						) {
-							if(!obstacleEntreCase(soldat[caseActionnee].getPosition(), soldat[case_cliquee].getPosition())){			
-								faitCombattre(soldat[caseActionnee], soldat[case_cliquee], distance);
-								nbSoldatAJouer--;
-	
+							if(!moteur.obstacleEntreCase(caseActionnee, case_cliquee)){
+								moteur.faitCombattre(selection, cible, distance);
+								caseActionnee = -1;
 								return;
 							}
 						}
@@ -214,18 +257,24 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 						/* On a un soldat selectionné et on clique sur une case autour (à une distance de 1 autour du soldat)
 						 * -> On veut se déplacer sur la nouvelle case.
 						 */
-						if(distance == 1 
-							&& tileset.getTile(carte[case_cliquee]).estPraticable() 
-							&& ( soldat[case_cliquee] == null || soldat[case_cliquee].estMort() ) && !soldat[caseActionnee].getAJoue()
-						) {
+						if(distance == 1 && moteur.estLibre(case_cliquee) && !selection.getAJoue()) {
 							 try {
-								deplaceSoldat(soldat[caseActionnee], new Position(case_cliquee));
+								moteur.deplaceSoldat(selection, case_cliquee);
+							} catch (Exception e1) {
+								e1.printStackTrace();
+							}
+						}
+						/* Case libre plus éloignée : on fait le premier pas du plus court chemin qui y mène */
+						else if(distance > 1 && moteur.estLibre(case_cliquee) && !selection.getAJoue()
+							&& moteur.chemin(caseActionnee, case_cliquee, premierPas) > 0) {
+							try {
+								moteur.deplaceSoldat(selection, premierPas[0]);
 							} catch (Exception e1) {
 								e1.printStackTrace();
 							}
 						}
 					}
-					
+
 					/* Fin deplacement on re-initialise la case */
 					caseActionnee = -1;
 				}
@@ -238,20 +287,21 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 				/* On vérifie que la carte a bien été générée */
 				if(generee){
 					/* Récupération de la case de la carte correspondant aux coordonnées du curseur */
-					int num_case_curseur = new Position((e.getX() / IConfig.NB_PIX_CASE), (e.getY() / IConfig.NB_PIX_CASE)).getNumCase();
+					int num_case_curseur = e.getX() / IConfig.NB_PIX_CASE + IConfig.LARGEUR_CARTE * (e.getY() / IConfig.NB_PIX_CASE);
+					Unite u = moteur.getSoldat(num_case_curseur);
 
 					/* Si il y a bien un soldat pointé, alors on met ce dernier dans l'objet soldatPointe, sinon on le met à null (pas de soldat pointé) */
-					if(soldat[num_case_curseur] != null && soldat[num_case_curseur].estVisible() && (!brouillardActive || brouillard[num_case_curseur] > 0) )
-						soldatPointe = soldat[num_case_curseur];
+					if(u != null && (!brouillardActive || moteur.estVisible(num_case_curseur)) )
+						soldatPointe = vue(u);
 					else
 						soldatPointe = null;
 				}
 			}
 		});
 	}
-	
-	
-	
+
+
+
 	/**
 	 * Méthode permettant d'associer un listener
 	 * @param l Le listener
@@ -261,29 +311,15 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 		this.carteListener = l;
 	}
 
-	/** 
-	 * Méthode permettant de reinitialiser le tour de tous les soldats
+	/**
+	 * Méthode permettant de terminer le tour du joueur : les monstres jouent puis le tour de tous les soldats est réinitialisé
 	 */
 	public void reinitAJoue() {
-		if(isGeneree() != true)
+		if(isGeneree() != true || relecture != null || tour != Tour.JOUEUR)
 			return;
-		
+
 		joueMonstres();
 		caseActionnee = -1;
-		tour++;
-
-		carteListener.historique("Début du tour " + tour);
-
-		for(int i = 0; i < IConfig.HAUTEUR_CARTE * IConfig.LARGEUR_CARTE; i++){
-			if(soldat[i] != null) {
-				if(soldat[i] instanceof Heros && !soldat[i].getAJoue() && soldat[i].estVisible && soldat[i].estMort() == false ) {
-					faitReposer(soldat[i], false);
-				}
-				soldat[i].setAJoue(false);	
-			}
-		}
-		
-		nbSoldatAJouer = nbHerosRestant;
 	}
 
 	/**
@@ -294,152 +330,78 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 		if(tileset == null){
 			try {
 				tileset = new Tileset(IConfig.NOM_TILESET);
-			} 
+			}
 			catch(IOException e) {
 				System.out.println(e);
 				return;
-			}		
+			}
 		}
 	}
 
 	/**
-	 *  Méthode générant les éléments de la carte 
+	 * Méthode créant les soldats affichant les unités vivantes du moteur
 	 */
-	private void genererCarte()
+	private void creerVues()
 	{
-		soldat = new Soldat[IConfig.LARGEUR_CARTE * IConfig.HAUTEUR_CARTE];
-		chargerTileset();
+		/* Les anciens soldats n'ont plus besoin d'être animés */
+		for(Soldat s : soldats)
+			s.arrete();
 
-		/* Couche d'herbe. */
-		for(int i = 0; i < IConfig.LARGEUR_CARTE * IConfig.LARGEUR_CARTE; i++){
-			Position p = new Position(i);
-			tileset.setHerbe(this, p);
-		}
-
-		/* Rochers. */
-		for(int i = 0; i < IConfig.NB_ROCHERS; i++)
-		{
-			/* Une position aléatoire est générée */
-			Position p = new Position();
-			
-			tileset.setRocher(this, p);
-		}
-
-		/* Arbres. */
-		for(int i = 0; i < IConfig.NB_ARBRES; i++)
-		{
-			Position p = new Position();
+		/* Tout change : toute la carte est redessinée */
+		repaint();
 
-			if(!tileset.setArbre(this, p)) i--;
-		}
+		soldats.clear();
+		Arrays.fill(vues, null);
+		soldatPointe = null;
 
-		/* Paille. */
-		for(int i = 0; i < IConfig.NB_PAILLES; i++)
-		{
-			Position p = new Position();
+		for(Unite h : moteur.getHeros())
+			if(!h.estMort())
+				ajouteVue(h);
 
-			if(!tileset.setPaille(this, p)) i--;
-		}
-		
-		/* Eau. */
-		for(int i = 0; i < IConfig.NB_EAU; i++)
-		{
-		     Position p = new Position();
-		     if(!tileset.setEau(this, p)) i--;
-		}
+		for(Unite m : moteur.getMonstres())
+			if(!m.estMort())
+				ajouteVue(m);
 	}
 
 	/**
-	 *  Méthode générant tous les soldats 
+	 * Méthode créant le soldat affichant une unité du moteur
+	 * @param u L'unité à afficher
 	 */
-	private void genererSoldats()
+	private void ajouteVue(Unite u)
 	{
-		/* Mise à 0 de la carte. */
-		for(int i = 0; i < IConfig.LARGEUR_CARTE * IConfig.HAUTEUR_CARTE; i++)
-			soldat[i] = null;
-
-		/* Tableaux de soldats. */
-		heros = new ArrayList<Heros>(); 
-		monstre = new ArrayList<Monstre>(); 
-
-		/* Chargement des soldats de base. */
 		try {
-			for(int i = 0; i < IConfig.NB_HEROS; i++)
-			{
-				/* On trouve une position vide, on créé un héros et on le place */
-				Position pos = new Position(this.trouvePositionVide(Soldat.HEROS));
-				
-				Heros h = new Heros(ISoldat.TypesH.getTypeHAlea());
-				h.setPosition(pos);
-				h.setDirection(Direction.GAUCHE);
-				
-				heros.add(h);
-				soldat[pos.getNumCase()] = h;
+			Soldat s;
+			if(u.estHeros()) {
+				s = new Heros(u);
+				s.setDirection(Direction.GAUCHE);
 			}
-			for(int i = 0; i < IConfig.NB_MONSTRES; i++)
-			{
-				/* Idem que pour Heros */
-				Position pos = new Position(this.trouvePositionVide(Soldat.MONSTRE));
-				
-				Monstre m = new Monstre(ISoldat.TypesM.getTypeMAlea());
-				m.setPosition(pos);
-				m.setDirection(Direction.DROITE);
-				
-				monstre.add(m);
-				soldat[pos.getNumCase()] = m;
+			else {
+				s = new Monstre(u);
+				s.setDirection(Direction.DROITE);
 			}
-		} 
+
+			s.setHorloge(horloge);
+			soldats.add(s);
+			if(u.getIndice() >= vues.length)
+				vues = Arrays.copyOf(vues, Math.max(2 * vues.length, u.getIndice() + 1));
+			vues[u.getIndice()] = s;
+		}
 		catch(IOException e) {
 			System.out.println(e);
-			return;
-		}	
+		}
 	}
 
 	/**
-	 *  Méthode générant et initialisant le brouillard 
-	 */
-	private void genererBrouillard() {
-		/* Initialisation du brouillard (toutes les cases sont à 0) */
-		for(int i = 0; i < IConfig.LARGEUR_CARTE * IConfig.LARGEUR_CARTE; i++)
-			brouillard[i] = 0;
-		
-		/* Ensuite pour chaque héros présent dans le tableau héros, on crée le brouillard associé */
-		for(int i = 0; i < IConfig.NB_HEROS; i++) {
-			Heros h = heros.get(i);
-			if(h.estVisible())
-				changeBrouillard(h.getPosition(), h.getPortee(), 1);
-		}
-	}
-	
-	/** Méthode permetant de créer (ou retirer) le brouillard autour d'un soldat
-	 * 
-	 * @param pos Position du soldat
-	 * @param distance Distance à laquelle le soldat peut voir
-	 * @param inc Si inc = 1 alors on crée du brouillard, sinon si inc = -1, on retire du brouillard
+	 * Retourne le soldat affichant une unité du moteur
+	 * @param u L'unité
+	 * @return Le soldat, null si l'unité n'est pas affichée
 	 */
-	
-	private void changeBrouillard(Position pos, int distance, int inc) {
-		int x = 0, y = 0;
-		
-		Position tmp = null;
-		brouillard[pos.getNumCase()] += inc;
-		for(y = distance; y >= - distance; y--) {
-			for(x = distance; x >= -distance; x--) {
-				tmp = new Position(pos.x + x ,pos.y + y);
-				if(tmp.estValide()) {
-					if(IConfig.AFFICHAGE_REEL_BROUILLARD) {
-						if(pos.distance(tmp) <= distance)
-							brouillard[tmp.getNumCase()] += inc;
-					}
-					else
-						brouillard[tmp.getNumCase()] += inc;
-				}
-			}
-		}
+	private Soldat vue(Unite u)
+	{
+		return (u.getIndice() < vues.length) ? vues[u.getIndice()] : null;
 	}
-	
 
-	/** 
+	/**
 	 * Regenere le brouillard du au déplacement s'il s'agit d'un héros et deplace le soldat
 	 * @param sold Soldat a deplacer
 	 * @param nouvelle_position Case sur laquelle finira le soldat
@@ -449,442 +411,375 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 	{
 		if(!nouvelle_position.estValide())
 			throw new Exception("La nouvelle position est invalide");
-		
-		/* Le brouillard est changé que lorsque c'est un héros qui joue */
-		boolean changer_brouillard = false;
-		if(sold instanceof Heros)
-			changer_brouillard = true;
-		
-		carteListener.historique(sold.getNom() + " se déplace en " + new Position(caseActionnee) );
-
-		/* On supprime le brouillard du héros ? */
-		if(changer_brouillard)
-			changeBrouillard(sold.getPosition(), sold.getPortee(), -1);		
-		
-		soldat[nouvelle_position.getNumCase()] = soldat[sold.getPosition().getNumCase()];
-		soldat[sold.getPosition().getNumCase()] = null;	
-		
-		Son.joueCourir();
-		sold.setAJoue(true);
-		nbSoldatAJouer--;
-		
-		int sx = sold.getPosition().x;
-		int sy = sold.getPosition().y;
-		int dx = nouvelle_position.x;
-		int dy = nouvelle_position.y;
-		int x = 0;
-		int y = 0;
-
-		Direction direction = Direction.HAUT;
-
-		if(dx > sx) {
-			x = 2;
-			direction = Direction.DROITE;
-		}
-		else if(dx < sx) {
-			x = -2;
-			direction = Direction.GAUCHE;
-		}
-		if(dy > sy) {
-			y = 2;
-			direction = Direction.BAS;
-		}
-		else if(dy < sy) {
-			y = -2;
-			direction = Direction.HAUT;
-		}
-
-		sold.setSeDeplace(true);
-		sold.setDirection(direction);
 
-		sold.offsetX = x;
-		sold.offsetY = y;
-		
-		if(changer_brouillard){
-			/* Étant donné que le mouvement n'est pas encore fini, la position n'est pas mise à jour, cependant on sait qu'il sera à la position case_cliquee */
-			changeBrouillard(new Position(nouvelle_position), soldat[nouvelle_position.getNumCase()].getPortee(), 1);
-		}
+		moteur.deplaceSoldat(sold.getUnite(), nouvelle_position.getNumCase());
 	}
 
+	/**
+	 *  Fait jouer tous les monstres, puis rend la main au joueur lorsque toutes leurs actions sont affichées (voir avanceImage)
+	 */
+	public void joueMonstres()
+	{
+		/* On prévient que l'on déplace les monstres, on arrête le tour du joueur */
+		carteListener.deplaceMonstre();
+		tourJoueur = false;
+		tour = Tour.MONSTRES;
+
+		moteur.finTour();
+	}
 
 	/**
-	 *  Retourne la position du premier héros trouvé aux alentours de p. Null si il n'y en as pas 
-	 *  @param p Position du soldat où chercher aux alentours
-	 *  @param portee Nombre de cases du rayon où on cherche
+	 * Rend la main au joueur à la fin du tour des monstres, et prévient le listener
 	 */
-	private Position herosAlentour(Position p, int portee){
-		for(int x = p.x - portee; x <= p.x + portee; x++){
-			for(int y = p.y - portee; y <= p.y + portee; y++){
-				Position pos = new Position(x, y);
-
-				if(pos.estValide()){
-					/* Si il y a un héros à la case indiquée, qu'il est visible et pas mort */
-					if(soldat[pos.getNumCase()] != null 
-						&& soldat[pos.getNumCase()] instanceof Heros 
-						&& soldat[pos.getNumCase()].estVisible() && soldat[pos.getNumCase()].estMort() == false
-						&& !obstacleEntreCase(pos, p)
-					){
-						return pos;
-					}
-				}
-			}
-		}
+	private void termineTourMonstres()
+	{
+		tour = Tour.JOUEUR;
+		tourJoueur = !moteur.estTerminee();
 
-		return null;
+		carteListener.deplaceMonstre();
 	}
 
 	/**
-	 *  Déplace tous les monstres 
+	 * Abandonne l'affichage du tour des monstres lorsque la partie est remplacée : le listener est prévenu de la fin du tour
 	 */
-	public void joueMonstres()
+	private void interromptTourMonstres()
 	{
-		/* On prévient que l'on déplace les monstres, on arrête le tour du joueur */
+		if(tour != Tour.MONSTRES)
+			return;
+
+		tour = Tour.JOUEUR;
 		carteListener.deplaceMonstre();
-		tourJoueur = false;
-		/* Les héros ciblés sont remis à zéro */
-		herosCibles.clear();
-		
-		for(Monstre m : monstre) 
-		{		
-			/* Si le monstre est bien vivant */
-			if(m != null && !m.estMort() && m.estVisible())
-			{					
-				Position p;
-				/* Si on a peu de PV on fait un repos */
-				if(m.getPourcentageVie() < 10)
-					m.repos(true);
-				/* Combat avec un héros aux alentours */
-				else if((p = herosAlentour(m.getPosition(), m.getPortee())) != null){
-					/* On ajoute aux héros ciblés ce héros trouvé */
-					herosCibles.add((Heros)soldat[p.getNumCase()]);
-					faitCombattre(m, soldat[p.getNumCase()], p.distance(m.getPosition()));
-				}
-				/* Sinon déplacement */
-				else {		
-					/* S'il n'y a aucun héros ciblé, on déplace aléatoirement */
-					if(herosCibles.isEmpty()){
-						/* On récupère une position aléatoire valide. 
-						 * Si elle n'est pas null (donc impossible de se déplacer), alors on déplace le soldat vers cette nouvelle position */
-						Position nouvelle_position = trouvePositionAleatoire(m);
-						if(nouvelle_position != null){
-							try {
-								deplaceSoldat(m, nouvelle_position);
-							} catch (Exception e) {
-								e.printStackTrace();
-							}
-						}
-					}
-					/* Sinon on choisit de se déplacer vers un des héros ciblés le plus proches possibles */
-					else{
-						Heros heros_cible = herosCibles.get(0);
-						int distance_heros_cible = heros_cible.getPosition().distance(m.getPosition());
-						
-						/* On choisit l'un des héros ciblés les plus proches */
-						for(int j = 1; j<herosCibles.size(); j++){
-							Heros heros_cible_temp = herosCibles.get(j);
-							int distance_temp;
-							if((distance_temp = heros_cible_temp.getPosition().distance(m.getPosition())) < distance_heros_cible){
-								heros_cible = heros_cible_temp;
-								distance_heros_cible = distance_temp;
-							}
-						}
-							
-						Position nouvelle_position = new Position(m.getPosition());
-						/* On calcule la nouvelle position en fonction de la direction à prendre pour rejoindre le héros ciblé */
-						for(Direction dir : m.getPosition().direction(heros_cible.getPosition())){
-							if(dir == Direction.HAUT)
-								nouvelle_position.setLocation(nouvelle_position.x, nouvelle_position.y-1);
-							else if(dir == Direction.GAUCHE)
-								nouvelle_position.setLocation(nouvelle_position.x-1, nouvelle_position.y);
-							else if(dir == Direction.DROITE)
-								nouvelle_position.setLocation(nouvelle_position.x+1, nouvelle_position.y);
-							else if(dir == Direction.BAS)
-								nouvelle_position.setLocation(nouvelle_position.x, nouvelle_position.y+1);
-						}
-						
-						/* Si la nouvelle position est valable, on s'y déplace */
-						if(nouvelle_position != null && nouvelle_position.estValide() 
-								&& soldat[nouvelle_position.getNumCase()] == null && 
-								tileset.getTile(carte[nouvelle_position.getNumCase()]).estPraticable()
-						){
-							try {
-								deplaceSoldat(m, nouvelle_position);
-							} catch (Exception e) {
-								e.printStackTrace();
-							}
-						}
-						/* Sinon on se déplace aléatoirement */
-						else{
-							nouvelle_position = trouvePositionAleatoire(m);
-							if(nouvelle_position != null)
-								try {
-									deplaceSoldat(m, nouvelle_position);
-								} catch (Exception e) {
-									e.printStackTrace();
-								}
-						}
-					}
-				}
-			}
-		}
-		
-	   /* On déclenche un évènement pour prévenir losque tous les monstres ont joué et que toutes les infobulles sont apparues */
-	   Thread t = new Thread() {
-	          public void run() {
-		        for(int i = 0; i < monstre.size() ; i++)
-		        	while(monstre.get(i).getSeDeplace() || Infobulle.aTermine() == false)
-	    			{
-	    				try {
-							Thread.currentThread();
-							Thread.sleep(100);
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						}
-	    			}
-	    		
-	    		tourJoueur = true;
-	    		
-	    		carteListener.deplaceMonstre();
-	          }
-	        };
-	       
-	   t.start();
+	}
 
+	/**
+	 * Tout ce qui a été demandé est-il affiché ?
+	 * @return Vrai si aucun soldat n'est animé (déplacement, mort) et si la file des messages est vide
+	 */
+	boolean affichageTermine()
+	{
+		return horloge.getNbAnimes() == 0 && Infobulle.aTermine();
 	}
 
 	/** Genere aléatoirement une carte. */
 	public void generer()
 	{
+		interromptTourMonstres();
 		generee = true;
 		tourJoueur = true;
-		nbMonstresRestant = IConfig.NB_MONSTRES;
-		nbHerosRestant = IConfig.NB_HEROS;
-		nbSoldatAJouer = nbHerosRestant;
-		tour = 0;
-		
+
 		stringFinJeu = "";
-		genererCarte();
-		genererSoldats();
-		genererBrouillard();
-		caseActionnee = -1;	
+		chargerTileset();
+
+		relecture = null;
+		moteur = new Moteur();
+		moteur.setListener(this);
+		moteur.generer();
+		journal.commence(moteur);
+
+		creerVues();
+		caseActionnee = -1;
 
 		if(imagePresentation != null){
 			imagePresentation.getParent().remove(imagePresentation);
 			imagePresentation = null;
 		}
+
+		placeRendu();
 	}
 
-	/** Trouve une position vide aléatoirement sur la carte. 
+	/** Trouve une position vide aléatoirement sur la carte.
 	 * Utilisable pour placer des Soldats.
 	 * @param type Type de Soldat (Soldat.HEROS ou Soldat.MONSTRE)
 	 * @return     La position vide.
 	 * */
 	public Position trouvePositionVide(char type)
-	{	
-		int dec = type == Soldat.HEROS ? 1 : 0;
-		int num_tile;
-		Tile tile;
-		Position pos = new Position();
+	{
+		return new Position(moteur.trouvePositionVide(type));
+	}
 
-		do {
-			pos.x = dec * (IConfig.LARGEUR_CARTE / 2) + dec + (int)(Math.random() * (IConfig.LARGEUR_CARTE / 2));
-			pos.y = (int)(Math.random() * IConfig.HAUTEUR_CARTE);
+	/** Sauvegarde une carte, au format binaire de Sauvegarde.
+	 * La partie est copiée tout de suite, puis la copie est écrite par le fil des sauvegardes sans bloquer l'affichage.
+	 * Le listener est prévenu une fois le fichier écrit sur le disque.
+	 * @param chemin Chemin vers le fichier de sauvegarde.
+	 */
+	public void sauvegarde(final String chemin)
+	{
+		final ByteBuffer instantane;
+
+		try {
+			instantane = Sauvegarde.instantane(moteur);
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+			notifieSauvegarde(chemin, false);
+			return;
+		}
 
+		ENTREES_SORTIES.execute(new Runnable() {
+			public void run() {
+				boolean reussie = true;
 
-			num_tile = carte[pos.getNumCase()];
-			tile = tileset.getTile(num_tile);
-		} while(!pos.estValide() || soldat[pos.getNumCase()] != null || !tile.estPraticable());
+				try {
+					Sauvegarde.ecrit(instantane, chemin);
+				}
+				catch(IOException e) {
+					e.printStackTrace();
+					reussie = false;
+				}
 
-		return pos;
+				notifieSauvegarde(chemin, reussie);
+			}
+		});
 	}
-	
+
 	/**
-	 * Méthode permettant de chercher une position aléatoire valide autour d'un soldat
-	 * @param s Le soldat autour duquel chercher la position
-	 * @return null si toutes les positions autour du soldat ne sont pas valide, une position aléatoire sinon
+	 * Prévient le listener de la fin d'une sauvegarde, depuis le fil de l'interface
 	 */
-	public Position trouvePositionAleatoire(Soldat s){
-		Position positions[] = new Position[9];
-		Position temp = new Position();
-		
-		int nb_position_trouve = 0;
-		
-		/* On parcourt toutes les positions possibles autour du soldat */
-		for(int x = -1; x <= 1; x++)
-			for(int y = -1; y <= 1; y++)							
-			{					
-				temp.x = s.getPosition().x + x;
-				temp.y = s.getPosition().y + y;
-				
-				/* Si la position est valide (dans la carte)
-				 * Et si il n'y a pas déjà de soldat sur cette position
-				 * Et si la case est praticable (pas d'arbre ou de rocher)
-				 * On rappelle que le soldat ne pourra pas fais du surplace car soldat[temp.getNumCase()] ne renverra pas null */
-				if (temp.estValide() && soldat[temp.getNumCase()] == null && 
-						tileset.getTile(carte[temp.getNumCase()]).estPraticable())
-				{
-					positions[nb_position_trouve] = new Position(temp.getNumCase());
-					nb_position_trouve++;
+	private void notifieSauvegarde(final String chemin, final boolean reussie)
+	{
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				if(carteListener != null)
+					carteListener.sauvegardeTerminee(chemin, reussie);
+			}
+		});
+	}
+
+	/** Charge une carte, au format binaire ou à l'ancien format (voir Sauvegarde).
+	 * La partie est lue par le fil des sauvegardes, puis remplace la partie en cours depuis le fil de l'interface, entre deux affichages.
+	 * Le listener est prévenu une fois la partie remplacée.
+	 * @param chemin Chemin vers la sauvegarde a charger.
+	 */
+	public void charge(String chemin)
+	{
+		charge(chemin, null);
+	}
+
+	/**
+	 * Reprend la partie de la sauvegarde automatique, comme charge : son dernier instantané, sur lequel est rejoué son journal
+	 */
+	public void reprend()
+	{
+		charge(IConfig.CHEMIN_SAUVEGARDE + IConfig.NOM_AUTOSAUVEGARDE + ".ser", IConfig.CHEMIN_SAUVEGARDE + IConfig.NOM_AUTOSAUVEGARDE + ".journal");
+	}
+
+	/**
+	 * Revoit la dernière partie enregistrée, depuis son début : chaque action est rejouée une fois l'affichage de la précédente terminé.
+	 * Le joueur ne peut pas jouer la partie relue, même une fois l'enregistrement rejoué jusqu'au bout : la relecture ne cesse
+	 * que lorsqu'une partie est lancée ou chargée.
+	 * Le listener est prévenu (chargementTermine) une fois l'enregistrement lu.
+	 */
+	public void revoit()
+	{
+		ENTREES_SORTIES.execute(new Runnable() {
+			public void run() {
+				Relecture lue = null;
+
+				try {
+					lue = Relecture.lit(Relecture.CHEMIN);
 				}
+				catch(IOException e) {
+					e.printStackTrace();
+				}
+
+				final Relecture r = lue;
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						if(r != null) {
+							remplaceMoteur(r.getMoteur(), false);
+							relecture = r;
+						}
+
+						if(carteListener != null)
+							carteListener.chargementTermine(Relecture.CHEMIN, r != null);
+					}
+				});
 			}
-		
-		/* Si on a trouvé des positions valides, on en choisit une au hasard */
-		if(nb_position_trouve > 0)
-			temp = positions[Aleatoire.nombreAleatoire(0, nb_position_trouve - 1)];
-		else
-			temp = null;
-		
-		return temp;
+		});
 	}
 
-	/** Sauvegarde une carte.
-	 * @param chemin Chemin vers le fichier de sauvegarde.
+	/**
+	 * Déplace la relecture en cours de quelques tours, en avant ou en arrière, sans afficher les actions rejouées
+	 * @param nb_tours Nombre de tours, négatif pour revenir en arrière
 	 */
-	public void sauvegarde(String chemin)
+	public void deplaceRelecture(int nb_tours)
 	{
+		if(relecture == null)
+			return;
+
+		moteur.setListener(null);
 		try {
-				FileOutputStream fichier = new FileOutputStream(chemin);
-				ObjectOutputStream oos = new ObjectOutputStream(fichier);
-				
-				oos.write(tour);
-				oos.write(nbHerosRestant);
-				oos.write(nbMonstresRestant);
-				oos.writeObject(carte);
-				oos.writeObject(monstre);
-				oos.writeObject(heros);
-				oos.writeObject(soldat);
-				oos.writeObject(brouillard);
-	
-				oos.flush();
-				oos.close();
+			relecture.placeAuTour(Math.max(0, moteur.getTour() + nb_tours));
 		}
-		catch(java.io.IOException e) {
+		catch(IOException e) {
 			e.printStackTrace();
 		}
+
+		moteur = relecture.getMoteur();
+		moteur.setListener(this);
+		creerVues();
+		carteListener.historique("Relecture : tour " + moteur.getTour());
 	}
 
-	/** Charge une carte.
-	 * @param chemin Chemin vers la sauvegarde a charger.
+	/**
+	 * Rejoue l'action suivante de la relecture, une fois les animations et les messages de la précédente affichés
 	 */
-	@SuppressWarnings("unchecked")
-	public void charge(String chemin)
+	private void avanceRelecture()
 	{
+		if(relecture.estTerminee() || !affichageTermine())
+			return;
 
-		if(imagePresentation != null){
-			imagePresentation.getParent().remove(imagePresentation);
-			imagePresentation = null;
+		Armee armee = moteur.getArmee();
+		int nb_unites = armee.getNombre();
+
+		if(!relecture.avance()) {
+			carteListener.historique("Fin de la relecture");
+			return;
 		}
 
-		try {
-			FileInputStream fichier = new FileInputStream(chemin);
-			ObjectInputStream ois = new ObjectInputStream(fichier);
-			
-
-			tour = (int)ois.read();
-			nbHerosRestant = (int)ois.read();
-			nbMonstresRestant = (int)ois.read();
-			carte   = (char[])ois.readObject();
-			monstre = (ArrayList<Monstre>)ois.readObject();
-			heros   = (ArrayList<Heros>)ois.readObject();
-			soldat  = (Soldat[])ois.readObject();
-			brouillard = (char[])ois.readObject();
-
-			/* Les images ne sont pas sérializées... */
-			for(int i = 0; i < IConfig.NB_HEROS; i++)
-			{
-				heros.get(i).setImage();
-				heros.get(i).setDirection(Direction.GAUCHE);
-			}
+		/* Unités ajoutées par l'action (triche), que le moteur n'annonce pas */
+		for(int i = nb_unites; i < armee.getNombre(); i++)
+			ajouteVue(armee.getUnite(i));
+	}
+
+	/**
+	 * Charge une partie depuis le fil des sauvegardes, puis la met en place depuis le fil de l'interface
+	 * @param chemin Chemin de la sauvegarde
+	 * @param chemin_journal Chemin du journal à rejouer sur la sauvegarde, null s'il n'y en a pas
+	 */
+	private void charge(final String chemin, final String chemin_journal)
+	{
+		ENTREES_SORTIES.execute(new Runnable() {
+			public void run() {
+				Moteur lu = null;
+
+				try {
+					lu = (chemin_journal == null) ? Sauvegarde.lit(chemin) : Journal.reprend(chemin, chemin_journal);
+				}
+				catch(IOException e) {
+					e.printStackTrace();
+				}
+
+				final Moteur charge = lu;
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						if(charge != null)
+							remplaceMoteur(charge, true);
 
-			for(int i = 0; i < IConfig.NB_MONSTRES; i++)
-			{
-				monstre.get(i).setImage();
-				monstre.get(i).setDirection(Direction.DROITE);
+						if(carteListener != null)
+							carteListener.chargementTermine(chemin, charge != null);
+					}
+				});
 			}
-			chargerTileset(); // Charge uniquement si tileset null.
-			generee = true;   // Au cas où aucune partie lancée depuis le lancement de l'application.
+		});
+	}
 
-			ois.close();
-		}
-		catch(java.io.IOException e) {
-			e.printStackTrace();
-		}
-		catch(ClassNotFoundException e) {
-			e.printStackTrace();
+	/**
+	 * Remplace la partie en cours par une partie chargée
+	 * @param m Le moteur de la partie chargée, sans listener
+	 * @param jouee Vrai pour une partie à jouer, journalisée ; faux pour une relecture
+	 */
+	private void remplaceMoteur(Moteur m, boolean jouee)
+	{
+		interromptTourMonstres();
+
+		if(imagePresentation != null){
+			imagePresentation.getParent().remove(imagePresentation);
+			imagePresentation = null;
 		}
+
+		relecture = null;
+		moteur = m;
+		moteur.setListener(this);
+		if(jouee)
+			journal.commence(moteur);
+
+		creerVues();
+		chargerTileset(); // Charge uniquement si tileset null.
+		generee = true;   // Au cas où aucune partie lancée depuis le lancement de l'application.
+		tourJoueur = jouee && !moteur.estTerminee();
+		stringFinJeu = "";
+		caseActionnee = -1;
+		placeRendu();
+		repaint();
 	}
 
-	protected void paintComponent(Graphics g) 
-	{    	
-		Point dest = new Point();
-		Point src;
+	/**
+	 * Attend la fin des sauvegardes et chargements demandés, et de leurs notifications.
+	 * Ne doit pas être appelée depuis le fil de l'interface.
+	 * @throws Exception Si l'attente est interrompue
+	 */
+	void attendEntreesSorties() throws Exception
+	{
+		ENTREES_SORTIES.submit(new Runnable() {
+			public void run() {}
+		}).get();
 
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {}
+		});
+	}
+
+	protected void paintComponent(Graphics g)
+	{
 		if(!generee)
 			return;
 
 		/* Affichage de la carte. */
-		for(int i = 0; i< IConfig.LARGEUR_CARTE; i++)
-			for(int j = 0; j < IConfig.HAUTEUR_CARTE; j++) {
-				Position pos = new Position(i, j);
-				int num_tile = (int)carte[pos.getNumCase()];
-
-				dest.setLocation(i, j);
-				src = tileset.getCoord(num_tile);
-				tileset.dessiner(g, src, dest);
-			}
+		dessinerTerrain(g);
 
 		/* Case sélectionnée. */
 		if(caseActionnee != -1) {
-			Position coord = new Position(caseActionnee);
-			int dx = coord.x;
-			int dy = coord.y;
-			
-			if(soldat[caseActionnee] instanceof Heros) {		
-				if(soldat[caseActionnee].getAJoue())
+			Unite selection = moteur.getSoldat(caseActionnee);
+			int dx = caseActionnee % IConfig.LARGEUR_CARTE;
+			int dy = caseActionnee / IConfig.LARGEUR_CARTE;
+
+			if(selection != null && selection.estHeros()) {
+				if(selection.getAJoue())
 					dessineRectangle(g, dx, dy, IConfig.SOLDAT_UTILISE);
 				else {
-					for(int i = -1; i <= 1; i++) {
-						for(int j = -1; j <= 1; j++) {
-							int dxc = dx + i;
-							int dyc = dy + j;
-							int caseVoisine = dyc * IConfig.LARGEUR_CARTE + dxc;
-		
-							if(new Position(caseVoisine).estValide() && tileset.getTile(carte[caseVoisine]).estPraticable() && soldat[caseVoisine] == null)
-								dessineRectangle(g, dxc, dyc, IConfig.SOLDAT_DEPLACEMENT_POSSIBLE);
-						}
+					/* Voisines libres, le bit 3 * (i + 1) + (j + 1) du masque pour la case (dx + i, dy + j) */
+					int voisines = moteur.voisinesLibres(caseActionnee);
+
+					for(; voisines != 0; voisines &= voisines - 1) {
+						int b = Integer.numberOfTrailingZeros(voisines);
+						dessineRectangle(g, dx + b / 3 - 1, dy + b % 3 - 1, IConfig.SOLDAT_DEPLACEMENT_POSSIBLE);
 					}
-		
+
 					dessineRectangle(g, dx, dy, IConfig.SOLDAT_SELECTIONNEE);
 				}
 			}
 		}
 
-		/* Affichage des personnages. */
-		for(int i = 0; i < soldat.length; i++)
-			if(soldat[i] != null)
-			{
-				if(soldat[i].estMort() && !soldat[i].estVisible()){
-					soldat[i] = null;
-				}
-				else{
-					Position pos = soldat[i].getPosition();
-					soldat[i].dessinerAvecOffset(g, pos.x, pos.y, soldat[i].offsetX, soldat[i].offsetY);
-				}
-			}
+		/* Seuls les soldats touchant la zone à redessiner sont dessinés : toute la carte si le Graphics n'a pas de clip */
+		zoneDessin.setBounds(0, 0, IConfig.LARGEUR_CARTE * IConfig.NB_PIX_CASE, IConfig.HAUTEUR_CARTE * IConfig.NB_PIX_CASE);
+		Rectangle zone = g.getClipBounds(zoneDessin);
+
+		/* Affichage des personnages, dans l'ordre des cases de la carte. */
+		for(int i = 0; i < IConfig.LARGEUR_CARTE * IConfig.HAUTEUR_CARTE; i++) {
+			Unite u = moteur.getSoldat(i);
+			if(u != null && vue(u) != null && zone.intersects(vue(u).getZoneAffichee()))
+				dessinerSoldat(g, vue(u));
+		}
+
+		/* Puis des soldats en train de mourir, qui ne sont plus sur la carte du moteur. */
+		for(int i = 0; i < soldats.size(); i++)
+			if(soldats.get(i).estMort() && zone.intersects(soldats.get(i).getZoneAffichee()))
+				dessinerSoldat(g, soldats.get(i));
 
 		/* Affichage des barres de vie. */
-		for(int i = 0; i < soldat.length; i++)
-			if(soldat[i] != null && !soldat[i].estMort())
-				soldat[i].dessineVie(g);
-		
+		for(int i = 0; i < soldats.size(); i++)
+			if(!soldats.get(i).estMort() && zone.intersects(soldats.get(i).getZoneAffichee()))
+				soldats.get(i).dessineVie(g);
+
 		/* Affichage du brouillard, que l'on affiche avant l'infobulle */
-		dessinerBrouillard(g, brouillard);
-		
+		dessinerBrouillard(g);
+
 		if(afficheHistorique != "") {
 			Infobulle.dessinerText(g, IConfig.LARGEUR_CARTE, IConfig.HAUTEUR_CARTE, afficheHistorique, Color.BLUE, Color.LIGHT_GRAY );
 		}
 		/* Affichage de l'infobulle si un soldat est pointé */
-		if(soldatPointe != null ){ 
+		if(soldatPointe != null ){
 			Position pos = soldatPointe.getPosition();
 			if(soldatPointe instanceof Heros)
 				Infobulle.dessinerText(g, pos.x, pos.y, soldatPointe.toString(), IConfig.MESSAGE_INFOBULLE, IConfig.ARRIERE_PLAN_HEROS);
@@ -892,7 +787,7 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 				Infobulle.dessinerText(g, pos.x, pos.y, soldatPointe.toString(), IConfig.MESSAGE_INFOBULLE, IConfig.ARRIERE_PLAN_MONSTRE);
 		}
 
-		/* Auto gestion de l'affichage de la file de message */
+		/* Affichage de la file de message, avancée par releveModifications */
 		Infobulle.dessiner(g);
 		if(!stringFinJeu.isEmpty()) {
 			Color ancienne_couleur = g.getColor();
@@ -901,46 +796,279 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 			g.drawString(stringFinJeu, (IConfig.LARGEUR_CARTE * IConfig.NB_PIX_CASE / 2) - (int)( g.getFontMetrics().stringWidth(stringFinJeu) / 2) , (IConfig.HAUTEUR_CARTE  * IConfig.NB_PIX_CASE )/ 2);
 			g.setColor(ancienne_couleur);
 		}
-		
-		carteListener.information(nbMonstresRestant + " Monstres restant - " + nbHerosRestant + " Heros restant");
 	}
 
-	public void actionPerformed(ActionEvent e) 
-	{	
-		if(nbSoldatAJouer == 0 && nbHerosRestant > 0)
+	/**
+	 * À chaque image : les animations des soldats et la partie avancent, puis seule la zone modifiée est redessinée, rien si rien n'a changé
+	 */
+	public void actionPerformed(ActionEvent e)
+	{
+		avanceImage();
+
+		if(!zoneModifiee.isEmpty()) {
+			repaint(zoneModifiee);
+			zoneModifiee.setBounds(0, 0, 0, 0);
+		}
+	}
+
+	/**
+	 * Avance d'une image les animations des soldats et la partie, en relevant la zone modifiée.
+	 * Appelée par le timer, ou par l'affichage actif qui le remplace.
+	 */
+	void avanceImage()
+	{
+		horloge.avance(System.nanoTime() / 1000000L);
+
+		if(relecture != null)
+			avanceRelecture();
+		else if(generee && !moteur.estTerminee() && moteur.getNbSoldatAJouer() == 0 && moteur.getNbHerosRestant() > 0)
 			reinitAJoue();
-		
-		repaint();
+
+		if(!generee)
+			return;
+
+		releveModifications();
+
+		/* Le tour des monstres se termine à l'image où finit leur dernière animation ou leur dernier message */
+		if(tour == Tour.MONSTRES && affichageTermine())
+			termineTourMonstres();
 	}
 
-	/** 
+	/**
+	 * Dessine une image complète de la carte, pour l'affichage actif, depuis le fil de l'interface
+	 * @param g Graphics du tampon de l'affichage actif, sans clip
+	 * @param largeur Largeur du tampon
+	 * @param hauteur Hauteur du tampon
+	 */
+	void dessineImage(Graphics g, int largeur, int hauteur)
+	{
+		g.setColor(getBackground());
+		g.fillRect(0, 0, largeur, hauteur);
+		paintComponent(g);
+
+		/* Tout est redessiné : la zone modifiée ne sert pas */
+		zoneModifiee.setBounds(0, 0, 0, 0);
+	}
+
+	/**
+	 * Place le Canvas de l'affichage actif si IConfig.RENDU_ACTIF le demande : il n'est placé que sur une carte générée,
+	 * l'image de présentation restant affichée par Swing. Le timer de la carte est arrêté tant que l'affichage actif le remplace.
+	 */
+	private void placeRendu()
+	{
+		if(IConfig.RENDU_ACTIF && generee && renduActif == null) {
+			renduActif = new RenduActif(this);
+			setLayout(new BorderLayout());
+			add(renduActif, BorderLayout.CENTER);
+			revalidate();
+			timer.stop();
+		}
+		else if(!(IConfig.RENDU_ACTIF && generee) && renduActif != null) {
+			remove(renduActif);
+			renduActif = null;
+			revalidate();
+			timer.start();
+			repaint();
+		}
+	}
+
+	/**
+	 * Relève ce qui a changé depuis l'image précédente, en agrandissant d'autant la zone à redessiner :
+	 * soldats (déplacement, animation, vie), messages, brouillard, case sélectionnée et infobulle du soldat pointé
+	 */
+	private void releveModifications()
+	{
+		/* Les soldats dont l'animation de mort est terminée ne sont plus affichés (parcours par indice : pas d'itérateur alloué à chaque image). */
+		for(int i = soldats.size() - 1; i >= 0; i--) {
+			Soldat s = soldats.get(i);
+			if(s.estMort() && !s.estVisible()) {
+				s.arrete();
+				vues[s.getUnite().getIndice()] = null;
+				soldats.remove(i);
+				Infobulle.ajouteZone(zoneModifiee, s.getZoneAffichee());
+
+				if(s == soldatPointe)
+					soldatPointe = null;
+			}
+		}
+
+		for(int i = 0; i < soldats.size(); i++)
+			soldats.get(i).releveZone(zoneModifiee);
+
+		if(metriquesMessages == null)
+			metriquesMessages = getFontMetrics(new Font(getFont().getFontName(), Font.BOLD, getFont().getSize() + 3));
+		Infobulle.avance(metriquesMessages, zoneModifiee);
+
+		releveBrouillard();
+		releveSelection();
+		releveSoldatPointe();
+
+		/* Le message n'est reconstruit que lorsque les effectifs changent */
+		if(moteur.getNbMonstresRestant() != nbMonstresAffiche || moteur.getNbHerosRestant() != nbHerosAffiche) {
+			nbMonstresAffiche = moteur.getNbMonstresRestant();
+			nbHerosAffiche = moteur.getNbHerosRestant();
+			carteListener.information(nbMonstresAffiche + " Monstres restant - " + nbHerosAffiche + " Heros restant");
+		}
+	}
+
+	/**
+	 * Ajoute à la zone à redessiner une case et ses voisines
+	 * @param num_case La case, rien si -1
+	 */
+	private void ajouteVoisinage(int num_case)
+	{
+		if(num_case == -1)
+			return;
+
+		int x = num_case % IConfig.LARGEUR_CARTE, y = num_case / IConfig.LARGEUR_CARTE;
+		zoneCases.setBounds((x - 1) * IConfig.NB_PIX_CASE, (y - 1) * IConfig.NB_PIX_CASE, 3 * IConfig.NB_PIX_CASE, 3 * IConfig.NB_PIX_CASE);
+		Infobulle.ajouteZone(zoneModifiee, zoneCases);
+	}
+
+	/**
+	 * Relève les changements de la case sélectionnée et de ses voisines libres affichées
+	 */
+	private void releveSelection()
+	{
+		int selection = -1;
+
+		if(caseActionnee != -1) {
+			Unite u = moteur.getSoldat(caseActionnee);
+			if(u != null && u.estHeros())
+				selection = u.getAJoue() ? 1 << 9 : moteur.voisinesLibres(caseActionnee);
+		}
+
+		if(caseActionnee != caseAffichee || selection != selectionAffichee) {
+			ajouteVoisinage(caseAffichee);
+			ajouteVoisinage(caseActionnee);
+			caseAffichee = caseActionnee;
+			selectionAffichee = selection;
+		}
+	}
+
+	/**
+	 * Relève les changements de l'infobulle du soldat pointé : autre soldat, déplacement ou vie
+	 */
+	private void releveSoldatPointe()
+	{
+		int etat = (soldatPointe != null) ? soldatPointe.getVie() ^ soldatPointe.getPosition().getNumCase() << 16 : 0;
+
+		if(soldatPointe == soldatPointeAffiche && etat == etatPointeAffiche)
+			return;
+
+		Infobulle.ajouteZone(zoneModifiee, infobulleAffichee);
+
+		if(soldatPointe != null) {
+			Position pos = soldatPointe.getPosition();
+			infobulleAffichee = Infobulle.getZone(getFontMetrics(getFont()), pos.x, pos.y, soldatPointe.toString());
+			Infobulle.ajouteZone(zoneModifiee, infobulleAffichee);
+		}
+		else
+			infobulleAffichee.setBounds(0, 0, 0, 0);
+
+		soldatPointeAffiche = soldatPointe;
+		etatPointeAffiche = etat;
+	}
+
+	/**
+	 * Dessine un soldat à sa position affichée, interpolée pendant un déplacement
+	 * @param g Graphics dans lequel on dessine le soldat
+	 * @param s Le soldat à dessiner
+	 */
+	private void dessinerSoldat(Graphics g, Soldat s)
+	{
+		s.dessinerAvecOffset(g, 0, 0, s.getXAffiche(), s.getYAffiche());
+	}
+
+	/**
 	 * Dessine un rectangle de hauteur IConfig.NB_PIX_CASE de la couleur c indiquée
 	 * @param g Graphics dans lequel on va dessiner le rectangle
 	 * @param x Point de départ x du rectangle
 	 * @param y Point de départ y du rectangle
 	 * @param c Couleur du rectangle a dessiner
 	 */
-	protected void dessineRectangle(Graphics g, int x, int y, Color c) 
+	protected void dessineRectangle(Graphics g, int x, int y, Color c)
 	{
 		g.setColor(c);
 		g.fillRect(x * IConfig.NB_PIX_CASE, y * IConfig.NB_PIX_CASE, IConfig.NB_PIX_CASE, IConfig.NB_PIX_CASE);
 	}
-	
-	/** 
-	 * Méthode dessinant le brouillard 
-	 * @param g Graphics ou sera dessiner le brouillard
-	 * @param brouillard tableau de char contenant le brouillard 
+
+	/**
+	 * Méthode dessinant le terrain, depuis son calque.
+	 * Le calque est redessiné tile par tile lorsque la partie ou son terrain change (génération, chargement, relecture).
+	 * @param g Graphics où sera dessiné le terrain
 	 */
-	protected void dessinerBrouillard(Graphics g, char[] brouillard) {
-		for(int i = 0; i < IConfig.LARGEUR_CARTE * IConfig.LARGEUR_CARTE; i++) {
-			if(brouillard[i] == 0 && brouillardActive) {
-				Position coord = new Position(i);
-				dessineRectangle(g, coord.x, coord.y, IConfig.COULEUR_BROUILLARD);
+	protected void dessinerTerrain(Graphics g) {
+		int largeur = moteur.getLargeur() * IConfig.NB_PIX_CASE, hauteur = moteur.getHauteur() * IConfig.NB_PIX_CASE;
+
+		if(calqueTerrain == null || calqueTerrain.getWidth() != largeur || calqueTerrain.getHeight() != hauteur) {
+			/* Image au format de l'écran si la carte est affichée : sa copie est la plus rapide possible */
+			GraphicsConfiguration gc = getGraphicsConfiguration();
+			calqueTerrain = (gc != null) ? gc.createCompatibleImage(largeur, hauteur, Transparency.OPAQUE)
+			                             : new BufferedImage(largeur, hauteur, BufferedImage.TYPE_INT_RGB);
+			moteurTerrain = null;
+		}
+
+		if(moteurTerrain != moteur || versionTerrain != moteur.getVersionTerrain()) {
+			Graphics2D g2 = calqueTerrain.createGraphics();
+
+			for(int i = 0; i < moteur.getLargeur(); i++)
+				for(int j = 0; j < moteur.getHauteur(); j++)
+					tileset.dessiner(g2, moteur.getTile(i + moteur.getLargeur() * j), i, j);
+
+			g2.dispose();
+			moteurTerrain = moteur;
+			versionTerrain = moteur.getVersionTerrain();
+		}
+
+		g.drawImage(calqueTerrain, 0, 0, null);
+	}
+
+	/**
+	 * Met à jour le calque du brouillard, en ajoutant ses cases modifiées à la zone à redessiner.
+	 * Le calque est mis à jour même si le brouillard n'est pas affiché, pour être à jour lorsqu'il sera réactivé.
+	 */
+	private void releveBrouillard() {
+		if(calqueBrouillard == null) {
+			calqueBrouillard = new BufferedImage(IConfig.LARGEUR_CARTE * IConfig.NB_PIX_CASE, IConfig.HAUTEUR_CARTE * IConfig.NB_PIX_CASE, BufferedImage.TYPE_INT_ARGB);
+			casesBrouillard = new int[IConfig.LARGEUR_CARTE * IConfig.HAUTEUR_CARTE];
+		}
+
+		int nb_cases = moteur.getBrouillard().prendModifiees(casesBrouillard);
+
+		if(nb_cases > 0) {
+			Graphics2D g2 = calqueBrouillard.createGraphics();
+			g2.setComposite(AlphaComposite.Src);
+
+			for(int i = 0; i < nb_cases; i++) {
+				int c = casesBrouillard[i];
+
+				g2.setColor(moteur.estVisible(c) ? TRANSPARENT : IConfig.COULEUR_BROUILLARD);
+				g2.fillRect((c % IConfig.LARGEUR_CARTE) * IConfig.NB_PIX_CASE, (c / IConfig.LARGEUR_CARTE) * IConfig.NB_PIX_CASE, IConfig.NB_PIX_CASE, IConfig.NB_PIX_CASE);
+
+				if(brouillardActive) {
+					zoneCases.setBounds((c % IConfig.LARGEUR_CARTE) * IConfig.NB_PIX_CASE, (c / IConfig.LARGEUR_CARTE) * IConfig.NB_PIX_CASE, IConfig.NB_PIX_CASE, IConfig.NB_PIX_CASE);
+					Infobulle.ajouteZone(zoneModifiee, zoneCases);
+				}
 			}
+
+			g2.dispose();
 		}
 	}
 
-	
+	/**
+	 * Méthode dessinant le brouillard, depuis son calque mis à jour par releveBrouillard.
+	 * @param g Graphics ou sera dessiner le brouillard
+	 */
+	protected void dessinerBrouillard(Graphics g) {
+		if(calqueBrouillard == null)
+			releveBrouillard();
+
+		if(brouillardActive)
+			g.drawImage(calqueBrouillard, 0, 0, null);
+	}
+
+
 	/**
 	 * Méthode permettant de savoir si la carte a été générée ou non
 	 * @return vrai si elle a été générée, faux sinon
@@ -948,35 +1076,45 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 	public boolean isGeneree(){
 		return this.generee;
 	}
-	
+
+	/**
+	 * Méthode permettant de récupérer le moteur de la partie en cours
+	 * @return Le moteur, null si aucune partie n'a été lancée
+	 */
+	public Moteur getMoteur(){
+		return moteur;
+	}
+
 	/**
 	 * Méthode à appeler lorsque le joueur à gagné. Déclenche les évènements et affice un message
 	 */
 	public void joueurGagne(){
 		this.carteListener.joueurGagne();
-		
+
 		/* Le joueur ne peut plus jouer */
 		tourJoueur = false;
 		caseActionnee = -1;
 		brouillardActive = false;
 		carteListener.historique("Vous avez gagné !");
 		stringFinJeu = "You win !";
+		repaint();
 	}
-	
+
 	/**
 	 * Méthode à appeler quand le joueur perd. Déclenche les évènements et affice un message
 	 */
 	public void joueurPerd(){
 		this.carteListener.joueurPerd();
-		
+
 		/* Le joueur ne peut plus jouer */
 		tourJoueur = false;
 		caseActionnee = -1;
 		brouillardActive = false;
 		carteListener.historique("Vous avez perdu !");
 		stringFinJeu = "Game Over !";
+		repaint();
 	}
-	
+
 	/**
 	 * Méthode permettant de faire combattre 2 soldats et vérifie ensuite si une armée a gagné
 	 * @param attaquant Le soldat qui attaque
@@ -984,65 +1122,35 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 	 * @param distance La distance qui sépare les deux soldats
 	 * @return Vrai si une des deux armées a gagné, faux sinon
 	 */
-	public boolean faitCombattre(Soldat attaquant, Soldat defenseur, int distance) {		
-		boolean retour = false;
-		
-		/* On commence à faire tourner l'attaquant dans la direction du defenseur (juste la première direction, les images ne gérant pas les diagonales */
-		attaquant.setDirection(attaquant.getPosition().direction(defenseur.getPosition()).get(0));
-		
-		int v = attaquant.combat(defenseur, distance);
-		
-		if(attaquant instanceof Monstre){
-			if(v == -1){
-				nbMonstresRestant--;	
-			}
-			else if(v == 1) {
-				nbHerosRestant--;
-				changeBrouillard(defenseur.getPosition(), defenseur.getPortee() , -1);
-			}
-		}
-		else{
-			if(v == -1) {
-				nbHerosRestant--;
-				changeBrouillard(attaquant.getPosition(), attaquant.getPortee() , -1);
-			}
-			else if(v == 1){
-				nbMonstresRestant--;
-			}
-		}
+	public boolean faitCombattre(Soldat attaquant, Soldat defenseur, int distance) {
 		caseActionnee = -1;
-		if(nbMonstresRestant <= 0){
-			joueurGagne();	
-			retour = true;
-		}
-		else if(nbHerosRestant <= 0){
-			joueurPerd();
-			retour = true;
-		}
-		
-		return retour;
+
+		return moteur.faitCombattre(attaquant.getUnite(), defenseur.getUnite(), distance);
 	}
-		
-	/** 
+
+	/**
 	 * Change la valeur de la caseActionnée en fonction du numéro d'un héros
-	 * @param num_heros Case Actuel du héros séléctionnée
-	 * @return numéro de la case du nouveau héros
+	 * @param num_heros Numéro du héros actuellement sélectionné
+	 * @return numéro du nouveau héros
 	 */
 	public int trouverProchainHeros(int num_heros) {
-		if(++num_heros >= nbHerosRestant)
-			num_heros = 0;
-		
-		// La boucle s'arretera car , si on a plus de héros qui peuvent jouer, le tour s'arrete
-		// si jamais on veut avoir tout les perso, retirer entierement la boucle si dessous
-		while(heros.get(num_heros).getAJoue())
-			if(++num_heros >= nbHerosRestant)
+		ArrayList<Unite> heros = moteur.getHeros();
+
+		/* On parcourt au plus une fois la liste des héros, à la recherche d'un héros qui peut encore jouer */
+		for(int i = 0; i < heros.size(); i++) {
+			if(++num_heros >= heros.size())
 				num_heros = 0;
-		
-		caseActionnee = heros.get(num_heros).getPosition().getNumCase();
-		
+
+			Unite h = heros.get(num_heros);
+			if(!h.estMort() && !h.getAJoue()) {
+				caseActionnee = h.getCase();
+				break;
+			}
+		}
+
 		return num_heros;
 	}
-	
+
 
 	/**
 	 * Méthode permettant de savoir s'il y a un obstacle entre deux positions en prenant un chemin linéaire
@@ -1051,171 +1159,141 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 	 * @return Vrai si il y a un obstacle, faux sinon
 	 */
 	public boolean obstacleEntreCase(Position position1, Position position2){
-		boolean obstacle = false;
-		
-		/* On prend la coordonnée haut gauche du pixel de la case position */
-		Point p1 = position1.getCoordPixel();
-		Point p2 = position2.getCoordPixel();
-		
-		/* On se place au centre de la case */
-		p1.x -= IConfig.NB_PIX_CASE/2;
-		p1.y -= IConfig.NB_PIX_CASE/2;
-		p2.x -= IConfig.NB_PIX_CASE/2;
-		p2.y -= IConfig.NB_PIX_CASE/2;	
-		
-		/* Si les deux positions sont sur le même axe vertical, on vérifie juste les cases une à une entre les deux positions */
-		if(position1.x == position2.x){
-			
-			/* On choisit la position la plus en dessous de l'autre */
-			Position dessus, dessous;
-			if(position1.y < position2.y){
-				dessus = position2;
-				dessous = position1;
-			}
-			else{
-				dessus = position1;
-				dessous = position2;
-			}
-			
-			/* On se place sur la case juste au dessus de la position du dessous */
-			for(int y = dessous.y + 1; y < dessus.y && obstacle == false; y++){
-				/* Et on vérifie que chaque case entre les deux positions est traversable */
-				Position position_en_cours = new Position(dessus.x, y);
-				int num_tile = carte[position_en_cours.getNumCase()];
-				Tile tile = tileset.getTile(num_tile);
-				
-				if(!position_en_cours.estValide() || soldat[position_en_cours.getNumCase()] != null || !tile.estTraversable()){
-					obstacle = true;
-				}
-			}
-		}
-		else{
-			/* On regarde la position des deux points l'un par rapport à l'autre */
-			Point droite, gauche;
-			if(p1.x < p2.x){
-				droite = p2;
-				gauche = p1;
-			}
-			else{
-				droite = p1;
-				gauche = p2;
-			}
-			
-			/* On construit l'équation de notre fonction, rappelons que y = ax + b */
-			double a = (double)(droite.y - gauche.y)/(double)(droite.x - gauche.x);
-			double b = gauche.y - a * gauche.x;
-						
-			/* Pour chaque pixel entre les deux positions */
-			for(int x = gauche.x; x < droite.x; x++){
-				/* On calcule le y */
-				int y = (int) (a * x + b);
-				
-				/* On calcule dans quelle case est le pixel */
-				double x_case = Math.round((double)x / (double)IConfig.NB_PIX_CASE);
-				double y_case = Math.round((double)y / (double)IConfig.NB_PIX_CASE);
-								
-				Position position_en_cours = new Position((int)x_case, (int)y_case);	
-				
-				int num_tile = carte[position_en_cours.getNumCase()];
-				Tile tile = tileset.getTile(num_tile);
-
-				/* Et on vérifie que cette case est traversable.
-				 * Il faut aussi vérifier que le pixel n'est pas dans la case d'une des deux positions (car on ne veut voir si il n'y a pas d'obstacle seulement ENTRE les deux positons)
-				 */
-				if(!position_en_cours.equals(position1) && !position_en_cours.equals(position2) && 
-					(!position_en_cours.estValide() || soldat[position_en_cours.getNumCase()] != null || !tile.estTraversable())){
-					obstacle = true;
-				}
-			}
-		}
-		
-		return obstacle;
+		return moteur.obstacleEntreCase(position1.getNumCase(), position2.getNumCase());
 	}
-	
+
 	/**
 	 * Méthode permettant de faire reposer un soldat avec évènement, ce dernier précisant dans une phrase le regain du joueur
 	 * @param s Le soldat à reposer
 	 * @param afficher_message Afficher un message sur la carte ? (infobulle)
 	 */
 	public void faitReposer(Soldat s, boolean afficher_message){
-		int regain = s.repos(afficher_message);
-		
-		if(regain == -1){
-			carteListener.historique(s.getNom()+ " " + s.getPosition().toString() + " a sa vie au maximum");
-		}
-		else{
-			carteListener.historique(s.getNom() + " se repose et regagne " + regain + " points de vie");
-		}
+		moteur.faitReposer(s.getUnite(), afficher_message);
 	}
-	
+
 	/* Rappel sur l'ordre du tableau :
 	 * 	HAUT, BAS, GAUCHE, DROITE
 	 */
 	/** Change la position d'un soldat en fonction des touches du tableau définit dans FenetreJeu */
 	public void changePos(boolean[] tabKey) {
-		if(caseActionnee == -1 || !generee )
+		if(caseActionnee == -1 || !generee || relecture != null)
 			return;
-			
-		if(!(soldat[caseActionnee] instanceof Heros))
+
+		Unite selection = moteur.getSoldat(caseActionnee);
+		if(selection == null || !selection.estHeros())
 			return;
-			
-		Position pos = soldat[caseActionnee].getPosition();
-		Position caseArrivee = null;
-		
-		/* Si on a haut */
-		if(tabKey[0]) {	
-			if(tabKey[2]) /* haut gauche */	
-				caseArrivee = new Position(pos.x - 1, pos.y - 1);
-			else if(tabKey[3]) /* haut droite */
-				caseArrivee = new Position(pos.x + 1, pos.y - 1);
-			else /* haut */			  
-				caseArrivee = new Position(pos.x, pos.y - 1);
-		}
-		else if(tabKey[1]) { /* Sinon si on a bas */
-			if(tabKey[2]) /* bas gauche */
-				caseArrivee = new Position(pos.x - 1, pos.y + 1);
-			else if(tabKey[3]) /* bas droite */
-				caseArrivee = new Position(pos.x + 1, pos.y + 1);
-			else /* bas */
-				caseArrivee = new Position(pos.x, pos.y + 1);
-		}
-		else if(tabKey[2]) /* Gauche */	  
-			caseArrivee = new Position(pos.x - 1, pos.y);
-		else if(tabKey[3]) /* Droite */
-			caseArrivee = new Position(pos.x + 1, pos.y);	
-		else					  
+
+		int x = caseActionnee % IConfig.LARGEUR_CARTE, y = caseActionnee / IConfig.LARGEUR_CARTE;
+		int dx = 0, dy = 0;
+
+		/* Haut ou bas, puis gauche ou droite : les deux ensemble donnent une diagonale */
+		if(tabKey[0])
+			dy = -1;
+		else if(tabKey[1])
+			dy = 1;
+
+		if(tabKey[2])
+			dx = -1;
+		else if(tabKey[3])
+			dx = 1;
+
+		if(dx == 0 && dy == 0)
 			return;
-		
-		if( caseArrivee.estValide() 
-				&& tileset.getTile(carte[caseArrivee.getNumCase()]).estPraticable() 
-				&& soldat[caseArrivee.getNumCase()] == null
-				&& !soldat[caseActionnee].getAJoue()) 
+
+		int case_arrivee = x + dx + IConfig.LARGEUR_CARTE * (y + dy);
+
+		if( moteur.estValide(x + dx, y + dy)
+				&& moteur.estLibre(case_arrivee)
+				&& !selection.getAJoue())
 		{
 			try {
-				deplaceSoldat(soldat[caseActionnee], caseArrivee);
+				moteur.deplaceSoldat(selection, case_arrivee);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 			caseActionnee = -1;
 		}
 	}
-	/** 
-	 * Met la vie de tout les soldats a 1 Point de vie 
+	/**
+	 * Met la vie de tout les soldats a 1 Point de vie (sauf pendant une relecture)
 	 */
 	public void mortSubite() {
-		for(int i = 0; i < IConfig.LARGEUR_CARTE * IConfig.HAUTEUR_CARTE; i++)
-				if(soldat[i] != null) 
-					soldat[i].setVie(1);
+		if(relecture != null)
+			return;
+
+		moteur.mortSubite();
+	}
+
+	/* ############################# ÉVÈNEMENTS DU MOTEUR ############################# */
+
+	public void historique(String s) {
+		carteListener.historique(s);
+	}
+
+	public void deplacement(Unite u, int depart, int arrivee) {
+		Son.joueCourir();
+
+		Soldat s = vue(u);
+		if(s != null)
+			s.deplacer(depart, arrivee);
 	}
 
+	public void combat(Unite attaquant, Unite defenseur, int distance, int degat, int riposte) {
+		Soldat a = vue(attaquant);
+		Soldat d = vue(defenseur);
+
+		/* On fait tourner l'attaquant dans la direction du defenseur (juste la première direction, les images ne gérant pas les diagonales) */
+		if(a != null && d != null)
+			a.setDirection(a.getPosition().direction(d.getPosition()));
+
+		/* On joue le bruitage approprié */
+		if(distance > 1)
+			Son.joueArc();
+		else
+			Son.joueEpee();
+
+		Infobulle.newMessage(defenseur.getCase(), "-" + degat, IConfig.MESSAGE_NEGATIF, IConfig.MOUV_INFOBULLE_BAS, 30);
+
+		if(riposte != -1)
+			Infobulle.newMessage(attaquant.getCase(), "-" + riposte, IConfig.MESSAGE_NEGATIF, IConfig.MOUV_INFOBULLE_BAS, 0);
+	}
+
+	public void repos(Unite u, int regain, boolean afficher_message) {
+		if(regain != -1)
+			Infobulle.newMessage(u.getCase(), "+ " + regain, IConfig.MESSAGE_POSITIF, IConfig.MOUV_INFOBULLE_HAUT, 0);
+		else if(afficher_message)
+			Infobulle.newMessage(u.getCase(), "Vie au max", IConfig.MESSAGE_NEUTRE, 2, 0);
+	}
+
+	public void mort(Unite u) {
+		Soldat s = vue(u);
+		if(s != null) {
+			Son.joueMourir(s);
+			s.setMort(true);
+		}
+
+		caseActionnee = -1;
+	}
+
+	public void finPartie(boolean gagne) {
+		if(gagne)
+			joueurGagne();
+		else
+			joueurPerd();
+	}
+
+	/* ############################# ACCESSEURS ############################# */
+
 	public void setAffichageHistorique(String affichage) {
 		afficheHistorique = affichage;
+		repaint();
 	}
-		
+
 	public void setBrouillardActive(boolean active) {
 		brouillardActive = active;
+		repaint();
 	}
-	
+
 	public boolean getBrouillardActive() {
 		return brouillardActive;
 	}
@@ -1223,23 +1301,23 @@ public class Carte extends JPanel implements ICarte, ActionListener, Serializabl
 	public void setArmagedon(boolean active) {
 		armagedon = active;
 	}
-	
+
 	public boolean getArmagedon() {
 		return armagedon;
 	}
-	
+
 	public void setAjoutMonstre(boolean active) {
 		ajoutMonstre = active;
 	}
-	
+
 	public boolean getAjoutMonstre() {
 		return ajoutMonstre;
 	}
-	
+
 	public void setAjoutHeros(boolean active) {
 		ajoutHeros = active;
 	}
-	
+
 	public boolean getAjoutHeros() {
 		return ajoutHeros;
 	}
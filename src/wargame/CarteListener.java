@@ -26,4 +26,16 @@ public interface CarteListener {
 	 * @param s La phrase d'information
 	 */
 	void information(String s);
+	/**
+	 * Événement lorsqu'une sauvegarde est écrite sur le disque, ou n'a pas pu l'être
+	 * @param chemin Chemin de la sauvegarde
+	 * @param reussie Vrai si la sauvegarde est écrite
+	 */
+	void sauvegardeTerminee(String chemin, boolean reussie);
+	/**
+	 * Événement lorsqu'une partie chargée a remplacé la partie en cours, ou n'a pas pu être chargée
+	 * @param chemin Chemin de la sauvegarde
+	 * @param reussi Vrai si la partie est chargée
+	 */
+	void chargementTermine(String chemin, boolean reussi);
 }
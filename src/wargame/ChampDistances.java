@@ -0,0 +1,147 @@
+package wargame;
+
+import java.util.Arrays;
+
+/**
+ * Champ de distances partagé par tous les monstres : pour chaque case praticable, le nombre de pas
+ * (déplacements d'une case, diagonales comprises) jusqu'à la source la plus proche.
+ * Les sources sont les cases des héros ciblés ; le champ est calculé sur le terrain seul,
+ * les unités bloquant un pas n'étant testées qu'à la descente.
+ *
+ * Le parcours en largeur avance couche par couche sur des tables de bits : la couche suivante est la dilatation
+ * de la couche courante aux huit voisines, calculée 64 cases à la fois.
+ * Les sources s'ajoutent en cours de tour : une case atteinte dont la distance ne diminue pas est retirée de la couche,
+ * chaque ajout ne s'étend donc qu'aux cases qu'il rapproche d'une source.
+ * Un monstre descend alors le champ en ne regardant que ses huit voisines, quel que soit le nombre de monstres.
+ */
+final class ChampDistances
+{
+	/** Distance des cases qu'aucune source n'atteint. */
+	static final int INFINI = Integer.MAX_VALUE;
+
+	private final int largeur;
+
+	/** Distance de chaque case à la source la plus proche. */
+	private final int[] distances;
+
+	/** Bit à 1 pour les cases praticables, partagée avec le plateau. */
+	private final long[] praticables;
+
+	/** Bit à 1 pour les cases hors de la première colonne, et pour celles hors de la dernière (les bits au-delà de la carte sont à 0). */
+	private final long[] saufPremiere;
+	private final long[] saufDerniere;
+
+	/** Couche courante, dilatation horizontale et couche suivante du parcours, cases déjà atteintes. */
+	private final long[] couche;
+	private final long[] horizontale;
+	private final long[] suivante;
+	private final long[] atteintes;
+
+	/** Nombre de sources ajoutées depuis le dernier vidage. */
+	private int nbSources;
+
+	/**
+	 * Constructeur d'un champ sans source
+	 * @param largeur Largeur de la carte en nombre de cases
+	 * @param hauteur Hauteur de la carte en nombre de cases
+	 * @param praticables Table de bits des cases praticables (voir Plateau.getPraticables)
+	 */
+	ChampDistances(int largeur, int hauteur, long[] praticables)
+	{
+		int mots = (largeur * hauteur + 63) >>> 6;
+
+		this.largeur = largeur;
+		distances = new int[largeur * hauteur];
+		this.praticables = praticables;
+		saufPremiere = new long[mots];
+		saufDerniere = new long[mots];
+		couche = new long[mots];
+		horizontale = new long[mots];
+		suivante = new long[mots];
+		atteintes = new long[mots];
+
+		for(int c = 0; c < largeur * hauteur; c++) {
+			if(c % largeur != 0)
+				saufPremiere[c >>> 6] |= 1L << c;
+			if(c % largeur != largeur - 1)
+				saufDerniere[c >>> 6] |= 1L << c;
+		}
+
+		Arrays.fill(distances, INFINI);
+	}
+
+	/** Retire toutes les sources. */
+	void vide()
+	{
+		if(nbSources == 0)
+			return;
+
+		Arrays.fill(distances, INFINI);
+		nbSources = 0;
+	}
+
+	int getNbSources() {
+		return nbSources;
+	}
+
+	/**
+	 * Distance d'une case à la source la plus proche
+	 * @param num_case Numéro de la case
+	 * @return Le nombre de pas, INFINI si aucune source n'est atteignable
+	 */
+	int distance(int num_case)
+	{
+		return distances[num_case];
+	}
+
+	/**
+	 * Ajoute une source et met à jour les distances qu'elle raccourcit
+	 * @param num_case Case de la source
+	 */
+	void ajouteSource(int num_case)
+	{
+		nbSources++;
+
+		if(distances[num_case] == 0)
+			return;
+
+		Arrays.fill(couche, 0);
+		Arrays.fill(atteintes, 0);
+		couche[num_case >>> 6] = atteintes[num_case >>> 6] = 1L << num_case;
+		distances[num_case] = 0;
+
+		for(int d = 1; ; d++) {
+			/* Dilatation de la couche aux voisines de gauche et de droite, sans passer d'une ligne à l'autre */
+			for(int m = 0; m < couche.length; m++)
+				horizontale[m] = couche[m] | (LigneDeVue.motDecale(couche, 64 * m - 1) & saufPremiere[m])
+				                           | (LigneDeVue.motDecale(couche, 64 * m + 1) & saufDerniere[m]);
+
+			/* Puis aux lignes du dessus et du dessous : seules les cases praticables pas encore atteintes sont gardées */
+			boolean vide = true;
+
+			for(int m = 0; m < couche.length; m++) {
+				long bits = (horizontale[m] | LigneDeVue.motDecale(horizontale, 64 * m - largeur)
+				                            | LigneDeVue.motDecale(horizontale, 64 * m + largeur)) & praticables[m] & ~atteintes[m];
+				atteintes[m] |= bits;
+
+				/* Une case que la source ne rapproche pas n'est pas étendue */
+				for(long reste = bits; reste != 0; reste &= reste - 1) {
+					int c = (m << 6) + Long.numberOfTrailingZeros(reste);
+
+					if(distances[c] > d)
+						distances[c] = d;
+					else
+						bits &= ~(reste & -reste);
+				}
+
+				suivante[m] = bits;
+				vide &= bits == 0;
+			}
+
+			if(vide)
+				return;
+
+			System.arraycopy(suivante, 0, couche, 0, couche.length);
+		}
+	}
+}
@@ -1,17 +1,15 @@
 package wargame;
 
 import java.awt.Graphics;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 
 import javax.imageio.ImageIO;
-import javax.swing.Timer;
 
-/** Classe de chargement de Charset. */
-public class Charset implements ActionListener
+/** Classe de chargement de Charset. Le charset est animé par une Horloge, seulement lorsqu'il le demande (anime). */
+public class Charset
 {
 	/** Nombre d'animations pour une direction. */
 	public final static char N_ANIMATIONS = 4;
@@ -81,8 +79,16 @@ public class Charset implements ActionListener
 	/** Délai entre chaque animation. */
 	protected int delai = 100;
 			
-	/** Timer. */
-	Timer timer;
+	/** Horloge qui anime le charset, null tant qu'il n'est pas affiché. */
+	private Horloge horloge;
+	
+	/** Place du charset dans la roue de l'horloge : alvéole (-1 hors de la roue), échéance (ms) et voisins de l'alvéole. */
+	int alveole = -1;
+	long echeance;
+	Charset precedent, suivant;
+	
+	/** Heure de l'horloge (ms) où l'image courante de l'animation a commencé. */
+	long instant = Long.MIN_VALUE / 2;
 	
 	/** Est visible ? */
 	protected boolean estVisible = true;
@@ -94,9 +100,6 @@ public class Charset implements ActionListener
 	public Charset()
 	{
 		image = null;
-		timer = new Timer(delai, this);
-	    timer.setInitialDelay(0);
-	    timer.start();	    
 	}
 	
 	/** Charge un charset en mémoire.
@@ -143,6 +146,28 @@ public class Charset implements ActionListener
 					       sx, sy, sx + width, sy + height, null);
 	}
 	
+	/** Zone de la carte où dessinerAvecOffset dessine le charset.
+	 * @param x Destination sur la carte.
+	 * @param y Destination sur la carte.
+	 * @param offsetX Offset x
+	 * @param offsetY Offset dy
+	 * @param zone Reçoit la zone, en pixels, vide si l'image du charset n'existe pas encore.
+	 */
+	protected void getZone(int x, int y, int offsetX, int offsetY, Rectangle zone)
+	{
+		if(image == null) {
+			zone.setBounds(0, 0, 0, 0);
+			return;
+		}
+
+		int width = image.getWidth() / N_ANIMATIONS;
+		int height = image.getHeight() / N_DIRECTIONS;
+
+		zone.setBounds(x * IConfig.NB_PIX_CASE + (IConfig.NB_PIX_CASE - width) / 2 + offsetX,
+		               y * IConfig.NB_PIX_CASE + IConfig.NB_PIX_CASE - height + offsetY + offset,
+		               width, height);
+	}
+	
 	/** Dessine le charset.
 	 * 	Ne fait rien si l'image du charset n'existe pas encore.
 	 * @param g Zone de dessin.
@@ -181,16 +206,73 @@ public class Charset implements ActionListener
 		return estVisible;
 	}
 	
-	/** Update le status du charset.
-	 *  @param e Evenement appellant, le timer.
+	/** Délai entre deux images de l'animation.
+	 * @return Le délai, en ms.
+	 */
+	public int getDelai()
+	{
+		return delai;
+	}
+	
+	/** Associe le charset à l'horloge qui l'anime.
+	 * @param horloge Horloge de la carte où il est affiché.
+	 */
+	void setHorloge(Horloge horloge)
+	{
+		arrete();
+		this.horloge = horloge;
+	}
+	
+	/** Lance l'animation du charset : l'horloge appelle avance tous les delai ms, tant qu'elle retourne vrai.
+	 *  Ne fait rien sans horloge, ou si l'animation est déjà lancée.
+	 */
+	protected void anime()
+	{
+		if(horloge != null)
+			horloge.programme(this);
+	}
+	
+	/** Arrête l'animation du charset, qui n'est plus appelé par son horloge. */
+	void arrete()
+	{
+		if(horloge != null)
+			horloge.retire(this);
+	}
+	
+	/** Part de l'image courante déjà écoulée, pour afficher une position intermédiaire entre l'image précédente et celle-ci.
+	 * @return Un nombre entre 0 (l'image vient de commencer) et 1 (son délai est écoulé, ou pas d'horloge).
+	 */
+	protected double getFraction()
+	{
+		if(horloge == null)
+			return 1.0;
+		
+		long ecoule = horloge.getHeure() - instant;
+		if(ecoule >= delai)
+			return 1.0;
+		
+		return (ecoule <= 0) ? 0.0 : ecoule / (double)delai;
+	}
+	
+	/** L'image courante commence maintenant : getFraction repart de 0. */
+	protected void marqueImage()
+	{
+		if(horloge != null)
+			instant = horloge.getHeure();
+	}
+	
+	/** Update le status du charset, appelé par l'horloge.
+	 *  @return Vrai si l'animation continue, faux pour que l'horloge n'appelle plus le charset.
 	 */
-    public void actionPerformed(ActionEvent e)
-    {    
-    	/* Update seulement si le charset est affichable. */
-    	if(estVisible)	{
-    		/* Affichage normal. */
-    		if(++animation >= N_ANIMATIONS)
-    			animation = 0;
-    	}
+	protected boolean avance()
+	{
+		/* Update seulement si le charset est affichable. */
+		if(estVisible)	{
+			/* Affichage normal. */
+			if(++animation >= N_ANIMATIONS)
+				animation = 0;
+		}
+		
+		return estVisible;
 	}
 }
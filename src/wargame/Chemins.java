@@ -0,0 +1,318 @@
+package wargame;
+
+import java.util.Arrays;
+
+/**
+ * Recherche de plus courts chemins (A*) entre deux cases, en nombre de pas d'une case (diagonales comprises),
+ * à travers les cases praticables et sans unité. Aucune allocation lors d'une recherche : les ensembles ouvert et fermé
+ * sont des tableaux d'entiers indexés par case, remis à zéro par un numéro de génération.
+ *
+ * L'heuristique est la distance de Tchebychev, max(dx, dy) : un pas, diagonal ou non, rapproche d'au plus une case
+ * sur chaque axe, il en faut donc au moins max(dx, dy) pour arriver. Elle ne surestime jamais, le chemin trouvé est donc le plus court. À estimation égale, la case la plus proche de l'arrivée
+ * en distance octile usuelle (diagonale plus longue) est explorée d'abord, ce qui donne des chemins plus droits.
+ *
+ * Les derniers chemins trouvés sont gardés en cache. Un chemin en cache n'est invalidé que lorsqu'une de ses cases
+ * devient occupée, sauf par l'unité qui le suit ; il sert aussi aux recherches partant d'une case qu'il traverse.
+ * Les cases libérées n'invalident rien : un chemin en cache reste praticable, mais peut devenir plus long que le plus court.
+ */
+final class Chemins
+{
+	/** Nombre de chemins gardés en cache (au plus 32 : les chemins passant par une case sont un masque de bits). */
+	private static final int NB_CACHE = 32;
+
+	private final int largeur;
+
+	/** Plateau du moteur : cases praticables et occupées, lu à chaque recherche. */
+	private final Plateau plateau;
+
+	/** Nombre de pas depuis le départ, et case précédente, des cases atteintes par la recherche courante. */
+	private final int[] pas;
+	private final int[] precedente;
+
+	/** Génération de la dernière recherche ayant atteint, et fermé, chaque case. */
+	private final int[] atteinte;
+	private final int[] fermee;
+	private int generation = 0;
+
+	/** Tas binaire des cases ouvertes, clé de tri de chaque case et sa place dans le tas. */
+	private final int[] tas;
+	private final long[] cles;
+	private final int[] placeTas;
+	private int tailleTas;
+
+	/** Chemins en cache, départ compris, leur longueur (0 si la place est libre) et leur arrivée. */
+	private final int[][] cache = new int[NB_CACHE][];
+	private final int[] longueurs = new int[NB_CACHE];
+	private final int[] arrivees = new int[NB_CACHE];
+	private int prochain = 0;
+
+	/** Pour chaque case, le masque des chemins en cache qui la traversent. */
+	private final int[] utilisateurs;
+
+	/**
+	 * Constructeur
+	 * @param largeur Largeur de la carte en nombre de cases
+	 * @param hauteur Hauteur de la carte en nombre de cases
+	 * @param plateau Plateau du moteur
+	 */
+	Chemins(int largeur, int hauteur, Plateau plateau)
+	{
+		this.largeur = largeur;
+		this.plateau = plateau;
+
+		int nb_cases = largeur * hauteur;
+		pas = new int[nb_cases];
+		precedente = new int[nb_cases];
+		atteinte = new int[nb_cases];
+		fermee = new int[nb_cases];
+		tas = new int[nb_cases];
+		cles = new long[nb_cases];
+		placeTas = new int[nb_cases];
+		utilisateurs = new int[nb_cases];
+	}
+
+	/**
+	 * Cherche un plus court chemin entre deux cases
+	 * @param depart Case de départ (occupée par l'unité à déplacer)
+	 * @param arrivee Case d'arrivée, qui doit être libre
+	 * @param etapes Rempli avec les cases du chemin, départ exclu et arrivée comprise (au plus etapes.length cases)
+	 * @return Le nombre de pas du chemin, -1 s'il n'y en a pas
+	 */
+	int cherche(int depart, int arrivee, int[] etapes)
+	{
+		if(depart == arrivee)
+			return 0;
+
+		if(!plateau.estLibre(arrivee))
+			return -1;
+
+		/* Un chemin en cache allant à la même arrivée et passant par le départ */
+		for(int s = 0; s < NB_CACHE; s++) {
+			if(longueurs[s] == 0 || arrivees[s] != arrivee)
+				continue;
+
+			int i = indice(s, depart);
+			if(i >= 0 && suiteLibre(s, i))
+				return copie(s, i, etapes);
+		}
+
+		if(!aStar(depart, arrivee))
+			return -1;
+
+		return copie(enCache(depart, arrivee), 0, etapes);
+	}
+
+	/**
+	 * Signale qu'une case vient d'être occupée : les chemins en cache qui la traversent sont invalidés,
+	 * sauf ceux dont c'est le pas suivant l'ancienne case de l'unité (l'unité suit le chemin)
+	 * @param num_case La case occupée
+	 * @param depart L'ancienne case de l'unité, -1 si elle vient d'être placée
+	 */
+	void occupe(int num_case, int depart)
+	{
+		for(int masque = utilisateurs[num_case]; masque != 0; masque &= masque - 1) {
+			int s = Integer.numberOfTrailingZeros(masque);
+			int i = indice(s, num_case);
+
+			if(i <= 0 || cache[s][i - 1] != depart)
+				libere(s);
+		}
+	}
+
+	/**
+	 * Recherche A* ; en cas de succès, le chemin se lit en remontant precedente depuis l'arrivée
+	 * @return Vrai si l'arrivée est atteignable
+	 */
+	private boolean aStar(int depart, int arrivee)
+	{
+		if(++generation == 0) {
+			Arrays.fill(atteinte, 0);
+			Arrays.fill(fermee, 0);
+			generation = 1;
+		}
+
+		int ax = arrivee % largeur, ay = arrivee / largeur;
+
+		tailleTas = 0;
+		pas[depart] = 0;
+		atteinte[depart] = generation;
+		ouvre(depart, cle(0, depart % largeur, depart / largeur, ax, ay));
+
+		while(tailleTas > 0) {
+			int c = extrait();
+
+			if(c == arrivee)
+				return true;
+
+			fermee[c] = generation;
+
+			int x = c % largeur, y = c / largeur;
+			int p = pas[c] + 1;
+
+			/* Seules les voisines libres sont parcourues (le masque peut contenir la case courante, qui est déjà fermée) */
+			for(int voisines = plateau.voisinesLibres(c); voisines != 0; voisines &= voisines - 1) {
+				int b = Integer.numberOfTrailingZeros(voisines);
+				int i = x + b / 3 - 1, j = y + b % 3 - 1;
+				int v = i + largeur * j;
+
+				if(fermee[v] == generation)
+					continue;
+
+				if(atteinte[v] != generation) {
+					atteinte[v] = generation;
+					pas[v] = p;
+					precedente[v] = c;
+					ouvre(v, cle(p, i, j, ax, ay));
+				}
+				else if(p < pas[v]) {
+					pas[v] = p;
+					precedente[v] = c;
+					cles[v] = cle(p, i, j, ax, ay);
+					monte(placeTas[v]);
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Clé de tri d'une case ouverte : nombre de pas estimé par le chemin (pas déjà faits plus heuristique),
+	 * puis distance octile à l'arrivée (orthogonale 2, diagonale 3) pour départager
+	 */
+	private static long cle(int pas, int x, int y, int ax, int ay)
+	{
+		int dx = Math.abs(x - ax), dy = Math.abs(y - ay);
+		int octile = 2 * (dx + dy) - Math.min(dx, dy);
+
+		return ((long)(pas + Math.max(dx, dy)) << 32) | octile;
+	}
+
+	private void ouvre(int c, long cle)
+	{
+		cles[c] = cle;
+		tas[tailleTas] = c;
+		placeTas[c] = tailleTas;
+		monte(tailleTas++);
+	}
+
+	private int extrait()
+	{
+		int c = tas[0];
+
+		tas[0] = tas[--tailleTas];
+		placeTas[tas[0]] = 0;
+		descend(0);
+
+		return c;
+	}
+
+	private void monte(int i)
+	{
+		int c = tas[i];
+
+		while(i > 0 && cles[tas[(i - 1) >> 1]] > cles[c]) {
+			tas[i] = tas[(i - 1) >> 1];
+			placeTas[tas[i]] = i;
+			i = (i - 1) >> 1;
+		}
+
+		tas[i] = c;
+		placeTas[c] = i;
+	}
+
+	private void descend(int i)
+	{
+		int c = tas[i];
+
+		for(int f = 2 * i + 1; f < tailleTas; f = 2 * i + 1) {
+			if(f + 1 < tailleTas && cles[tas[f + 1]] < cles[tas[f]])
+				f++;
+			if(cles[tas[f]] >= cles[c])
+				break;
+
+			tas[i] = tas[f];
+			placeTas[tas[i]] = i;
+			i = f;
+		}
+
+		tas[i] = c;
+		placeTas[c] = i;
+	}
+
+	/**
+	 * Range le chemin trouvé par la dernière recherche dans une place du cache, à la place du plus ancien
+	 * @return La place du cache
+	 */
+	private int enCache(int depart, int arrivee)
+	{
+		int s = prochain;
+		prochain = (prochain + 1) % NB_CACHE;
+		libere(s);
+
+		int longueur = pas[arrivee] + 1;
+		if(cache[s] == null || cache[s].length < longueur)
+			cache[s] = new int[Math.max(longueur, 2 * ((cache[s] == null) ? 16 : cache[s].length))];
+
+		for(int i = longueur - 1, c = arrivee; i >= 0; i--, c = precedente[c]) {
+			cache[s][i] = c;
+			utilisateurs[c] |= 1 << s;
+		}
+
+		longueurs[s] = longueur;
+		arrivees[s] = arrivee;
+
+		return s;
+	}
+
+	/**
+	 * Vide une place du cache
+	 */
+	private void libere(int s)
+	{
+		for(int i = 0; i < longueurs[s]; i++)
+			utilisateurs[cache[s][i]] &= ~(1 << s);
+
+		longueurs[s] = 0;
+	}
+
+	/**
+	 * Position d'une case dans un chemin en cache, -1 s'il ne la traverse pas
+	 */
+	private int indice(int s, int num_case)
+	{
+		if((utilisateurs[num_case] & (1 << s)) == 0)
+			return -1;
+
+		for(int i = 0; i < longueurs[s]; i++)
+			if(cache[s][i] == num_case)
+				return i;
+
+		return -1;
+	}
+
+	/**
+	 * Vérifie que les cases d'un chemin en cache après la case d'indice i sont toujours libres
+	 * (une unité peut s'y trouver si elle a suivi le même chemin)
+	 */
+	private boolean suiteLibre(int s, int i)
+	{
+		for(int j = i + 1; j < longueurs[s]; j++)
+			if(!plateau.estLibre(cache[s][j]))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Copie la fin d'un chemin en cache, après la case d'indice i
+	 * @return Le nombre de pas restants
+	 */
+	private int copie(int s, int i, int[] etapes)
+	{
+		int restants = longueurs[s] - 1 - i;
+		System.arraycopy(cache[s], i + 1, etapes, 0, Math.min(restants, etapes.length));
+
+		return restants;
+	}
+}
@@ -17,6 +17,7 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
 import javax.swing.JSeparator;
 import javax.swing.KeyStroke;
 import javax.swing.SwingConstants;
@@ -33,6 +34,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
@@ -66,12 +68,21 @@ public class FenetreJeu extends JFrame
 	/* Options des menus */
 	/** Nouvelle partie. */
 	private JMenuItem nouveau;
+	/** Reprise de la partie sauvegardée automatiquement. */
+	private JMenuItem reprendre;
+	/** Relecture de la dernière partie enregistrée. */
+	private JMenuItem revoir;
 	/** Quitter. */
 	private JMenuItem quitter;
 	/** Liste des sauvegardes. */
 	private JMenuItem []sauvegarde;
 	/** Liste des slots de chargement. */
 	private JMenuItem []slot;
+	/** Index des en-têtes des sauvegardes de chaque slot. */
+	private IndexSauvegardes index = new IndexSauvegardes(IConfig.CHEMIN_SAUVEGARDE, IConfig.NOM_SAUVEGARDE, IConfig.NB_SAUVEGARDES);
+	/** Miniature de chaque slot, et date de la sauvegarde dont elle est tirée. */
+	private ImageIcon[] miniatures = new ImageIcon[IConfig.NB_SAUVEGARDES];
+	private long[] dateMiniatures = new long[IConfig.NB_SAUVEGARDES];
 	/** Activer / Désactiver son */
 	private JMenuItem son;
 	/** Activer / Désactiver le brouillard */
@@ -142,13 +153,97 @@ public class FenetreJeu extends JFrame
 	private JMenuItem itemMortSubite;
 	
 	/**
-	 * Méthode privée permettant de récupérer la date de la dernière modification d'un fichier
-	 * @param f Le fichier
-	 * @return La date de la dernière modification
+	 * Méthode privée permettant de formater une date
+	 * @param date La date en millisecondes
+	 * @return La date formatée
 	 */
-    private String getDate(File f)
+    private String getDate(long date)
     {
-		return new SimpleDateFormat("dd-MM-yyyy HH-mm-ss").format( new Date(f.lastModified()));
+		return new SimpleDateFormat("dd-MM-yyyy HH-mm-ss").format( new Date(date));
+    }
+    
+    /**
+     * Met à jour le texte des options d'un menu de sauvegardes, à partir de l'index des sauvegardes
+     * @param options Les options du menu, une par slot
+     * @param chargement Vrai pour le menu de chargement : les slots vides sont désactivés, et les miniatures affichées
+     */
+    private void afficheSauvegardes(JMenuItem[] options, boolean chargement)
+    {
+    	Sauvegarde.Entete[] entetes;
+    	try {
+    		entetes = index.lit();
+    	} catch (IOException e) {
+    		e.printStackTrace();
+    		entetes = new Sauvegarde.Entete[IConfig.NB_SAUVEGARDES];
+    	}
+    	
+		for(int i = 0; i < IConfig.NB_SAUVEGARDES; i++)
+		{
+			Sauvegarde.Entete entete = entetes[i];
+			File f = null;
+			
+			if(entete != null)
+				options[i].setText(getDescription(entete));
+			else if((f = new File(index.getChemin(i))).exists()) /* Sauvegarde à l'ancien format */
+				options[i].setText(getDate(f.lastModified()));
+			else
+				options[i].setText("Sauvegarde " + i);
+			
+			if(chargement)
+			{
+				options[i].setEnabled(entete != null || f.exists());
+				options[i].setIcon((entete != null) ? getMiniature(i, entete) : null);
+			}
+		}
+    }
+    
+    /**
+     * Description d'une sauvegarde pour les menus
+     * @param entete En-tête de la sauvegarde
+     * @return Le tour, les effectifs restants et la date de la sauvegarde
+     */
+    private String getDescription(Sauvegarde.Entete entete)
+    {
+    	return "Tour " + entete.getTour() + " - " + entete.getNbHerosRestant() + " héros, " 
+    			+ entete.getNbMonstresRestant() + " monstres - " + getDate(entete.getDate());
+    }
+    
+    /**
+     * Miniature d'une sauvegarde, lue une seule fois par sauvegarde
+     * @param num Numéro du slot
+     * @param entete En-tête de la sauvegarde du slot
+     * @return La miniature, ou null si elle ne peut pas être lue
+     */
+    private ImageIcon getMiniature(int num, Sauvegarde.Entete entete)
+    {
+    	if(miniatures[num] != null && dateMiniatures[num] == entete.getDate())
+    		return miniatures[num];
+    	
+    	byte[] cases;
+    	try {
+    		cases = Sauvegarde.litMiniature(index.getChemin(num), entete);
+    	} catch (IOException e) {
+    		e.printStackTrace();
+    		cases = null;
+    	}
+    	
+    	if(cases == null)
+    		return null;
+    	
+    	int[] couleurs = { IConfig.MINIATURE_OBSTACLE.getRGB(), IConfig.MINIATURE_PRATICABLE.getRGB(), 
+    					   IConfig.ARRIERE_PLAN_HEROS.getRGB(), IConfig.ARRIERE_PLAN_MONSTRE.getRGB() };
+    	BufferedImage image = new BufferedImage(entete.getLargeur() * IConfig.NB_PIX_MINIATURE, 
+    											entete.getHauteur() * IConfig.NB_PIX_MINIATURE, BufferedImage.TYPE_INT_RGB);
+    	
+    	for(int c = 0; c < cases.length; c++)
+    		for(int p = 0; p < IConfig.NB_PIX_MINIATURE * IConfig.NB_PIX_MINIATURE; p++)
+    			image.setRGB((c % entete.getLargeur()) * IConfig.NB_PIX_MINIATURE + p % IConfig.NB_PIX_MINIATURE,
+    						 (c / entete.getLargeur()) * IConfig.NB_PIX_MINIATURE + p / IConfig.NB_PIX_MINIATURE, couleurs[cases[c]]);
+    	
+    	miniatures[num] = new ImageIcon(image);
+    	dateMiniatures[num] = entete.getDate();
+    	
+    	return miniatures[num];
     }
 	
     /**
@@ -175,6 +270,9 @@ public class FenetreJeu extends JFrame
 		this.setTitle("Wargame");
         this.setIconImage(new ImageIcon(this.getClass().getResource(IConfig.CHEMIN_IMAGE + "icone.png")).getImage());
         
+		/* Les menus s'affichent au-dessus du Canvas de l'affichage actif de la carte */
+		JPopupMenu.setDefaultLightWeightPopupEnabled(false);
+		
 		/* Création d'une carte vide. */
 		carte = new Carte();
 		carte.setPreferredSize(new Dimension(IConfig.LARGEUR_CARTE * IConfig.NB_PIX_CASE, 
@@ -190,6 +288,8 @@ public class FenetreJeu extends JFrame
 
 		/* Création des options des menus. */
 		nouveau = new JMenuItem("Nouvelle partie");
+		reprendre = new JMenuItem("Reprendre la dernière partie");
+		revoir = new JMenuItem("Revoir la dernière partie");
 		quitter = new JMenuItem("Quitter");
 		
 		son = new JMenuItem("Désactiver le son");
@@ -206,6 +306,8 @@ public class FenetreJeu extends JFrame
 	    
 		/* Initialisation des menus. */
 	    jeu.add(nouveau);
+	    jeu.add(reprendre);
+	    jeu.add(revoir);
 	    jeu.addSeparator();
 	    jeu.add(quitter);
 
@@ -219,7 +321,7 @@ public class FenetreJeu extends JFrame
 	    		private final int NUM = k;
 		    	public void actionPerformed(ActionEvent arg0) 
 		    	{
-					carte.sauvegarde(IConfig.CHEMIN_SAUVEGARDE + IConfig.NOM_SAUVEGARDE + NUM + ".ser");
+					carte.sauvegarde(index.getChemin(NUM));
 		    	}       
 		    });
 	    	
@@ -227,7 +329,7 @@ public class FenetreJeu extends JFrame
 	    		private final int NUM = k;
 		    	public void actionPerformed(ActionEvent arg0) 
 		    	{
-					carte.charge(IConfig.CHEMIN_SAUVEGARDE + IConfig.NOM_SAUVEGARDE + NUM + ".ser");
+					carte.charge(index.getChemin(NUM));
 
 				    menu.add(Box.createHorizontalGlue()); 
 				    menu.add(finTour);
@@ -290,6 +392,42 @@ public class FenetreJeu extends JFrame
 		});
 	    nouveau.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_N, ActionEvent.CTRL_MASK));
 	    
+	    /* Reprise de la dernière partie, sauvegardée automatiquement */
+	    reprendre.addActionListener(new ActionListener() {
+	    	public void actionPerformed(ActionEvent e)
+	    	{
+	    		carte.reprend();
+	    		
+	    		historique.reset();
+	    		sauvegarder.setEnabled(true);
+	    		
+			    menu.add(Box.createHorizontalGlue()); 
+			    finTour.setPreferredSize(new Dimension(150,10));
+			    menu.add(finTour);
+			    setJMenuBar(menu);
+	    	}
+	    });
+	    
+	    /* Relecture de la dernière partie enregistrée */
+	    revoir.addActionListener(new ActionListener() {
+	    	public void actionPerformed(ActionEvent e)
+	    	{
+	    		carte.revoit();
+	    		historique.reset();
+	    	}
+	    });
+	    
+	    jeu.addMenuListener(new MenuListener() {
+			public void menuSelected(MenuEvent e) 
+			{
+				reprendre.setEnabled(new File(IConfig.CHEMIN_SAUVEGARDE + IConfig.NOM_AUTOSAUVEGARDE + ".ser").exists());
+				revoir.setEnabled(new File(Relecture.CHEMIN).exists());
+			}
+
+			public void menuDeselected(MenuEvent e) {}
+			public void menuCanceled(MenuEvent e) {}
+		});
+	    
 	    /* Activation désactivation son */
 	    son.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) 
@@ -332,17 +470,7 @@ public class FenetreJeu extends JFrame
 	    sauvegarder.addMenuListener(new MenuListener() {
 			public void menuSelected(MenuEvent e) 
 			{
-				File dir = new File(IConfig.CHEMIN_SAUVEGARDE);
-				if(!dir.exists())
-					dir.mkdir();
-					
-				for(int i = 0; i < IConfig.NB_SAUVEGARDES; i++)
-				{
-					File f = new File(IConfig.CHEMIN_SAUVEGARDE + IConfig.NOM_SAUVEGARDE + i + ".ser");
-					
-					if(f.exists())
-						sauvegarde[i].setText(getDate(f));					
-				}
+				afficheSauvegardes(sauvegarde, false);
 			}
 
 			public void menuDeselected(MenuEvent e) {}
@@ -354,18 +482,7 @@ public class FenetreJeu extends JFrame
 			public void menuSelected(MenuEvent e) 
 			{
 				finTour.setPreferredSize(new Dimension(150,10));
-				for(int i = 0; i < IConfig.NB_SAUVEGARDES; i++)
-				{
-					File f = new File(IConfig.CHEMIN_SAUVEGARDE + IConfig.NOM_SAUVEGARDE + i + ".ser");
-		    	
-					if(f.exists())
-					{
-						slot[i].setText(getDate(f));
-						slot[i].setEnabled(true);
-					}
-					else
-						slot[i].setEnabled(false);
-				}
+				afficheSauvegardes(slot, true);
 			}
 	
 			public void menuDeselected(MenuEvent e) {}
@@ -643,6 +760,12 @@ public class FenetreJeu extends JFrame
 		    	if (touche == KeyEvent.VK_TAB) { 
 		    		numHeros = carte.trouverProchainHeros(numHeros);
 		    	}
+		    	else if(touche == KeyEvent.VK_PAGE_UP) {
+		    		carte.deplaceRelecture(-1);
+		    	}
+		    	else if(touche == KeyEvent.VK_PAGE_DOWN) {
+		    		carte.deplaceRelecture(1);
+		    	}
 		    	else if(touche == KeyEvent.VK_UP) {
 		    		timer();
 		    		tabKey[0] = true;
@@ -717,6 +840,34 @@ public class FenetreJeu extends JFrame
 			public void information(String s) {
 				information.setText(s);
 			}
+			
+			@Override
+			public void sauvegardeTerminee(String chemin, boolean reussie) {
+				if(!reussie) {
+					information.setText("La partie n'a pas pu être sauvegardée.");
+					return;
+				}
+				
+				/* L'en-tête d'un slot est relu dans l'index */
+				for(int i = 0; i < IConfig.NB_SAUVEGARDES; i++)
+					if(index.getChemin(i).equals(chemin)) {
+						try {
+							index.metAJour(i);
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+					}
+				
+				information.setText("Partie sauvegardée.");
+			}
+			
+			@Override
+			public void chargementTermine(String chemin, boolean reussi) {
+				if(chemin.equals(Relecture.CHEMIN))
+					information.setText(reussi ? "Relecture : Page préc. et Page suiv. pour changer de tour." : "La partie n'a pas pu être relue.");
+				else
+					information.setText(reussi ? "Partie chargée." : "La partie n'a pas pu être chargée.");
+			}
 		});	    
 	    
 	    /* Création de la barre d'état avec ses séparateurs */
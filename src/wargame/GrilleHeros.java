@@ -0,0 +1,169 @@
+package wargame;
+
+
+/**
+ * Index spatial des héros vivants : la carte est découpée en seaux de COTE x COTE cases,
+ * chaque seau contenant les héros qui s'y trouvent. Une recherche dans un carré ne parcourt
+ * que les seaux qui le recouvrent, au lieu de toutes ses cases.
+ */
+final class GrilleHeros
+{
+	/** Côté d'un seau en nombre de cases (puissance de 2) et son logarithme. */
+	private static final int DECALAGE = 3;
+	private static final int COTE = 1 << DECALAGE;
+
+	private final int largeur;
+	private final int hauteur;
+
+	/** Nombre de seaux par ligne. */
+	private final int colonnes;
+
+	/** Héros de chaque seau, les tailles[i] premiers étant utilisés. */
+	private final Unite[][] seaux;
+	private final int[] tailles;
+
+	/** Coordonnées de chaque héros des seaux (x + (y << 16)), pour éviter les divisions lors des recherches. */
+	private final int[][] positions;
+
+	/**
+	 * Constructeur d'un index vide
+	 * @param largeur Largeur de la carte en nombre de cases
+	 * @param hauteur Hauteur de la carte en nombre de cases
+	 */
+	GrilleHeros(int largeur, int hauteur)
+	{
+		this.largeur = largeur;
+		this.hauteur = hauteur;
+
+		colonnes = (largeur + COTE - 1) >> DECALAGE;
+		seaux = new Unite[colonnes * ((hauteur + COTE - 1) >> DECALAGE)][];
+		tailles = new int[seaux.length];
+		positions = new int[seaux.length][];
+	}
+
+	/**
+	 * Numéro du seau contenant une case
+	 */
+	private int seau(int num_case)
+	{
+		return ((num_case % largeur) >> DECALAGE) + colonnes * ((num_case / largeur) >> DECALAGE);
+	}
+
+	/**
+	 * Coordonnées d'une case, x + (y << 16)
+	 */
+	private int position(int num_case)
+	{
+		return (num_case % largeur) + ((num_case / largeur) << 16);
+	}
+
+	/** Retire tous les héros. */
+	void vide()
+	{
+		for(int i = 0; i < seaux.length; i++) {
+			if(seaux[i] != null)
+				for(int j = 0; j < tailles[i]; j++)
+					seaux[i][j] = null;
+
+			tailles[i] = 0;
+		}
+	}
+
+	/**
+	 * Ajoute un héros sur une case
+	 * @param h Le héros
+	 * @param num_case La case du héros
+	 */
+	void ajoute(Unite h, int num_case)
+	{
+		int s = seau(num_case);
+
+		if(seaux[s] == null) {
+			seaux[s] = new Unite[4];
+			positions[s] = new int[4];
+		}
+		else if(tailles[s] == seaux[s].length) {
+			Unite[] agrandi = new Unite[2 * tailles[s]];
+			System.arraycopy(seaux[s], 0, agrandi, 0, tailles[s]);
+			seaux[s] = agrandi;
+
+			int[] agrandies = new int[2 * tailles[s]];
+			System.arraycopy(positions[s], 0, agrandies, 0, tailles[s]);
+			positions[s] = agrandies;
+		}
+
+		positions[s][tailles[s]] = position(num_case);
+		seaux[s][tailles[s]++] = h;
+	}
+
+	/**
+	 * Retire un héros d'une case
+	 * @param h Le héros
+	 * @param num_case La case du héros
+	 */
+	void retire(Unite h, int num_case)
+	{
+		int s = seau(num_case);
+
+		for(int i = 0; i < tailles[s]; i++) {
+			if(seaux[s][i] == h) {
+				seaux[s][i] = seaux[s][--tailles[s]];
+				positions[s][i] = positions[s][tailles[s]];
+				seaux[s][tailles[s]] = null;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Déplace un héros d'une case à une autre
+	 * @param h Le héros
+	 * @param depart Case de départ
+	 * @param arrivee Case d'arrivée
+	 */
+	void deplace(Unite h, int depart, int arrivee)
+	{
+		int s = seau(depart);
+
+		if(s != seau(arrivee)) {
+			retire(h, depart);
+			ajoute(h, arrivee);
+			return;
+		}
+
+		for(int i = 0; i < tailles[s]; i++)
+			if(seaux[s][i] == h)
+				positions[s][i] = position(arrivee);
+	}
+
+	/**
+	 * Cherche les héros dans un carré centré sur une case
+	 * @param num_case Case au centre du carré
+	 * @param portee Rayon du carré, en nombre de cases
+	 * @param heros Rempli avec les héros trouvés, doit pouvoir contenir tous les héros de la carte
+	 * @return Le nombre de héros trouvés
+	 */
+	int cherche(int num_case, int portee, Unite[] heros)
+	{
+		int px = num_case % largeur, py = num_case / largeur;
+		int x1 = Math.max(0, px - portee), x2 = Math.min(largeur - 1, px + portee);
+		int y1 = Math.max(0, py - portee), y2 = Math.min(hauteur - 1, py + portee);
+		int nb_heros = 0;
+
+		for(int sy = y1 >> DECALAGE; sy <= y2 >> DECALAGE; sy++) {
+			for(int sx = x1 >> DECALAGE; sx <= x2 >> DECALAGE; sx++) {
+				int s = sx + colonnes * sy;
+				int[] p = positions[s];
+
+				for(int i = 0; i < tailles[s]; i++) {
+					int x = p[i] & 0xFFFF, y = p[i] >>> 16;
+
+					if(x >= x1 && x <= x2 && y >= y1 && y <= y2)
+						heros[nb_heros++] = seaux[s][i];
+				}
+			}
+		}
+
+		return nb_heros;
+	}
+}
@@ -0,0 +1,146 @@
+package wargame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Générateur pseudo-aléatoire d'une partie : xoshiro256** (Blackman et Vigna), ensemencé par SplitMix64.
+ * Une partie se reproduit à l'identique à partir de sa graine. Le générateur n'est pas synchronisé :
+ * chaque partie (et chaque fil) a le sien, ce qui évite le verrou de Math.random et le compare-and-set de java.util.Random.
+ * Un générateur se sépare en générateurs indépendants (separe), par exemple un par partie d'une simulation.
+ */
+final class Hasard
+{
+	/** Incrément de SplitMix64 (partie fractionnaire du nombre d'or). */
+	private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+	/** Source des graines tirées au hasard, partagée par tous les fils. */
+	private static final AtomicLong GRAINES = new AtomicLong(melange(System.currentTimeMillis()) ^ melange(System.nanoTime()));
+
+	/** État du générateur, jamais entièrement nul. */
+	private long s0, s1, s2, s3;
+
+	/**
+	 * Constructeur d'un générateur
+	 * @param graine Graine du générateur
+	 */
+	Hasard(long graine)
+	{
+		ensemence(graine);
+	}
+
+	/**
+	 * Tire une graine au hasard, différente à chaque appel
+	 * @return La graine
+	 */
+	static long graineAleatoire()
+	{
+		return melange(GRAINES.getAndAdd(GAMMA));
+	}
+
+	/**
+	 * Remet le générateur dans l'état donné par une graine
+	 * @param graine La graine
+	 */
+	void ensemence(long graine)
+	{
+		/* Les quatre mots de l'état sont les quatre premières sorties de SplitMix64 : jamais tous nuls */
+		s0 = melange(graine += GAMMA);
+		s1 = melange(graine += GAMMA);
+		s2 = melange(graine += GAMMA);
+		s3 = melange(graine + GAMMA);
+	}
+
+	/**
+	 * Mot de l'état du générateur, pour la sauvegarde : la partie chargée reprend exactement les mêmes tirages
+	 * @param i Numéro du mot, de 0 à 3
+	 * @return Le mot
+	 */
+	long getEtat(int i)
+	{
+		switch(i) {
+			case 0: return s0;
+			case 1: return s1;
+			case 2: return s2;
+			case 3: return s3;
+			default: throw new IndexOutOfBoundsException("Mot " + i + " de l'état du générateur");
+		}
+	}
+
+	/**
+	 * Remet le générateur dans un état sauvegardé (voir getEtat)
+	 * @throws IllegalArgumentException Si l'état est entièrement nul, ce que xoshiro256** ne quitte jamais
+	 */
+	void setEtat(long s0, long s1, long s2, long s3)
+	{
+		if((s0 | s1 | s2 | s3) == 0)
+			throw new IllegalArgumentException("État du générateur nul");
+
+		this.s0 = s0;
+		this.s1 = s1;
+		this.s2 = s2;
+		this.s3 = s3;
+	}
+
+	/**
+	 * Fonction de sortie de SplitMix64
+	 */
+	private static long melange(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Tire 64 bits
+	 * @return Un entier long quelconque
+	 */
+	long suivant()
+	{
+		long resultat = Long.rotateLeft(s1 * 5, 7) * 9;
+		long t = s1 << 17;
+
+		s2 ^= s0;
+		s3 ^= s1;
+		s1 ^= s2;
+		s0 ^= s3;
+		s2 ^= t;
+		s3 = Long.rotateLeft(s3, 45);
+
+		return resultat;
+	}
+
+	/**
+	 * Tire un entier uniformément dans [0, borne[, sans biais (méthode de Lemire : une multiplication, une division rarement)
+	 * @param borne Borne supérieure exclue, strictement positive
+	 * @return L'entier tiré
+	 */
+	int entier(int borne)
+	{
+		if(borne <= 0)
+			throw new IllegalArgumentException("Borne négative ou nulle : " + borne);
+
+		long m = (suivant() >>> 32) * borne;
+		long bas = m & 0xffffffffL;
+
+		/* Rejet des tirages de la tranche incomplète, de (2^32 mod borne) valeurs */
+		if(bas < borne) {
+			long seuil = (0x100000000L - borne) % borne;
+			while(bas < seuil) {
+				m = (suivant() >>> 32) * borne;
+				bas = m & 0xffffffffL;
+			}
+		}
+
+		return (int)(m >>> 32);
+	}
+
+	/**
+	 * Crée un générateur indépendant de celui-ci, ensemencé par son prochain tirage
+	 * @return Le nouveau générateur
+	 */
+	Hasard separe()
+	{
+		return new Hasard(suivant());
+	}
+}
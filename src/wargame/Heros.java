@@ -57,15 +57,14 @@ public class Heros extends Soldat
 	
 	/** 
 	 * Constructeur du héros 
-	 * @param type_heros Type du monstre
+	 * @param unite Unité du moteur représentée par le héros
 	 * @throws IOException Si l'image de peut pas être chargée
 	 */
-	Heros(TypesH type_heros) throws IOException
+	Heros(Unite unite) throws IOException
 	{
-		super();
+		super(unite);
 		
-		vie = type_heros.getPoints();
-		typeHeros = type_heros;
+		typeHeros = unite.getTypeHeros();
 		
 		setImage();
 	}
@@ -0,0 +1,175 @@
+package wargame;
+
+import java.util.ArrayList;
+
+/**
+ * Horloge des animations : une roue temporelle (hashed timing wheel) qui tourne d'un cran à chaque image de la Carte.
+ * Chaque charset animé est rangé dans l'alvéole du cran où il doit avancer, dans une liste chaînée par ses propres champs :
+ * un cran ne parcourt que son alvéole, et les charsets immobiles (ou morts) ne sont pas dans la roue.
+ * Le fil de l'interface ne reçoit ainsi qu'un évènement par image, quel que soit le nombre de soldats.
+ *
+ * Les animations avancent à pas fixes, datés en temps réel : un soldat met le même temps à traverser une case quel que soit
+ * le nombre d'images par seconde ou leur régularité, et l'affichage glisse entre deux pas (Charset.getFraction).
+ *
+ * L'horloge n'a pas de fil à elle : elle est avancée par le timer de la Carte, et n'est utilisée que depuis le fil de l'interface.
+ */
+final class Horloge
+{
+	/** Nombre d'alvéoles de la roue (puissance de 2). Une échéance plus lointaine que la roue attend simplement un tour de plus. */
+	private static final int NB_ALVEOLES = 64;
+	private static final int MASQUE = NB_ALVEOLES - 1;
+
+	/** Durée d'un cran, en ms. */
+	private final int dureeCran;
+
+	/** Premier charset de chaque alvéole. */
+	private final Charset[] alveoles = new Charset[NB_ALVEOLES];
+
+	/** Nombre de charsets dans la roue : zéro lorsque plus rien n'est animé. */
+	private int nbAnimes;
+
+	/** Heure (ms) du premier appel à avance : les heures et les échéances de l'horloge sont comptées depuis celle-ci. */
+	private long origine;
+
+	/** Dernier cran passé (heure divisée par la durée d'un cran), -1 avant le premier appel à avance. */
+	private long cran = -1;
+
+	/** Heure du dernier appel à avance, en ms. */
+	private long maintenant;
+
+	/** Charsets arrivés à échéance au cran en cours, avancés une fois sortis de la roue. */
+	private final ArrayList<Charset> echus = new ArrayList<Charset>();
+
+	/**
+	 * Constructeur d'une horloge
+	 * @param duree_cran Durée d'un cran en ms, le délai entre deux images
+	 */
+	Horloge(int duree_cran)
+	{
+		this.dureeCran = Math.max(1, duree_cran);
+	}
+
+	/**
+	 * Programme un charset, qui avancera d'une image tous les getDelai() ms (arrondis au cran) tant que sa méthode avance retourne vrai.
+	 * Rien si le charset est déjà programmé.
+	 * @param c Le charset
+	 */
+	void programme(Charset c)
+	{
+		if(c.alveole != -1)
+			return;
+
+		c.echeance = maintenant + c.getDelai();
+		insere(c);
+	}
+
+	/**
+	 * Retire un charset de la roue, rien s'il n'y est pas
+	 * @param c Le charset
+	 */
+	void retire(Charset c)
+	{
+		if(c.alveole == -1)
+			return;
+
+		if(c.precedent != null)
+			c.precedent.suivant = c.suivant;
+		else
+			alveoles[c.alveole] = c.suivant;
+
+		if(c.suivant != null)
+			c.suivant.precedent = c.precedent;
+
+		c.alveole = -1;
+		c.precedent = c.suivant = null;
+		nbAnimes--;
+	}
+
+	/**
+	 * Range un charset dans l'alvéole de son échéance
+	 */
+	private void insere(Charset c)
+	{
+		int a = (int)((c.echeance / dureeCran) & MASQUE);
+
+		c.alveole = a;
+		c.precedent = null;
+		c.suivant = alveoles[a];
+		if(c.suivant != null)
+			c.suivant.precedent = c;
+		alveoles[a] = c;
+		nbAnimes++;
+	}
+
+	/**
+	 * Fait tourner la roue jusqu'à une heure : chaque cran passé avance les charsets de son alvéole arrivés à échéance.
+	 * Après une longue pause, seul le dernier tour de roue est parcouru : il passe par toutes les alvéoles, aucun charset n'est oublié.
+	 * @param heure Heure courante, en ms (d'une horloge monotone, comme System.nanoTime() / 1000000)
+	 */
+	void avance(long heure)
+	{
+		if(cran == -1)
+			origine = heure;
+
+		heure -= origine;
+		long cible = heure / dureeCran;
+
+		if(cran == -1 || cible - cran > NB_ALVEOLES)
+			cran = cible - ((cran == -1) ? 0 : NB_ALVEOLES);
+
+		while(cran < cible) {
+			cran++;
+			tourne((int)(cran & MASQUE));
+		}
+
+		maintenant = heure;
+	}
+
+	/**
+	 * Nombre de charsets animés (déplacement, mort...), qui n'ont pas fini leur animation
+	 * @return Le nombre de charsets dans la roue
+	 */
+	int getNbAnimes()
+	{
+		return nbAnimes;
+	}
+
+	/**
+	 * Heure du dernier appel à avance, comptée depuis le premier
+	 * @return L'heure, en ms
+	 */
+	long getHeure()
+	{
+		return maintenant;
+	}
+
+	/**
+	 * Avance les charsets échus d'une alvéole, puis reprogramme ceux qui sont encore animés.
+	 * Leur prochaine échéance suit la précédente d'un délai, sans dériver, mais jamais avant le prochain cran.
+	 */
+	private void tourne(int a)
+	{
+		for(Charset c = alveoles[a]; c != null; ) {
+			Charset suivant = c.suivant;
+			if(c.echeance / dureeCran <= cran) {
+				retire(c);
+				echus.add(c);
+			}
+			c = suivant;
+		}
+
+		for(int i = 0; i < echus.size(); i++) {
+			Charset c = echus.get(i);
+			long echeance = c.echeance + c.getDelai();
+
+			/* L'image est datée de son échéance, pas du cran : l'affichage interpolé avance régulièrement */
+			c.instant = c.echeance;
+			if(c.avance() && c.alveole == -1) {
+				c.echeance = Math.max(echeance, (cran + 1) * dureeCran);
+				insere(c);
+			}
+		}
+
+		echus.clear();
+	}
+}
@@ -24,12 +24,12 @@ public interface ICarte {
 	 * */
 	Point trouvePositionVide(char type);
 	
-	/** Sauvegarde une carte.
+	/** Sauvegarde une carte, sans attendre que le fichier soit écrit.
 	 * @param chemin Chemin de la sauvegarde.
 	 */
 	void sauvegarde(String chemin);
 
-	/** Charge une carte.
+	/** Charge une carte, sans attendre que la partie soit lue.
 	 * @param chemin Chemin de la sauvegarde.
 	 */
 	void charge(String chemin);
@@ -11,6 +11,9 @@ public interface IConfig
 	/** Nombre de FPS pour la carte. */
 	double FPS = 60.0;
 	
+	/** Affichage actif de la carte (voir RenduActif), réservé aux essais tant que l'image est dessinée par le fil de l'interface : laisser à false. */
+	boolean RENDU_ACTIF = false;
+	
 	/* Chemins : attention de bien préciser le / de fin */
 	/** Chemin du dossier des musiques */
 	String CHEMIN_MUSIQUE = "/musique/";
@@ -25,6 +28,22 @@ public interface IConfig
 	/** Nom d'un fichier de sauvegarder. */
 	String NOM_SAUVEGARDE = "wargame";
 	
+	/** Nom des fichiers de la sauvegarde automatique (instantané et journal). */
+	String NOM_AUTOSAUVEGARDE = "autosauvegarde";
+	
+	/** Nombre de tours entre deux instantanés de la sauvegarde automatique. */
+	int TOURS_AUTOSAUVEGARDE = 5;
+	
+	/** Nom de l'enregistrement de la dernière partie, à revoir (voir Relecture). */
+	String NOM_ENREGISTREMENT = "derniere_partie";
+	
+	/** Nombre de pixels par case des miniatures des sauvegardes. */
+	int NB_PIX_MINIATURE = 3;
+	
+	/** Couleurs des obstacles et des cases praticables des miniatures (les soldats ont la couleur de leur infobulle). */
+	Color MINIATURE_OBSTACLE = new Color(90, 90, 90);
+	Color MINIATURE_PRATICABLE = new Color(120, 170, 80);
+	
 	/** Nom du tileset. */
 	String NOM_TILESET = "tileset.png";
 	
@@ -124,5 +143,8 @@ public interface IConfig
 
 	/** Configure l'affichage réel du brouillard (affichage en forme de losange) */
 	boolean AFFICHAGE_REEL_BROUILLARD = false;
+
+	/** Les rochers, arbres et autres obstacles cachent les cases situées derrière eux (ombres portées dans le brouillard) */
+	boolean OMBRES_BROUILLARD = false;
     
 }
@@ -60,7 +60,12 @@ public interface ISoldat extends Serializable
 		
 		public static TypesH getTypeHAlea() 
 		{
-			return values()[(int)(Math.random() * values().length)];
+			return values()[Aleatoire.nombreAleatoire(0, values().length - 1)];
+		}
+		
+		static TypesH getTypeHAlea(Hasard hasard) 
+		{
+			return values()[hasard.entier(values().length)];
 		}
 	}
 
@@ -112,7 +117,12 @@ public interface ISoldat extends Serializable
 		
 		public static TypesM getTypeMAlea() 
 		{
-			return values()[(int)(Math.random() * values().length)];
+			return values()[Aleatoire.nombreAleatoire(0, values().length - 1)];
+		}
+		
+		static TypesM getTypeMAlea(Hasard hasard) 
+		{
+			return values()[hasard.entier(values().length)];
 		}
 	}
 
@@ -122,17 +132,7 @@ public interface ISoldat extends Serializable
 	int getVieMax();
 	int getVie();
 	double getPourcentageVie();
-	boolean getSeDeplace();
 	String getNom();
-
-	void setSeDeplace(boolean value);	
-	void setMort(boolean mort);
-	void setPosition(Position position);
-	void setAJoue(boolean value);
-	void setVie(int vie);
-	
-	
-	int repos(boolean afficher_message);
-	int combat(Soldat soldat, int distance);
-	
+	boolean estMort();
+	boolean getAJoue();
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package wargame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Index des emplacements de sauvegarde : un fichier contenant une copie de l'en-tête de chaque sauvegarde,
+ * lu en mémoire projetée (MappedByteBuffer). Les menus listent les sauvegardes sans ouvrir leurs fichiers.
+ *
+ *   début   : MAGIQUE (int), nombre d'emplacements (int), taille d'une entrée (int)
+ *   entrées : date de modification du fichier de l'emplacement (long, 0 s'il n'existe pas), puis son en-tête (Sauvegarde.TAILLE_ENTETE octets)
+ *
+ * Une entrée dont la date ne correspond plus à celle du fichier (sauvegarde copiée à la main, ancien jeu...)
+ * est relue depuis le début du fichier. Un index absent ou d'un autre format est reconstruit de la même façon.
+ * Lister un emplacement à jour ne coûte donc que la lecture de la date de son fichier.
+ */
+final class IndexSauvegardes
+{
+	/** Premiers octets de l'index : "WGIX". */
+	private static final int MAGIQUE = 0x57474958;
+
+	/** Tailles en octets du début de l'index et d'une entrée. */
+	private static final int TAILLE_DEBUT = 4 + 4 + 4;
+	private static final int TAILLE_ENTREE = 8 + Sauvegarde.TAILLE_ENTETE;
+
+	/** Dossier et nom des sauvegardes. */
+	private final String dossier;
+	private final String nom;
+
+	/** Nombre d'emplacements. */
+	private final int nbEmplacements;
+
+	/** Fichier d'index projeté en mémoire, ouvert à la première lecture. */
+	private MappedByteBuffer index;
+
+	/**
+	 * Constructeur de l'index, sans accès au disque
+	 * @param dossier Dossier des sauvegardes (avec le / de fin)
+	 * @param nom Nom des fichiers de sauvegarde, suivi du numéro de l'emplacement
+	 * @param nb_emplacements Nombre d'emplacements
+	 */
+	IndexSauvegardes(String dossier, String nom, int nb_emplacements)
+	{
+		this.dossier = dossier;
+		this.nom = nom;
+		this.nbEmplacements = nb_emplacements;
+	}
+
+	/**
+	 * Chemin du fichier de sauvegarde d'un emplacement
+	 * @param emplacement Numéro de l'emplacement
+	 */
+	String getChemin(int emplacement)
+	{
+		return dossier + nom + emplacement + ".ser";
+	}
+
+	/**
+	 * Lit l'en-tête de la sauvegarde de chaque emplacement
+	 * @return Les en-têtes, null pour un emplacement vide ou dont la sauvegarde n'a pas d'en-tête (ancien format)
+	 * @throws IOException Si l'index ne peut pas être ouvert
+	 */
+	Sauvegarde.Entete[] lit() throws IOException
+	{
+		Sauvegarde.Entete[] entetes = new Sauvegarde.Entete[nbEmplacements];
+
+		for(int i = 0; i < nbEmplacements; i++)
+			entetes[i] = entree(i, false);
+
+		return entetes;
+	}
+
+	/**
+	 * Relit l'en-tête d'un emplacement qui vient d'être sauvegardé.
+	 * La date de modification peut ne pas changer entre deux sauvegardes rapprochées : l'entrée est relue sans la comparer.
+	 * @param emplacement Numéro de l'emplacement
+	 * @throws IOException Si l'index ne peut pas être ouvert
+	 */
+	void metAJour(int emplacement) throws IOException
+	{
+		entree(emplacement, true);
+	}
+
+	/**
+	 * Lit une entrée de l'index, après l'avoir relue depuis le fichier de sauvegarde si elle n'est plus à jour
+	 * @param emplacement Numéro de l'emplacement
+	 * @param relire Vrai pour relire le fichier dans tous les cas
+	 * @return L'en-tête de l'entrée, ou null
+	 */
+	private Sauvegarde.Entete entree(int emplacement, boolean relire) throws IOException
+	{
+		ouvre();
+		int debut = TAILLE_DEBUT + emplacement * TAILLE_ENTREE;
+
+		File fichier = new File(getChemin(emplacement));
+		long date = fichier.lastModified();
+
+		ByteBuffer entete = index.duplicate();
+		entete.limit(debut + TAILLE_ENTREE).position(debut + 8);
+
+		if(relire || index.getLong(debut) != date) {
+			/* Date en dernier : une entrée écrite à moitié ne correspond à aucun fichier */
+			index.putLong(debut, -1);
+
+			for(int i = entete.position(); i < entete.limit(); i++)
+				index.put(i, (byte)0);
+
+			if(date != 0)
+				litDebut(fichier, entete.slice());
+
+			index.putLong(debut, date);
+		}
+
+		if(date == 0)
+			return null;
+
+		try {
+			return Sauvegarde.Entete.lit(entete);
+		}
+		catch(IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Copie le début d'un fichier dans un tampon, jusqu'à le remplir ou atteindre la fin du fichier
+	 */
+	private static void litDebut(File fichier, ByteBuffer tampon) throws IOException
+	{
+		FileChannel canal = new RandomAccessFile(fichier, "r").getChannel();
+		try {
+			while(tampon.hasRemaining() && canal.read(tampon) >= 0)
+				;
+		}
+		finally {
+			canal.close();
+		}
+	}
+
+	/**
+	 * Projette le fichier d'index en mémoire, en le créant ou le réinitialisant si besoin
+	 */
+	private void ouvre() throws IOException
+	{
+		if(index != null)
+			return;
+
+		new File(dossier).mkdirs();
+
+		long taille = TAILLE_DEBUT + (long)nbEmplacements * TAILLE_ENTREE;
+		RandomAccessFile fichier = new RandomAccessFile(dossier + nom + ".index", "rw");
+
+		try {
+			if(fichier.length() != taille) {
+				fichier.setLength(0);
+				fichier.setLength(taille);
+			}
+
+			MappedByteBuffer projection = fichier.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, taille);
+
+			if(projection.getInt(0) != MAGIQUE || projection.getInt(4) != nbEmplacements || projection.getInt(8) != TAILLE_ENTREE) {
+				/* Entrées à zéro : seuls les emplacements vides correspondent, les autres seront relus */
+				for(int i = 0; i < taille; i++)
+					projection.put(i, (byte)0);
+
+				projection.putInt(0, MAGIQUE);
+				projection.putInt(4, nbEmplacements);
+				projection.putInt(8, TAILLE_ENTREE);
+			}
+
+			index = projection;
+		}
+		finally {
+			fichier.close();
+		}
+	}
+}
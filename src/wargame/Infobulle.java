@@ -93,6 +93,17 @@ final class Infobulle extends Rectangle
 
 			this.color = new Color(color.getRed(),color.getGreen(), color.getBlue(), alpha );
 		}
+		
+		/**
+		 * Zone de la carte où le message est dessiné (voir dessinerText sans arrière plan)
+		 * @param fm Métriques de la police des messages
+		 * @return La zone, en pixels
+		 */
+		public Rectangle getZone(FontMetrics fm) {
+			String[] lignes = message.split("\n");
+			
+			return new Rectangle(coord.x - 1, coord.y, fm.stringWidth(stringTailleMax(lignes)) + 2, lignes.length * fm.getHeight() + fm.getDescent() + 1);
+		}
 	}
 	
 	/**
@@ -154,10 +165,12 @@ final class Infobulle extends Rectangle
 	}
 	
 	/** 
-	 * Fonction d'auto gestion de la file de message 
-	 * @param g Graphics dans lequel on va dessiner le message
+	 * Fonction d'auto gestion de la file de message : avance d'une image l'animation des messages affichés, sans les dessiner.
+	 * Les zones des messages qui bougent ou disparaissent, avant et après, sont ajoutées à la zone à redessiner.
+	 * @param fm Métriques de la police des messages (celle de dessinerText sans arrière plan)
+	 * @param zone Zone à redessiner, agrandie des zones des messages modifiés
 	 */
-	public static void dessiner(Graphics g) {
+	public static void avance(FontMetrics fm, Rectangle zone) {
 
 		int size = File.size();
 
@@ -168,6 +181,7 @@ final class Infobulle extends Rectangle
 		while(size != 0 && i < size ) {
 
 			Message m = File.get(i);
+			ajouteZone(zone, m.getZone(fm));
 			
 			if(m.timer == 0) { // si le temps d'affichage est a 0 on retire le message de la file
 				File.poll();
@@ -178,16 +192,46 @@ final class Infobulle extends Rectangle
 				if(m.direction != IConfig.MOUV_INFOBULLE_AUCUN)
 					m.setDeplacement(); // on fait le deplacement que si la  direction est donnée [ Haut ou Bas ]
 				m.setTime();
+				ajouteZone(zone, m.getZone(fm));
 			}
 			
-			dessinerText(g, m.getPoint().x , m.getPoint().y ,m.message, m.color);
-			
 			if(m.promptNext == -1 || m.promptNext > 0)
 				return;
 			i++;		
 		}	
 	}
 	
+	/** 
+	 * Dessine les messages affichés de la file, dans l'état où les a laissés avance
+	 * @param g Graphics dans lequel on va dessiner les messages
+	 */
+	public static void dessiner(Graphics g) {
+
+		for(int i = 0; i < File.size(); i++) {
+			Message m = File.get(i);
+			
+			dessinerText(g, m.getPoint().x , m.getPoint().y ,m.message, m.color);
+			
+			if(m.promptNext == -1 || m.promptNext > 0)
+				return;
+		}
+	}
+	
+	/**
+	 * Agrandit une zone pour qu'elle contienne une autre zone, une zone vide ne contenant rien
+	 * @param zone La zone à agrandir
+	 * @param r La zone à y ajouter
+	 */
+	static void ajouteZone(Rectangle zone, Rectangle r) {
+		if(r.isEmpty())
+			return;
+		
+		if(zone.isEmpty())
+			zone.setBounds(r);
+		else
+			zone.add(r);
+	}
+	
 	/**
 	 * Fonction statique permettant de dessiner un message sur la carte
 	 * @param g Graphics dans lequel on va dessiner l'infobulle
@@ -230,13 +274,62 @@ final class Infobulle extends Rectangle
 		/* drawString ne gère pas les \n donc on est obligé de faire appel à la méthode pour chaque ligne manuellement */
 		String[] lignes = message.split("\n");
 		
-		FontMetrics fm = g.getFontMetrics(); 
+		Rectangle rectangle = getRectangle(g.getFontMetrics(), x, y, lignes);
+		int start_x = rectangle.x + IConfig.MARGE_INFOBULLE;
+		int start_y = rectangle.y;
+		int hauteur_rectangle = rectangle.height;
+		int largeur_rectangle = rectangle.width;
+		
+		if(background_color != null) {
+			/* On spécifie la couleur d'arrière plan et on trace notre rectangle */
+			g.setColor(background_color);
+			g.fillRect(start_x - IConfig.MARGE_INFOBULLE, start_y, largeur_rectangle, hauteur_rectangle); 
+			
+			/* Bordure du rectangle */
+			g.setColor(Color.DARK_GRAY);
+			g.drawRect(start_x - IConfig.MARGE_INFOBULLE, start_y, largeur_rectangle, hauteur_rectangle);
+		}
+		
+		/* Pour chaque ligne, on l'écrit dans la couleur spécifiée */
+		g.setColor(string_color);
+		for (String ligne : lignes){
+			g.drawString(ligne, start_x, start_y += g.getFontMetrics().getHeight()); /* On simule un saut de ligne */
+		}
+		
+		g.setColor(ancienne_couleur);  
+	}
+	
+	
+	/**
+	 * Zone de la carte où est dessinée une infobulle avec arrière plan, bordure et texte compris
+	 * @param fm Métriques de la police de l'infobulle
+	 * @param x coordonnée x de la case de la carte
+	 * @param y coordonnée y de la case de la carte
+	 * @param message message écrit dans l'infobulle
+	 * @return La zone, en pixels
+	 */
+	public static Rectangle getZone(FontMetrics fm, int x, int y, String message)
+	{
+		String[] lignes = message.split("\n");
+		Rectangle zone = getRectangle(fm, x, y, lignes);
+		
+		/* La bordure dépasse d'un pixel, le bas des lettres de la dernière ligne peut dépasser de la marge */
+		zone.width++;
+		zone.height = Math.max(zone.height + 1, lignes.length * fm.getHeight() + fm.getDescent());
 		
+		return zone;
+	}
+	
+	/**
+	 * Rectangle d'arrière plan d'une infobulle, replacé dans la carte s'il en dépasse
+	 */
+	private static Rectangle getRectangle(FontMetrics fm, int x, int y, String[] lignes)
+	{
 		int start_x = x * IConfig.NB_PIX_CASE + IConfig.NB_PIX_CASE / 2;
 		int start_y = y * IConfig.NB_PIX_CASE + IConfig.NB_PIX_CASE / 2;
 		
 		/* La hauteur correspond au nombre de ligne * la hauteur de la police à laquelle on rajoute une marge */
-		int hauteur_rectangle = lignes.length * g.getFontMetrics().getHeight() + IConfig.MARGE_INFOBULLE;
+		int hauteur_rectangle = lignes.length * fm.getHeight() + IConfig.MARGE_INFOBULLE;
 		/* La largeur correspond à la largeur de la ligne la plus longue à laquelle on rajoute une marge */
 		int largeur_rectangle = fm.stringWidth(Infobulle.stringTailleMax(lignes)) + 2*IConfig.MARGE_INFOBULLE;
 		
@@ -252,26 +345,9 @@ final class Infobulle extends Rectangle
 			start_x = pixel_largeur_carte - largeur_rectangle;
 		}
 		
-		if(background_color != null) {
-			/* On spécifie la couleur d'arrière plan et on trace notre rectangle */
-			g.setColor(background_color);
-			g.fillRect(start_x - IConfig.MARGE_INFOBULLE, start_y, largeur_rectangle, hauteur_rectangle); 
-			
-			/* Bordure du rectangle */
-			g.setColor(Color.DARK_GRAY);
-			g.drawRect(start_x - IConfig.MARGE_INFOBULLE, start_y, largeur_rectangle, hauteur_rectangle);
-		}
-		
-		/* Pour chaque ligne, on l'écrit dans la couleur spécifiée */
-		g.setColor(string_color);
-		for (String ligne : lignes){
-			g.drawString(ligne, start_x, start_y += g.getFontMetrics().getHeight()); /* On simule un saut de ligne */
-		}
-		
-		g.setColor(ancienne_couleur);  
+		return new Rectangle(start_x - IConfig.MARGE_INFOBULLE, start_y, largeur_rectangle, hauteur_rectangle);
 	}
 	
-	
 	/**
 	 * Permet de savoir si on a finit d'afficher toute la file des messages
 	 * @return Vrai si la file est vide, faux sinon
@@ -0,0 +1,386 @@
+package wargame;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+
+/**
+ * Sauvegarde automatique d'une partie : un instantané complet (au format de Sauvegarde) tous les quelques tours,
+ * et entre deux instantanés un journal des actions demandées au moteur, quelques octets par action.
+ * La partie se retrouve en rejouant le journal sur l'instantané.
+ *
+ *   journal : MAGIQUE (int), date de l'instantané (long, ms), puis les actions : type (byte) et ses champs (int)
+ *
+ * L'instantané contient l'état du générateur : le journal rejoué dessus retrouve les mêmes tirages. Le journal commence
+ * par la date de son instantané, un journal ne portant pas cette date (arrêt entre l'écriture de l'un et de l'autre) est ignoré.
+ *
+ * Les actions sont encodées sur le fil de l'interface, puis écrites dans l'ordre par le fil des écritures fourni,
+ * qui écrit aussi les instantanés : une action n'ajoute que quelques microsecondes au fil de l'interface.
+ *
+ * Le journal enregistre aussi la partie entière, depuis son début, pour la revoir (voir Relecture) :
+ *
+ *   enregistrement : MAGIQUE_ENREGISTREMENT (int), puis les actions, chacune comme dans le journal,
+ *                    en commençant par l'instantané de départ (INSTANTANE : taille (int) puis la sauvegarde)
+ *
+ * Les instantanés suivants y sont recopiés, et servent d'images clés pour s'y déplacer.
+ * Une partie chargée ou reprise est enregistrée à partir de son chargement.
+ */
+final class Journal
+{
+	/** Premiers octets d'un journal : "WGJN". */
+	private static final int MAGIQUE = 0x57474A4E;
+
+	/** Premiers octets d'un enregistrement : "WGRP". */
+	static final int MAGIQUE_ENREGISTREMENT = 0x57475250;
+
+	/** Types d'action. */
+	static final int DEPLACEMENT = 1, COMBAT = 2, REPOS = 3, MORT = 4, VERIFICATION = 5,
+	                 TOUR_MONSTRES = 6, FIN_TOUR = 7, AJOUT = 8, MORT_SUBITE = 9, INSTANTANE = 10;
+
+	/** Nombre de champs de chaque type d'action (pour INSTANTANE, la taille de la sauvegarde qui suit). */
+	private static final int[] NB_CHAMPS = { 0, 2, 3, 1, 1, 0, 0, 0, 2, 0, 1 };
+
+	/** Chemins de l'instantané, du journal et de l'enregistrement. */
+	private final String cheminInstantane;
+	private final String cheminJournal;
+	private final String cheminEnregistrement;
+
+	/** Nombre de tours entre deux instantanés. */
+	private final int toursEntreInstantanes;
+
+	/** Fil des écritures. */
+	private final Executor fil;
+
+	/** Journal et enregistrement ouverts, utilisés seulement depuis le fil des écritures. */
+	private FileChannel canal;
+	private FileChannel enregistrement;
+
+	/**
+	 * Constructeur d'un journal, sans accès au disque
+	 * @param chemin_instantane Chemin de l'instantané
+	 * @param chemin_journal Chemin du journal
+	 * @param chemin_enregistrement Chemin de l'enregistrement de la partie
+	 * @param tours_entre_instantanes Nombre de tours entre deux instantanés
+	 * @param fil Fil des écritures, qui doit exécuter les tâches une à une dans l'ordre
+	 */
+	Journal(String chemin_instantane, String chemin_journal, String chemin_enregistrement, int tours_entre_instantanes, Executor fil)
+	{
+		this.cheminInstantane = chemin_instantane;
+		this.cheminJournal = chemin_journal;
+		this.cheminEnregistrement = chemin_enregistrement;
+		this.toursEntreInstantanes = Math.max(1, tours_entre_instantanes);
+		this.fil = fil;
+	}
+
+	/**
+	 * Commence à journaliser une partie : instantané, puis journal vide, et nouvel enregistrement
+	 * @param moteur La partie, qui enregistre désormais ses actions dans ce journal
+	 */
+	void commence(Moteur moteur)
+	{
+		moteur.setJournal(this);
+		ecritInstantane(moteur, true);
+	}
+
+	/**
+	 * Enregistre une action demandée au moteur
+	 * @param type Type de l'action
+	 * @param a Premier champ (unité, type de soldat...)
+	 * @param b Deuxième champ (case, défenseur...)
+	 * @param c Troisième champ (distance)
+	 */
+	void enregistre(int type, int a, int b, int c)
+	{
+		final ByteBuffer action = ByteBuffer.allocate(1 + 4 * NB_CHAMPS[type]);
+		int[] champs = { a, b, c };
+
+		action.put((byte)type);
+		for(int i = 0; i < NB_CHAMPS[type]; i++)
+			action.putInt(champs[i]);
+		action.flip();
+
+		fil.execute(new Runnable() {
+			public void run() {
+				try {
+					ecrit(canal, action.duplicate());
+					ecrit(enregistrement, action);
+				}
+				catch(IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Prévient qu'un nouveau tour commence : un instantané est écrit tous les toursEntreInstantanes tours
+	 * @param moteur La partie
+	 */
+	void nouveauTour(Moteur moteur)
+	{
+		if(moteur.getTour() % toursEntreInstantanes == 0)
+			ecritInstantane(moteur, false);
+	}
+
+	/**
+	 * Copie la partie, puis écrit la copie et recommence le journal depuis le fil des écritures.
+	 * La copie est aussi ajoutée à l'enregistrement, recommencé d'abord s'il s'agit d'une nouvelle partie.
+	 */
+	private void ecritInstantane(Moteur moteur, final boolean nouvelle_partie)
+	{
+		final ByteBuffer instantane;
+		final long date;
+
+		try {
+			instantane = Sauvegarde.instantane(moteur);
+			date = Sauvegarde.Entete.lit(instantane.duplicate()).getDate();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		fil.execute(new Runnable() {
+			public void run() {
+				try {
+					ferme();
+					new File(cheminInstantane).getAbsoluteFile().getParentFile().mkdirs();
+
+					/* L'instantané d'abord : en cas d'arrêt avant le nouveau journal, l'ancien ne correspond plus à l'instantané */
+					Sauvegarde.ecrit(instantane, cheminInstantane);
+
+					canal = new FileOutputStream(cheminJournal).getChannel();
+					ByteBuffer entete = ByteBuffer.allocate(4 + 8);
+					entete.putInt(MAGIQUE).putLong(date).flip();
+					while(entete.hasRemaining())
+						canal.write(entete);
+				}
+				catch(IOException e) {
+					e.printStackTrace();
+					ferme();
+				}
+
+				try {
+					if(nouvelle_partie) {
+						fermeEnregistrement();
+						enregistrement = new FileOutputStream(cheminEnregistrement).getChannel();
+
+						ByteBuffer entete = ByteBuffer.allocate(4);
+						entete.putInt(MAGIQUE_ENREGISTREMENT).flip();
+						ecrit(enregistrement, entete);
+					}
+
+					ByteBuffer image = ByteBuffer.allocate(1 + 4);
+					image.put((byte)INSTANTANE).putInt(instantane.remaining()).flip();
+					ecrit(enregistrement, image);
+					ecrit(enregistrement, instantane.duplicate());
+				}
+				catch(IOException e) {
+					e.printStackTrace();
+					fermeEnregistrement();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Écrit tout un tampon dans un fichier ouvert, rien si le fichier n'est pas ouvert
+	 */
+	private static void ecrit(FileChannel fichier, ByteBuffer tampon) throws IOException
+	{
+		if(fichier == null)
+			return;
+
+		while(tampon.hasRemaining())
+			fichier.write(tampon);
+	}
+
+	/**
+	 * Ferme le journal ouvert, depuis le fil des écritures
+	 */
+	private void ferme()
+	{
+		if(canal == null)
+			return;
+
+		try {
+			canal.close();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+
+		canal = null;
+	}
+
+	/**
+	 * Ferme l'enregistrement ouvert, depuis le fil des écritures
+	 */
+	private void fermeEnregistrement()
+	{
+		if(enregistrement == null)
+			return;
+
+		try {
+			enregistrement.close();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+
+		enregistrement = null;
+	}
+
+	/**
+	 * Reprend une partie journalisée : l'instantané, sur lequel est rejoué le journal.
+	 * Le journal est rejoué jusqu'à sa fin, ou jusqu'à une action incomplète ou invalide (arrêt pendant son écriture).
+	 * @param chemin_instantane Chemin de l'instantané
+	 * @param chemin_journal Chemin du journal
+	 * @return La partie, sans listener ni journal
+	 * @throws IOException Si l'instantané ne peut pas être lu
+	 */
+	static Moteur reprend(String chemin_instantane, String chemin_journal) throws IOException
+	{
+		ByteBuffer instantane = Sauvegarde.litFichier(chemin_instantane);
+		Sauvegarde.Entete entete = Sauvegarde.Entete.lit(instantane.duplicate());
+		Moteur moteur = Sauvegarde.lit(instantane);
+
+		ByteBuffer actions;
+		try {
+			actions = Sauvegarde.litFichier(chemin_journal);
+		}
+		catch(FileNotFoundException e) {
+			return moteur;
+		}
+
+		if(actions.remaining() < 4 + 8 || actions.getInt() != MAGIQUE || actions.getLong() != entete.getDate())
+			return moteur;
+
+		while(actions.hasRemaining() && rejoue(moteur, actions))
+			;
+
+		return moteur;
+	}
+
+	/**
+	 * Taille d'une action d'un journal ou d'un enregistrement, sans la rejouer
+	 * @param actions Les actions
+	 * @param position Position de l'action
+	 * @return Le nombre d'octets de l'action, -1 si elle est incomplète ou invalide
+	 */
+	static int taille(ByteBuffer actions, int position)
+	{
+		if(position >= actions.limit())
+			return -1;
+
+		int type = actions.get(position);
+		if(type <= 0 || type >= NB_CHAMPS.length)
+			return -1;
+
+		long taille = 1 + 4 * NB_CHAMPS[type];
+		if(type == INSTANTANE && position + taille <= actions.limit()) {
+			if(actions.getInt(position + 1) < 0)
+				return -1;
+
+			taille += actions.getInt(position + 1);
+		}
+
+		return (position + taille <= actions.limit()) ? (int)taille : -1;
+	}
+
+	/**
+	 * Rejoue une action d'un journal ou d'un enregistrement. Un instantané est passé : la partie rejouée y est déjà.
+	 * @param moteur La partie, sans journal
+	 * @param actions Les actions, à partir de celle à rejouer
+	 * @return Faux si l'action est incomplète ou invalide
+	 */
+	static boolean rejoue(Moteur moteur, ByteBuffer actions)
+	{
+		int type = actions.get();
+		if(type <= 0 || type >= NB_CHAMPS.length || actions.remaining() < 4 * NB_CHAMPS[type])
+			return false;
+
+		if(type == INSTANTANE) {
+			int taille = actions.getInt();
+			if(taille < 0 || taille > actions.remaining())
+				return false;
+
+			actions.position(actions.position() + taille);
+			return true;
+		}
+
+		int a = (NB_CHAMPS[type] > 0) ? actions.getInt() : 0;
+		int b = (NB_CHAMPS[type] > 1) ? actions.getInt() : 0;
+		int c = (NB_CHAMPS[type] > 2) ? actions.getInt() : 0;
+		Unite u = unite(moteur, a);
+
+		switch(type) {
+			case DEPLACEMENT:
+				if(u == null || b < 0 || b >= moteur.getLargeur() * moteur.getHauteur() || !moteur.estLibre(b))
+					return false;
+				try {
+					moteur.deplaceSoldat(u, b);
+				}
+				catch(Exception e) {
+					return false;
+				}
+				return true;
+
+			case COMBAT:
+				if(u == null || unite(moteur, b) == null)
+					return false;
+				moteur.faitCombattre(u, unite(moteur, b), c);
+				return true;
+
+			case REPOS:
+				if(u == null)
+					return false;
+				moteur.faitReposer(u, false);
+				return true;
+
+			case MORT:
+				if(u == null)
+					return false;
+				moteur.tue(u);
+				return true;
+
+			case VERIFICATION:
+				moteur.verifieFin();
+				return true;
+
+			case TOUR_MONSTRES:
+				moteur.joueMonstres();
+				return true;
+
+			case FIN_TOUR:
+				moteur.finTour();
+				return true;
+
+			case AJOUT:
+				if(b < 0 || b >= moteur.getLargeur() * moteur.getHauteur())
+					return false;
+				return moteur.ajouteSoldat((char)a, b) != null;
+
+			case MORT_SUBITE:
+				moteur.mortSubite();
+				return true;
+
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Unité vivante d'un numéro, null s'il n'y en a pas
+	 */
+	private static Unite unite(Moteur moteur, int i)
+	{
+		Armee armee = moteur.getArmee();
+
+		return (i >= 0 && i < armee.getNombre() && !armee.estMort(i)) ? armee.getUnite(i) : null;
+	}
+}
@@ -0,0 +1,315 @@
+package wargame;
+
+import java.util.Arrays;
+
+/**
+ * Calcul des lignes de vue entre cases, en arithmétique entière et sans allocation.
+ * Les cases qui arrêtent une flèche se lisent dans deux tables de bits du plateau : le terrain traversable (fixe)
+ * et les cases occupées par une unité (mise à jour par le moteur à chaque déplacement).
+ *
+ * Le résultat est identique à l'ancien parcours pixel par pixel de la droite reliant les deux cases :
+ * au lieu de calculer la case de chaque pixel, on calcule pour chaque colonne de cases traversée
+ * la première et la dernière ligne atteinte par la droite, toutes les cases entre les deux étant traversées.
+ *
+ * Le terrain ne changeant pas en cours de partie, la visibilité due au terrain est précalculée pour chaque case
+ * dans une fenêtre de la taille de la plus grande portée : seules les unités présentes sur la droite restent à tester.
+ * Les cases traversées ne dépendant que du décalage entre les deux cases, la table est rangée par décalage :
+ * pour chaque décalage, une table de bits des cases d'où la cible est visible, calculée d'un coup pour toute la carte.
+ */
+final class LigneDeVue
+{
+	/** Taille d'une case en pixels, et demi case. */
+	private static final int PIX = IConfig.NB_PIX_CASE;
+	private static final int DEMI = IConfig.NB_PIX_CASE / 2;
+
+	/** Rayon de la fenêtre précalculée autour de chaque case : la plus grande portée des soldats. */
+	static final int RAYON = porteeMax();
+
+	/** Côté de la fenêtre. */
+	private static final int COTE = 2 * RAYON + 1;
+
+	private final int largeur;
+	private final int hauteur;
+
+	/** Bit à 1 pour les cases dont le tile laisse passer les flèches, partagée avec le plateau. */
+	private final long[] traversables;
+
+	/** Bit à 1 pour les cases occupées par une unité, partagée avec le plateau. */
+	private final long[] occupees;
+
+	/**
+	 * Pour chaque décalage de la fenêtre, les cases traversées par la droite partant du centre (relativement au centre).
+	 * Ne dépend que de la largeur de la carte.
+	 */
+	private int[][] traversees;
+
+	/**
+	 * Pour chaque décalage de la fenêtre, une table de bits (traversables.length mots) des cases d'où la case décalée
+	 * est visible en ne tenant compte que du terrain. Calculée à la génération et au chargement de la carte.
+	 */
+	private long[] vueTerrain;
+
+	/** Tampon des cases traversées, pour les droites sortant de la fenêtre. */
+	private int[] tampon;
+
+	/**
+	 * Constructeur d'une table de lignes de vue, à recalculer à chaque changement du terrain (voir terrainModifie)
+	 * @param largeur Largeur de la carte en nombre de cases
+	 * @param hauteur Hauteur de la carte en nombre de cases
+	 * @param traversables Table de bits des cases traversables (voir Plateau.getTraversables)
+	 * @param occupees Table de bits des cases occupées (voir Plateau.getOccupees), lue à chaque requête
+	 */
+	LigneDeVue(int largeur, int hauteur, long[] traversables, long[] occupees)
+	{
+		this.largeur = largeur;
+		this.hauteur = hauteur;
+
+		this.traversables = traversables;
+		this.occupees = occupees;
+
+		construitTraversees();
+		construitVueTerrain();
+	}
+
+	/**
+	 * Calcule la plus grande portée de tous les types de soldats
+	 */
+	private static int porteeMax()
+	{
+		int portee = 0;
+
+		for(ISoldat.TypesH t : ISoldat.TypesH.values())
+			portee = Math.max(portee, t.getPortee());
+
+		for(ISoldat.TypesM t : ISoldat.TypesM.values())
+			portee = Math.max(portee, t.getPortee());
+
+		return portee;
+	}
+
+	/**
+	 * Calcule les cases traversées par la droite pour chaque décalage de la fenêtre.
+	 * La droite ne sort jamais du rectangle formé par ses deux extrémités, elle ne dépend donc que du décalage.
+	 */
+	private void construitTraversees()
+	{
+		int[] cases = new int[4 * COTE];
+		traversees = new int[COTE * COTE][];
+
+		for(int oy = -RAYON; oy <= RAYON; oy++) {
+			for(int ox = -RAYON; ox <= RAYON; ox++) {
+				int nb_cases = parcours(RAYON, RAYON, RAYON + ox, RAYON + oy, cases);
+
+				traversees[(oy + RAYON) * COTE + ox + RAYON] = Arrays.copyOf(cases, nb_cases);
+			}
+		}
+	}
+
+	/**
+	 * Calcule la visibilité due au terrain pour tous les décalages de la fenêtre et toutes les cases de la carte.
+	 * Une case voit la case décalée si aucune des cases traversées n'est un obstacle : pour chaque décalage,
+	 * c'est l'intersection des tables de bits du terrain libre décalées de chaque case traversée, calculée 64 cases à la fois.
+	 * Les bits des cases dont la case décalée sort de la carte n'ont pas de sens, ils ne sont jamais lus.
+	 */
+	private void construitVueTerrain()
+	{
+		int mots = traversables.length;
+
+		if(vueTerrain == null)
+			vueTerrain = new long[COTE * COTE * mots];
+
+		for(int o = 0; o < COTE * COTE; o++) {
+			for(int m = 0; m < mots; m++) {
+				long visibles = -1L;
+
+				for(int d : traversees[o])
+					visibles &= motDecale(traversables, 64 * m + d);
+
+				vueTerrain[o * mots + m] = visibles;
+			}
+		}
+	}
+
+	/**
+	 * Lit 64 bits consécutifs d'une table de bits, les bits hors de la table valant 0
+	 * @param t La table de bits
+	 * @param debut Numéro du premier bit lu (peut être négatif)
+	 * @return Les 64 bits, le bit debut en poids faible
+	 */
+	static long motDecale(long[] t, int debut)
+	{
+		int m = debut >> 6, r = debut & 63;
+		long bas = (m >= 0 && m < t.length) ? t[m] : 0;
+
+		if(r == 0)
+			return bas;
+
+		long haut = (m + 1 >= 0 && m + 1 < t.length) ? t[m + 1] : 0;
+
+		return (bas >>> r) | (haut << (64 - r));
+	}
+
+	/**
+	 * Recalcule la visibilité due au terrain, une fois les cases traversables du plateau changées
+	 */
+	void terrainModifie()
+	{
+		construitVueTerrain();
+	}
+
+	/**
+	 * Teste si une case arrête une flèche (unité présente ou tile non traversable)
+	 * @param num_case Numéro de la case
+	 * @return Vrai si la case est un obstacle, faux sinon
+	 */
+	boolean estObstacle(int num_case)
+	{
+		return ((~traversables[num_case >>> 6] | occupees[num_case >>> 6]) & (1L << num_case)) != 0;
+	}
+
+	/**
+	 * Méthode permettant de savoir s'il y a un obstacle entre deux cases en prenant un chemin linéaire.
+	 * Les deux cases elles-mêmes ne sont pas testées.
+	 * @param case1 La case
+	 * @param case2 L'autre case
+	 * @return Vrai si il y a un obstacle, faux sinon
+	 */
+	boolean obstacleEntre(int case1, int case2)
+	{
+		int ox = case2 % largeur - case1 % largeur;
+		int oy = case2 / largeur - case1 / largeur;
+
+		/* Cas courant : la cible est dans la fenêtre, le terrain est lu dans la table et on ne teste que les unités sur la droite */
+		if(ox >= -RAYON && ox <= RAYON && oy >= -RAYON && oy <= RAYON) {
+			int o = (oy + RAYON) * COTE + ox + RAYON;
+
+			if((vueTerrain[o * traversables.length + (case1 >>> 6)] & (1L << case1)) == 0)
+				return true;
+
+			for(int d : traversees[o])
+				if((occupees[(case1 + d) >>> 6] & (1L << (case1 + d))) != 0)
+					return true;
+
+			return false;
+		}
+
+		if(tampon == null)
+			tampon = new int[2 * largeur + hauteur];
+
+		int nb_cases = parcours(case1 % largeur, case1 / largeur, case2 % largeur, case2 / largeur, tampon);
+
+		for(int i = 0; i < nb_cases; i++)
+			if(estObstacle(case1 + tampon[i]))
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Calcule les cases traversées par la droite reliant deux cases, sans les deux cases elles-mêmes
+	 * @param x1 Coordonnée x de la première case
+	 * @param y1 Coordonnée y de la première case
+	 * @param x2 Coordonnée x de la seconde case
+	 * @param y2 Coordonnée y de la seconde case
+	 * @param cases Rempli avec les cases traversées, relativement à la première case (x + largeur * y)
+	 * @return Le nombre de cases traversées
+	 */
+	private int parcours(int x1, int y1, int x2, int y2, int[] cases)
+	{
+		int nb_cases = 0;
+
+		/* Si les deux cases sont sur le même axe vertical, on prend juste les cases une à une entre les deux */
+		if(x1 == x2) {
+			for(int y = Math.min(y1, y2) + 1; y < Math.max(y1, y2); y++)
+				cases[nb_cases++] = largeur * (y - y1);
+
+			return nb_cases;
+		}
+
+		/* La droite part de la case la plus à gauche, ancrée au pixel (x * PIX - DEMI, y * PIX - DEMI) */
+		int xg = (x1 < x2) ? x1 : x2, yg = (x1 < x2) ? y1 : y2;
+		int xd = (x1 < x2) ? x2 : x1, yd = (x1 < x2) ? y2 : y1;
+		int ecart_x = xd - xg, ecart_y = yd - yg;
+		int gy = yg * PIX - DEMI;
+
+		/* Pente assez faible : la droite descend d'au plus une case d'un pixel à l'autre, on traite une colonne entière à la fois */
+		if(Math.abs(ecart_y) <= PIX * ecart_x) {
+			for(int c = 0; c < ecart_x; c++) {
+				int debut = ligne(gy, ecart_x, ecart_y, c * PIX);
+				int fin = ligne(gy, ecart_x, ecart_y, c * PIX + PIX - 1);
+				int pas = (fin >= debut) ? 1 : -1;
+
+				for(int y = debut; ; y += pas) {
+					int x = xg + c;
+
+					if(!((x == x1 && y == y1) || (x == x2 && y == y2)))
+						cases[nb_cases++] = (x - x1) + largeur * (y - y1);
+
+					if(y == fin)
+						break;
+				}
+			}
+		}
+		/* Pente très forte : on parcourt les pixels un à un, en ne gardant pas deux fois de suite la même case */
+		else {
+			int precedente = 0;
+
+			for(int p = 0; p < ecart_x * PIX; p++) {
+				int x = xg + p / PIX;
+				int y = ligne(gy, ecart_x, ecart_y, p);
+				int d = (x - x1) + largeur * (y - y1);
+
+				if(!((x == x1 && y == y1) || (x == x2 && y == y2)) && (nb_cases == 0 || d != precedente))
+					cases[nb_cases++] = precedente = d;
+			}
+		}
+
+		return nb_cases;
+	}
+
+	/**
+	 * Calcule la ligne de la case atteinte par la droite à un pixel donné
+	 * @param gy Ordonnée en pixels du point de départ de la droite
+	 * @param ecart_x Écart horizontal en cases entre les deux extrémités (strictement positif)
+	 * @param ecart_y Écart vertical en cases entre les deux extrémités
+	 * @param p Décalage horizontal en pixels depuis le point de départ
+	 * @return La ligne de la case contenant le pixel
+	 */
+	private static int ligne(int gy, int ecart_x, int ecart_y, int p)
+	{
+		/* Ordonnée du pixel, tronquée vers 0 comme l'était la conversion (int) des anciens calculs en flottant */
+		int y = (gy * ecart_x + ecart_y * p) / ecart_x;
+
+		/* La droite reste entre ses deux extrémités, donc y >= -DEMI : la division entière fait l'arrondi */
+		return (y + DEMI) / PIX;
+	}
+
+	/**
+	 * Calcule toutes les cases visibles depuis une case, dans un carré de rayon donné
+	 * @param num_case La case d'où l'on regarde
+	 * @param portee Rayon du carré, en nombre de cases
+	 * @param visibles Table de bits (au moins largeur * hauteur bits) remplie avec les cases visibles, la case de départ comprise
+	 * @return Le nombre de cases visibles
+	 */
+	int casesVisibles(int num_case, int portee, long[] visibles)
+	{
+		int px = num_case % largeur, py = num_case / largeur;
+		int nb_visibles = 0;
+
+		for(int i = 0; i < visibles.length; i++)
+			visibles[i] = 0;
+
+		for(int y = Math.max(0, py - portee); y <= Math.min(hauteur - 1, py + portee); y++) {
+			for(int x = Math.max(0, px - portee); x <= Math.min(largeur - 1, px + portee); x++) {
+				int c = x + largeur * y;
+
+				if(!obstacleEntre(num_case, c)) {
+					visibles[c >>> 6] |= 1L << c;
+					nb_visibles++;
+				}
+			}
+		}
+
+		return nb_visibles;
+	}
+}
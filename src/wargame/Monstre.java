@@ -46,15 +46,14 @@ public class Monstre extends Soldat
 	
 	/** 
 	 * Constructeur du monstre 
-	 * @param type_monstre Type du monstre
+	 * @param unite Unité du moteur représentée par le monstre
 	 * @throws IOException Si l'image de peut pas être chargée
 	 */
-	Monstre(TypesM type_monstre) throws IOException
+	Monstre(Unite unite) throws IOException
 	{
-		super();
+		super(unite);
 		
-		this.vie = type_monstre.getPoints();
-		this.typeMonstre = type_monstre;
+		this.typeMonstre = unite.getTypeMonstre();
 		
 		setImage();
 	}
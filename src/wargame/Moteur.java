@@ -0,0 +1,1112 @@
+package wargame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Moteur du jeu : contient l'état d'une partie (carte, soldats, brouillard, tours) et toutes ses règles.
+ * N'utilise ni AWT, ni Swing, ni Timer : une partie complète peut être jouée sans affichage.
+ * L'affichage suit la partie grâce à un MoteurListener.
+ */
+public class Moteur
+{
+	/** Largeur de la carte en nombre de cases. */
+	private final int largeur;
+
+	/** Hauteur de la carte en nombre de cases. */
+	private final int hauteur;
+
+	private int nbHerosRestant;
+	private int nbMonstresRestant;
+	private int nbSoldatAJouer;
+	private int tour;
+
+	/** La partie est-elle terminée ? */
+	private boolean terminee = false;
+
+	/** Listener du moteur. */
+	private MoteurListener listener;
+
+	/** Générateur aléatoire propre à la partie : plusieurs parties sont jouées en parallèle sans se gêner, et chacune se reproduit à partir de sa graine. */
+	private Hasard hasard;
+
+	/** Carte : numéro du tile de chaque case. */
+	private char []carte;
+
+	/** Nombre de changements du terrain, pour que l'affichage ne le redessine que lorsqu'il change. */
+	private int versionTerrain;
+
+	/** Brouillard : cases vues par chaque héros. */
+	private Brouillard brouillard;
+
+	/** État de toutes les unités de la partie, rangé par colonnes. */
+	private Armee armee;
+
+	/** Table de jeu de la carte : numéro (dans l'armée) de l'unité présente sur chaque case, -1 si la case est vide. */
+	private int []soldat;
+
+	/** Tables de bits des cases praticables, traversables et occupées. */
+	private Plateau plateau;
+
+	/** Cases arrêtant les flèches, pour le calcul des lignes de vue. */
+	private LigneDeVue ligneDeVue;
+
+	/** Index spatial des héros vivants. */
+	private GrilleHeros grilleHeros;
+
+	/** Tampon des héros trouvés par une recherche dans la grille. */
+	private Unite[] tamponHeros;
+
+	/** Tampon des clés de tri (distance, case) des héros trouvés. */
+	private int[] tamponCles;
+
+	/** Monstres, créée à la première demande (voir getMonstres) : le moteur parcourt l'armée. */
+	private ArrayList<Unite> monstre;
+
+	/** Héros. */
+	private ArrayList<Unite> heros = new ArrayList<Unite>();
+
+	/** Héros ciblés par les monstres (chacun une seule fois) */
+	private ArrayList<Unite> herosCibles = new ArrayList<Unite>(IConfig.NB_HEROS);
+
+	/** Distances aux héros ciblés, descendues par les monstres. Recalculé à chaque tour, il n'est pas sauvegardé : créé à la génération, ou à la demande après un chargement. */
+	private ChampDistances champCibles;
+
+	/** Recherche de chemins et son cache, créée à la demande pour le terrain courant. */
+	private Chemins chemins;
+
+	/** Journal des actions demandées au moteur, null s'il n'y en a pas. */
+	private Journal journal;
+
+	/** Constructeur d'un moteur aux dimensions de la configuration. */
+	public Moteur()
+	{
+		this(IConfig.LARGEUR_CARTE, IConfig.HAUTEUR_CARTE);
+	}
+
+	/**
+	 * Constructeur d'un moteur avec une carte de taille donnée
+	 * @param largeur Largeur de la carte en nombre de cases
+	 * @param hauteur Hauteur de la carte en nombre de cases
+	 */
+	public Moteur(int largeur, int hauteur)
+	{
+		this(largeur, hauteur, Hasard.graineAleatoire());
+	}
+
+	/**
+	 * Constructeur d'un moteur avec une carte de taille donnée et une graine aléatoire
+	 * @param largeur Largeur de la carte en nombre de cases
+	 * @param hauteur Hauteur de la carte en nombre de cases
+	 * @param graine Graine du générateur aléatoire de la partie
+	 */
+	public Moteur(int largeur, int hauteur, long graine)
+	{
+		this.largeur = largeur;
+		this.hauteur = hauteur;
+		this.hasard = new Hasard(graine);
+
+		carte = new char[largeur * hauteur];
+		soldat = new int[largeur * hauteur];
+		Arrays.fill(soldat, -1);
+		armee = new Armee(IConfig.NB_HEROS + IConfig.NB_MONSTRES);
+		plateau = new Plateau(largeur, hauteur);
+		brouillard = new Brouillard(largeur, hauteur, plateau.getTraversables());
+		ligneDeVue = new LigneDeVue(largeur, hauteur, plateau.getTraversables(), plateau.getOccupees());
+		grilleHeros = new GrilleHeros(largeur, hauteur);
+	}
+
+	/**
+	 * Associe un journal, qui enregistre chaque action demandée au moteur : les actions qu'elles déclenchent
+	 * (tour des monstres, morts, fin de partie) se rejouent à partir d'elles et ne sont pas enregistrées.
+	 * @param j Le journal, null pour n'en utiliser aucun
+	 */
+	void setJournal(Journal j)
+	{
+		this.journal = j;
+	}
+
+	/**
+	 * Méthode permettant d'associer un listener
+	 * @param l Le listener, null pour n'en utiliser aucun
+	 */
+	public void setListener(MoteurListener l)
+	{
+		this.listener = l;
+	}
+
+	/** Genere aléatoirement une carte, ses soldats et son brouillard. */
+	public void generer()
+	{
+		terminee = false;
+		nbMonstresRestant = IConfig.NB_MONSTRES;
+		nbHerosRestant = IConfig.NB_HEROS;
+		nbSoldatAJouer = nbHerosRestant;
+		tour = 0;
+
+		genererCarte();
+		versionTerrain++;
+		plateau.chargeTerrain(carte);
+		ligneDeVue.terrainModifie();
+		brouillard.terrainModifie();
+		champCibles = new ChampDistances(largeur, hauteur, plateau.getPraticables());
+		chemins = null;
+		genererSoldats();
+		genererBrouillard();
+	}
+
+	/**
+	 *  Méthode générant les éléments de la carte
+	 */
+	private void genererCarte()
+	{
+		/* Couche d'herbe. */
+		for(int i = 0; i < carte.length; i++) {
+			int res = nombreAleatoire(0, 99);
+
+			if(res > 60)
+				carte[i] = Terrain.HERBE_1;
+			else if(res > 40)
+				carte[i] = Terrain.HERBE_2;
+			else if(res > 20)
+				carte[i] = Terrain.HERBE_3;
+			else
+				carte[i] = Terrain.HERBE_4;
+		}
+
+		/* Rochers. */
+		for(int i = 0; i < IConfig.NB_ROCHERS; i++)
+			carte[caseAleatoire()] = (char)(Terrain.ROCHER + nombreAleatoire(0, Terrain.NB_ROCHERS - 1));
+
+		/* Arbres. */
+		for(int i = 0; i < IConfig.NB_ARBRES; i++)
+			if(!dessinerPartie(4, 0, 7, 3, caseAleatoire())) i--;
+
+		/* Paille. */
+		for(int i = 0; i < IConfig.NB_PAILLES; i++)
+			if(!dessinerPartie(2, 0, 3, 1, caseAleatoire())) i--;
+
+		/* Eau. */
+		for(int i = 0; i < IConfig.NB_EAU; i++)
+			if(!dessinerPartie(0, 3, 1, 4, caseAleatoire())) i--;
+	}
+
+	/**
+	 * Recopie une partie du tileset sur la carte, seulement si toutes les cases recouvertes sont praticables.
+	 * Les cases qui sortent de la carte sont ignorées.
+	 * @param x1 Coordonnée x du coin haut gauche sur le tileset
+	 * @param y1 Coordonnée y du coin haut gauche sur le tileset
+	 * @param x2 Coordonnée x du coin bas droite sur le tileset
+	 * @param y2 Coordonnée y du coin bas droite sur le tileset
+	 * @param dest Case de destination sur la carte (coin haut gauche)
+	 * @return false si aucune place pour dessiner, true sinon.
+	 */
+	private boolean dessinerPartie(int x1, int y1, int x2, int y2, int dest)
+	{
+		int dx = dest % largeur;
+		int dy = dest / largeur;
+
+		/* Vérification qu'il n'existe que des blocs praticables. */
+		for(int i = 0; i <= x2 - x1; i++)
+			for(int j = 0; j <= y2 - y1; j++)
+				if(estValide(dx + i, dy + j) && !Terrain.estPraticable(carte[(dx + i) + largeur * (dy + j)]))
+					return false;
+
+		for(int i = x1; i <= x2; i++)
+			for(int j = y1; j <= y2; j++) {
+				int x = dx + i - x1;
+				int y = dy + j - y1;
+
+				if(estValide(x, y))
+					carte[x + largeur * y] = (char)(i + Terrain.LARGEUR_TILESET * j);
+			}
+
+		return true;
+	}
+
+	/**
+	 *  Méthode générant tous les soldats
+	 */
+	private void genererSoldats()
+	{
+		/* Mise à 0 de la carte. */
+		Arrays.fill(soldat, -1);
+		plateau.vide();
+		grilleHeros.vide();
+
+		heros.clear();
+		monstre = null;
+		armee.vide();
+
+		for(int i = 0; i < IConfig.NB_HEROS; i++)
+			placer(armee.ajoute(ISoldat.TypesH.getTypeHAlea(hasard)), positionVide(ISoldat.HEROS, hasard));
+
+		for(int i = 0; i < IConfig.NB_MONSTRES; i++)
+			placer(armee.ajoute(ISoldat.TypesM.getTypeMAlea(hasard)), positionVide(ISoldat.MONSTRE, hasard));
+
+		/* Tampons des recherches de héros, pour que les tours de jeu n'allouent rien (agrandis si des héros sont ajoutés) */
+		tamponHeros = new Unite[heros.size()];
+		tamponCles = new int[heros.size()];
+	}
+
+	/**
+	 * Place une nouvelle unité sur la carte
+	 * @param i Numéro de l'unité à placer
+	 * @param num_case La case où la placer
+	 */
+	private void placer(int i, int num_case)
+	{
+		armee.setCase(i, num_case);
+		soldat[num_case] = i;
+		plateau.occupe(num_case);
+		if(chemins != null)
+			chemins.occupe(num_case, -1);
+
+		if(armee.estHeros(i)) {
+			heros.add(armee.getUnite(i));
+			grilleHeros.ajoute(armee.getUnite(i), num_case);
+		}
+		else if(monstre != null)
+			monstre.add(armee.getUnite(i));
+	}
+
+	/**
+	 *  Méthode générant et initialisant le brouillard
+	 */
+	private void genererBrouillard()
+	{
+		brouillard.vide();
+
+		for(Unite h : heros)
+			if(!h.estMort())
+				brouillard.place(h, h.getCase());
+	}
+
+	/**
+	 * Regenere le brouillard du au déplacement s'il s'agit d'un héros et deplace le soldat
+	 * @param u Unité à déplacer
+	 * @param nouvelle_case Case sur laquelle finira l'unité
+	 * @throws Exception Levée lorsque la nouvelle position est invalide
+	 */
+	public void deplaceSoldat(Unite u, int nouvelle_case) throws Exception
+	{
+		if(nouvelle_case < 0 || nouvelle_case >= soldat.length)
+			throw new Exception("La nouvelle position est invalide");
+
+		if(journal != null)
+			journal.enregistre(Journal.DEPLACEMENT, u.getIndice(), nouvelle_case, 0);
+
+		deplace(u.getIndice(), nouvelle_case);
+	}
+
+	/**
+	 * Déplace une unité sur une case valide, sans journaliser le déplacement
+	 */
+	private void deplace(int i, int nouvelle_case)
+	{
+		int depart = armee.getCase(i);
+
+		if(listener != null)
+			historique(armee.getNom(i) + " se déplace en " + coordonnees(nouvelle_case));
+
+		soldat[nouvelle_case] = i;
+		soldat[depart] = -1;
+		plateau.libere(depart);
+		plateau.occupe(nouvelle_case);
+		if(chemins != null)
+			chemins.occupe(nouvelle_case, depart);
+		if(armee.estHeros(i))
+			grilleHeros.deplace(armee.getUnite(i), depart, nouvelle_case);
+		armee.setCase(i, nouvelle_case);
+
+		armee.setAJoue(i, true);
+		if(armee.estHeros(i))
+			nbSoldatAJouer--;
+
+		if(listener != null)
+			listener.deplacement(armee.getUnite(i), depart, nouvelle_case);
+
+		/* Le brouillard est changé que lorsque c'est un héros qui joue */
+		if(armee.estHeros(i))
+			brouillard.place(armee.getUnite(i), nouvelle_case);
+	}
+
+	/**
+	 * Méthode permettant de faire combattre 2 soldats et vérifie ensuite si une armée a gagné
+	 * @param attaquant L'unité qui attaque
+	 * @param defenseur L'unité qui défend
+	 * @param distance La distance qui sépare les deux unités
+	 * @return Vrai si une des deux armées a gagné, faux sinon
+	 */
+	public boolean faitCombattre(Unite attaquant, Unite defenseur, int distance)
+	{
+		if(journal != null)
+			journal.enregistre(Journal.COMBAT, attaquant.getIndice(), defenseur.getIndice(), distance);
+
+		return combat(attaquant.getIndice(), defenseur.getIndice(), distance);
+	}
+
+	/**
+	 * Fait combattre deux unités, sans journaliser le combat
+	 */
+	private boolean combat(int attaquant, int defenseur, int distance)
+	{
+		/* On calcule un dégat aléatoire, selon si on est côté à côté ou éloigné du soldat attaqué */
+		int degat = (distance == 1) ? nombreAleatoire(1, armee.getPuissance(attaquant)) : armee.getTir(attaquant);
+		int riposte = -1;
+
+		int vie = armee.getVie(defenseur) - degat;
+		armee.setVie(defenseur, vie);
+
+		/* S'il lui reste encore de la vie et que sa portée est assez grande, le défenseur réplique */
+		if(vie > 0 && armee.getPortee(defenseur) >= distance) {
+			riposte = (distance == 1) ? armee.getPuissance(defenseur) / IConfig.COEFFICIENT_REDUC : armee.getTir(defenseur) / IConfig.COEFFICIENT_REDUC;
+			armee.setVie(attaquant, armee.getVie(attaquant) - riposte);
+		}
+
+		armee.setAJoue(attaquant, true);
+		if(armee.estHeros(attaquant))
+			nbSoldatAJouer--;
+
+		if(listener != null)
+			listener.combat(armee.getUnite(attaquant), armee.getUnite(defenseur), distance, degat, riposte);
+
+		if(vie <= 0)
+			retire(defenseur);
+		else if(armee.getVie(attaquant) <= 0)
+			retire(attaquant);
+
+		return testeFin();
+	}
+
+	/**
+	 * Méthode permettant de faire reposer une unité
+	 * @param u L'unité à reposer
+	 * @param afficher_message Le repos est-il demandé par le joueur ?
+	 * @return -1 si la vie est déjà au max, la vie récupérée sinon
+	 */
+	public int faitReposer(Unite u, boolean afficher_message)
+	{
+		if(journal != null)
+			journal.enregistre(Journal.REPOS, u.getIndice(), 0, 0);
+
+		return repos(u.getIndice(), afficher_message);
+	}
+
+	/**
+	 * Fait reposer une unité, sans journaliser le repos
+	 */
+	private int repos(int i, boolean afficher_message)
+	{
+		int regain = nombreAleatoire(0, IConfig.REPOS_MAX);
+
+		/* Si la vie de l'unité est déjà au max on considère qu'elle n'a pas joué */
+		if(armee.getVie(i) == armee.getVieMax(i)) {
+			regain = -1;
+			if(listener != null)
+				historique(armee.getNom(i) + " " + coordonnees(armee.getCase(i)) + " a sa vie au maximum");
+		}
+		else {
+			armee.setVie(i, armee.getVie(i) + regain);
+			armee.setAJoue(i, true);
+			if(armee.estHeros(i))
+				nbSoldatAJouer--;
+
+			if(listener != null)
+				historique(armee.getNom(i) + " se repose et regagne " + regain + " points de vie");
+		}
+
+		if(listener != null)
+			listener.repos(armee.getUnite(i), regain, afficher_message);
+
+		return regain;
+	}
+
+	/**
+	 * Tue une unité et la retire de la carte
+	 * @param u L'unité à tuer
+	 */
+	public void tue(Unite u)
+	{
+		if(journal != null)
+			journal.enregistre(Journal.MORT, u.getIndice(), 0, 0);
+
+		retire(u.getIndice());
+	}
+
+	/**
+	 * Tue une unité, sans journaliser sa mort
+	 */
+	private void retire(int i)
+	{
+		if(armee.estMort(i))
+			return;
+
+		int c = armee.getCase(i);
+		armee.setMort(i, true);
+		if(soldat[c] == i) {
+			soldat[c] = -1;
+			plateau.libere(c);
+		}
+
+		if(armee.estHeros(i)) {
+			nbHerosRestant--;
+			brouillard.retire(armee.getUnite(i));
+			grilleHeros.retire(armee.getUnite(i), c);
+		}
+		else
+			nbMonstresRestant--;
+
+		if(listener != null)
+			listener.mort(armee.getUnite(i));
+	}
+
+	/**
+	 * Vérifie si une des deux armées a gagné, et termine la partie si c'est le cas
+	 * @return Vrai si la partie est terminée, faux sinon
+	 */
+	public boolean verifieFin()
+	{
+		if(journal != null)
+			journal.enregistre(Journal.VERIFICATION, 0, 0, 0);
+
+		return testeFin();
+	}
+
+	/**
+	 * Vérifie si une des deux armées a gagné, sans journaliser la vérification
+	 */
+	private boolean testeFin()
+	{
+		if(terminee)
+			return true;
+
+		if(nbMonstresRestant <= 0)
+			termine(true);
+		else if(nbHerosRestant <= 0)
+			termine(false);
+
+		return terminee;
+	}
+
+	/**
+	 * Termine la partie
+	 * @param gagne Vrai si le joueur a gagné, faux sinon
+	 */
+	private void termine(boolean gagne)
+	{
+		terminee = true;
+
+		if(listener != null)
+			listener.finPartie(gagne);
+	}
+
+	/**
+	 *  Retourne le héros visible le plus proche aux alentours d'une case, null s'il n'y en a pas.
+	 *  À distance égale, le héros sur la plus petite case est choisi.
+	 *  @param num_case Case du soldat où chercher aux alentours
+	 *  @param portee Nombre de cases du rayon où on cherche
+	 *  @return Le héros trouvé, null sinon
+	 */
+	public Unite herosAlentour(int num_case, int portee)
+	{
+		if(tamponHeros == null || tamponHeros.length < heros.size())
+			tamponHeros = new Unite[heros.size()];
+
+		if(tamponCles == null || tamponCles.length < heros.size())
+			tamponCles = new int[heros.size()];
+
+		int nb_heros = grilleHeros.cherche(num_case, portee, tamponHeros);
+
+		/* Tri par insertion des candidats selon (distance, case), puis le premier visible est retenu */
+		for(int i = 0; i < nb_heros; i++) {
+			int c = tamponHeros[i].getCase();
+			int cle = distance(c, num_case) * soldat.length + c;
+			int j = i;
+
+			for(; j > 0 && tamponCles[j - 1] > cle; j--)
+				tamponCles[j] = tamponCles[j - 1];
+			tamponCles[j] = cle;
+		}
+
+		for(int i = 0; i < nb_heros; i++) {
+			int c = tamponCles[i] % soldat.length;
+
+			if(!obstacleEntreCase(c, num_case))
+				return armee.getUnite(soldat[c]);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Cherche tous les héros vivants dans un carré centré sur une case
+	 * @param num_case Case au centre du carré
+	 * @param portee Rayon du carré, en nombre de cases
+	 * @param heros Rempli avec les héros trouvés, doit pouvoir contenir tous les héros de la partie
+	 * @return Le nombre de héros trouvés
+	 */
+	public int herosDansRayon(int num_case, int portee, Unite[] heros)
+	{
+		return grilleHeros.cherche(num_case, portee, heros);
+	}
+
+	/**
+	 *  Fait jouer tous les monstres, dans l'ordre de leur création
+	 */
+	public void joueMonstres()
+	{
+		if(journal != null)
+			journal.enregistre(Journal.TOUR_MONSTRES, 0, 0, 0);
+
+		tourMonstres();
+	}
+
+	/**
+	 * Fait jouer tous les monstres, sans journaliser leur tour
+	 */
+	private void tourMonstres()
+	{
+		/* Les héros ciblés sont remis à zéro */
+		herosCibles.clear();
+		if(champCibles != null)
+			champCibles.vide();
+
+		/* Parcours de l'armée par numéro : les monstres n'ont pas besoin de poignée */
+		for(int m = 0; m < armee.getNombre() && !terminee; m++) {
+			if(armee.estHeros(m) || armee.estMort(m))
+				continue;
+
+			Unite h;
+			/* Si on a peu de PV on fait un repos */
+			if(armee.getPourcentageVie(m) < 10)
+				repos(m, true);
+			/* Combat avec un héros aux alentours */
+			else if((h = herosAlentour(armee.getCase(m), armee.getPortee(m))) != null) {
+				if(!herosCibles.contains(h))
+					herosCibles.add(h);
+				combat(m, h.getIndice(), distance(h.getCase(), armee.getCase(m)));
+			}
+			/* Sinon déplacement */
+			else
+				deplaceMonstre(m);
+		}
+	}
+
+	/**
+	 * Déplace un monstre d'un pas vers le plus proche des héros ciblés (en nombre de pas, obstacles contournés),
+	 * ou aléatoirement si aucun n'est atteignable. Un monstre dont les pas vers sa cible sont bloqués par des unités attend.
+	 * @param m Numéro du monstre à déplacer
+	 */
+	private void deplaceMonstre(int m)
+	{
+		int depart = armee.getCase(m);
+		int nouvelle_case = -1;
+		int distance_cible = ChampDistances.INFINI;
+
+		if(!herosCibles.isEmpty()) {
+			if(champCibles == null)
+				champCibles = new ChampDistances(largeur, hauteur, plateau.getPraticables());
+
+			/* Le champ ne reçoit que les héros ciblés depuis le dernier déplacement */
+			for(int j = champCibles.getNbSources(); j < herosCibles.size(); j++)
+				champCibles.ajouteSource(herosCibles.get(j).getCase());
+
+			distance_cible = champCibles.distance(depart);
+
+			/* On descend le champ : la voisine libre la plus proche des cibles, la première ligne par ligne en cas d'égalité */
+			int voisines = plateau.voisinesLibres(depart);
+			int meilleure = distance_cible;
+
+			for(int dy = 0; dy < 3; dy++) {
+				for(int dx = 0; dx < 3; dx++) {
+					if((voisines & (1 << (3 * dx + dy))) == 0)
+						continue;
+
+					int c = depart + (dx - 1) + largeur * (dy - 1);
+					if(champCibles.distance(c) < meilleure) {
+						meilleure = champCibles.distance(c);
+						nouvelle_case = c;
+					}
+				}
+			}
+		}
+
+		/* Sinon on se déplace aléatoirement */
+		if(distance_cible == ChampDistances.INFINI)
+			nouvelle_case = trouvePositionAleatoire(depart);
+
+		if(nouvelle_case != -1)
+			deplace(m, nouvelle_case);
+	}
+
+	/**
+	 * Termine le tour du joueur : les monstres jouent, les héros n'ayant pas joué se reposent puis un nouveau tour commence
+	 */
+	public void finTour()
+	{
+		if(journal != null)
+			journal.enregistre(Journal.FIN_TOUR, 0, 0, 0);
+
+		if(terminee)
+			return;
+
+		tourMonstres();
+		tour++;
+
+		if(listener != null)
+			historique("Début du tour " + tour);
+
+		for(int i = 0; i < armee.getNombre(); i++)
+			if(armee.estHeros(i) && !armee.estMort(i) && !armee.aJoue(i))
+				repos(i, false);
+
+		armee.effaceAJoue();
+
+		nbSoldatAJouer = nbHerosRestant;
+
+		/* Une fois le tour terminé, le journal peut écrire un instantané de la partie */
+		if(journal != null)
+			journal.nouveauTour(this);
+	}
+
+	/**
+	 * Ajoute une unité d'un type aléatoire sur une case libre
+	 * @param type Type d'unité (ISoldat.HEROS ou ISoldat.MONSTRE)
+	 * @param num_case Case où placer l'unité
+	 * @return L'unité créée, null si la case n'est pas libre
+	 */
+	public Unite ajouteSoldat(char type, int num_case)
+	{
+		if(!estLibre(num_case))
+			return null;
+
+		if(journal != null)
+			journal.enregistre(Journal.AJOUT, type, num_case, 0);
+
+		int i;
+		if(type == ISoldat.HEROS) {
+			i = armee.ajoute(ISoldat.TypesH.getTypeHAlea(hasard));
+			nbHerosRestant++;
+		}
+		else {
+			i = armee.ajoute(ISoldat.TypesM.getTypeMAlea(hasard));
+			nbMonstresRestant++;
+		}
+
+		placer(i, num_case);
+		Unite u = armee.getUnite(i);
+		if(u.estHeros())
+			brouillard.place(u, num_case);
+		return u;
+	}
+
+	/**
+	 * Générateur de la partie, dont la sauvegarde copie et restaure l'état : sauvegarder ne change pas la suite de la partie
+	 * @return Le générateur
+	 */
+	Hasard getHasard()
+	{
+		return hasard;
+	}
+
+	/**
+	 * Remplace la partie par une partie sauvegardée, encore sans unité : elles sont ajoutées ensuite avec restaureUnite.
+	 * Le générateur n'est pas touché : son état est restauré à part (voir getHasard).
+	 * @param carte Numéro du tile de chaque case
+	 * @param tour Numéro du tour
+	 * @param terminee Vrai si la partie est terminée
+	 */
+	void restaure(char[] carte, int tour, boolean terminee)
+	{
+		System.arraycopy(carte, 0, this.carte, 0, this.carte.length);
+		this.tour = tour;
+		this.terminee = terminee;
+
+		versionTerrain++;
+		plateau.chargeTerrain(this.carte);
+		ligneDeVue.terrainModifie();
+		brouillard.terrainModifie();
+		champCibles = new ChampDistances(largeur, hauteur, plateau.getPraticables());
+		chemins = null;
+
+		Arrays.fill(soldat, -1);
+		plateau.vide();
+		grilleHeros.vide();
+		brouillard.vide();
+
+		heros.clear();
+		monstre = null;
+		herosCibles.clear();
+		armee.vide();
+
+		nbHerosRestant = nbMonstresRestant = nbSoldatAJouer = 0;
+	}
+
+	/**
+	 * Ajoute une unité d'une partie sauvegardée (voir restaure)
+	 * @param type Type de l'unité (voir Armee.getType)
+	 * @param vie Vie de l'unité
+	 * @param num_case Case de l'unité, qui doit être libre si elle est vivante
+	 * @param mort Vrai si l'unité est morte
+	 * @param a_joue Vrai si l'unité a déjà joué ce tour
+	 */
+	void restaureUnite(int type, int vie, int num_case, boolean mort, boolean a_joue)
+	{
+		int i = armee.ajoute(type);
+		armee.setVie(i, vie);
+		armee.setAJoue(i, a_joue);
+
+		/* Les unités mortes restent dans les listes, mais pas sur la carte */
+		if(mort) {
+			armee.setMort(i, true);
+			armee.setCase(i, num_case);
+
+			if(armee.estHeros(i))
+				heros.add(armee.getUnite(i));
+			else if(monstre != null)
+				monstre.add(armee.getUnite(i));
+
+			return;
+		}
+
+		placer(i, num_case);
+
+		if(armee.estHeros(i)) {
+			nbHerosRestant++;
+			brouillard.place(armee.getUnite(i), num_case);
+			if(!a_joue)
+				nbSoldatAJouer++;
+		}
+		else
+			nbMonstresRestant++;
+	}
+
+	/**
+	 * Permet de récupérer l'état de toutes les unités, pour la sauvegarde
+	 * @return L'armée de la partie
+	 */
+	Armee getArmee()
+	{
+		return armee;
+	}
+
+	/**
+	 * Met la vie de toutes les unités à 1 point de vie
+	 */
+	public void mortSubite()
+	{
+		if(journal != null)
+			journal.enregistre(Journal.MORT_SUBITE, 0, 0, 0);
+
+		/* Les unités vivantes sont celles présentes sur la carte */
+		for(int i = 0; i < armee.getNombre(); i++)
+			if(!armee.estMort(i))
+				armee.setVie(i, 1);
+	}
+
+	/** Trouve une case vide aléatoirement sur la carte, dans la moitié de l'armée concernée.
+	 * Utilisable pour placer des Soldats. Le tirage se fait hors de la partie (voir Aleatoire) :
+	 * il ne touche pas au générateur de la partie, dont les tirages ne sont pas journalisés ici.
+	 * @param type Type de Soldat (ISoldat.HEROS ou ISoldat.MONSTRE)
+	 * @return     Le numéro de la case vide.
+	 */
+	public int trouvePositionVide(char type)
+	{
+		return positionVide(type, Aleatoire.getHasard());
+	}
+
+	/**
+	 * Tire une case vide dans la moitié de l'armée concernée (voir trouvePositionVide)
+	 * @param h Générateur utilisé : celui de la partie pour la génération, qui est journalisée
+	 */
+	private int positionVide(char type, Hasard h)
+	{
+		int dec = type == ISoldat.HEROS ? 1 : 0;
+		int x, y;
+
+		do {
+			x = dec * (largeur / 2) + dec + h.entier(largeur / 2);
+			y = h.entier(hauteur);
+		} while(!estValide(x, y) || !estLibre(x + largeur * y));
+
+		return x + largeur * y;
+	}
+
+	/**
+	 * Cherche une case libre aléatoire autour de la case d'une unité.
+	 * Tire dans le générateur de la partie : à n'appeler que depuis une action journalisée (le tour des monstres).
+	 * @param num_case Case de l'unité autour de laquelle chercher
+	 * @return -1 si aucune case autour de l'unité n'est libre, une case aléatoire sinon
+	 */
+	int trouvePositionAleatoire(int num_case)
+	{
+		/* Toutes les positions possibles autour de l'unité, colonne par colonne.
+		 * Elle ne pourra pas faire du surplace car sa propre case n'est pas libre */
+		int voisines = plateau.voisinesLibres(num_case);
+
+		if(voisines == 0)
+			return -1;
+
+		/* On retire les positions précédant celle tirée, la position tirée est alors le bit de poids faible */
+		for(int choix = nombreAleatoire(0, Integer.bitCount(voisines) - 1); choix > 0; choix--)
+			voisines &= voisines - 1;
+
+		int b = Integer.numberOfTrailingZeros(voisines);
+
+		return num_case + (b / 3 - 1) + largeur * (b % 3 - 1);
+	}
+
+	/**
+	 * Cherche un plus court chemin (en nombre de pas d'une case) entre deux cases, à travers les cases libres.
+	 * Les derniers chemins trouvés sont gardés en cache jusqu'à ce qu'une de leurs cases soit occupée :
+	 * si des cases se sont libérées depuis, le chemin rendu peut être plus long que le plus court.
+	 * @param depart Case de départ (celle de l'unité à déplacer)
+	 * @param arrivee Case d'arrivée, qui doit être libre
+	 * @param etapes Rempli avec les cases du chemin, départ exclu et arrivée comprise (au plus etapes.length cases)
+	 * @return Le nombre de pas du chemin, -1 s'il n'y en a pas
+	 */
+	public int chemin(int depart, int arrivee, int[] etapes)
+	{
+		if(chemins == null)
+			chemins = new Chemins(largeur, hauteur, plateau);
+
+		return chemins.cherche(depart, arrivee, etapes);
+	}
+
+	/**
+	 * Méthode permettant de savoir s'il y a un obstacle entre deux cases en prenant un chemin linéaire
+	 * @param case1 La case
+	 * @param case2 L'autre case
+	 * @return Vrai si il y a un obstacle, faux sinon
+	 */
+	public boolean obstacleEntreCase(int case1, int case2)
+	{
+		return ligneDeVue.obstacleEntre(case1, case2);
+	}
+
+	/**
+	 * Calcule toutes les cases visibles depuis une case (sans obstacle entre les deux), dans un carré de rayon donné
+	 * @param num_case La case d'où l'on regarde
+	 * @param portee Rayon du carré, en nombre de cases
+	 * @param visibles Table de bits d'au moins (largeur * hauteur + 63) / 64 mots, remplie avec les cases visibles
+	 * @return Le nombre de cases visibles
+	 */
+	public int casesVisibles(int num_case, int portee, long[] visibles)
+	{
+		return ligneDeVue.casesVisibles(num_case, portee, visibles);
+	}
+
+	/**
+	 * Calcule la distance entre deux cases, en nombre de cases (voir Position.distance)
+	 * @param case1 La case
+	 * @param case2 L'autre case
+	 * @return La distance entre les deux cases
+	 */
+	public int distance(int case1, int case2)
+	{
+		return distance(case1 % largeur, case1 / largeur, case2 % largeur, case2 / largeur);
+	}
+
+	/**
+	 * Calcule la distance entre deux coordonnées, en nombre de cases (voir Position.distance)
+	 */
+	static int distance(int x1, int y1, int x2, int y2)
+	{
+		int dx = Math.abs(x1 - x2);
+		int dy = Math.abs(y1 - y2);
+
+		if(dx == 1 && dy == 1)
+			return 1;
+
+		return dx + dy;
+	}
+
+	/**
+	 * Envoie une phrase d'historique au listener.
+	 * Les appelants vérifient qu'il y a un listener avant de construire la phrase, ce qui évite de la construire sans affichage.
+	 * @param s La phrase d'historique
+	 */
+	private void historique(String s)
+	{
+		listener.historique(s);
+	}
+
+	/**
+	 * Retourne les coordonnées d'une case sous la forme (x,y)
+	 * @param num_case Numéro de la case
+	 * @return La chaine des coordonnées
+	 */
+	private String coordonnees(int num_case)
+	{
+		return "(" + (num_case % largeur) + "," + (num_case / largeur) + ")";
+	}
+
+	/**
+	 * Génère un nombre aléatoire entre deux bornes avec le générateur de la partie
+	 * @param min Borne inférieure
+	 * @param max Borne supérieure
+	 * @return Nombre aléatoire compris entre min et max
+	 */
+	private int nombreAleatoire(int min, int max)
+	{
+		return min + hasard.entier(max - min + 1);
+	}
+
+	/**
+	 * Choisit une case aléatoire de la carte
+	 * @return Le numéro de la case
+	 */
+	private int caseAleatoire()
+	{
+		return nombreAleatoire(0, largeur - 1) + largeur * nombreAleatoire(0, hauteur - 1);
+	}
+
+	/**
+	 * Teste si des coordonnées sont dans la carte
+	 * @param x Coordonnée x
+	 * @param y Coordonnée y
+	 * @return Vrai si les coordonnées sont dans la carte, faux sinon
+	 */
+	public boolean estValide(int x, int y)
+	{
+		return x >= 0 && y >= 0 && x < largeur && y < hauteur;
+	}
+
+	/**
+	 * Teste si une case est praticable et sans unité
+	 * @param num_case Numéro de la case
+	 * @return Vrai si une unité peut s'y rendre, faux sinon
+	 */
+	public boolean estLibre(int num_case)
+	{
+		return plateau.estLibre(num_case);
+	}
+
+	/**
+	 * Cases libres du carré 3 x 3 centré sur une case, en un seul masque
+	 * @param num_case Numéro de la case au centre
+	 * @return Un masque de 9 bits : la case (x + dx, y + dy) est libre si le bit 3 * (dx + 1) + (dy + 1) est à 1
+	 * (la case elle-même comprise, si elle est libre)
+	 */
+	public int voisinesLibres(int num_case)
+	{
+		return plateau.voisinesLibres(num_case);
+	}
+
+	/**
+	 * Teste si le tile d'une case est praticable
+	 * @param num_case Numéro de la case
+	 * @return Vrai si la case est praticable, faux sinon
+	 */
+	public boolean estPraticable(int num_case)
+	{
+		return plateau.estPraticable(num_case);
+	}
+
+	/**
+	 * Teste si une case est visible par au moins un héros
+	 * @param num_case Numéro de la case
+	 * @return Vrai si la case est visible, faux sinon
+	 */
+	public boolean estVisible(int num_case)
+	{
+		return brouillard.estVisible(num_case);
+	}
+
+	/**
+	 * Permet de récupérer le brouillard, pour que l'affichage ne redessine que les cases modifiées
+	 * @return Le brouillard de la partie
+	 */
+	Brouillard getBrouillard()
+	{
+		return brouillard;
+	}
+
+	/**
+	 * Permet de savoir si le terrain a changé, sans le comparer case par case
+	 * @return Un numéro augmenté à chaque changement du terrain
+	 */
+	int getVersionTerrain()
+	{
+		return versionTerrain;
+	}
+
+	/**
+	 * Retourne le numéro du tile d'une case
+	 * @param num_case Numéro de la case
+	 * @return Le numéro du tile
+	 */
+	public char getTile(int num_case)
+	{
+		return carte[num_case];
+	}
+
+	/**
+	 * Retourne l'unité présente sur une case
+	 * @param num_case Numéro de la case
+	 * @return L'unité, null si la case est vide
+	 */
+	public Unite getSoldat(int num_case)
+	{
+		return (soldat[num_case] != -1) ? armee.getUnite(soldat[num_case]) : null;
+	}
+
+	/**
+	 * Retourne le numéro (dans l'armée) de l'unité présente sur une case, sans créer sa poignée
+	 * @param num_case Numéro de la case
+	 * @return Le numéro de l'unité, -1 si la case est vide
+	 */
+	int getNumeroSoldat(int num_case)
+	{
+		return soldat[num_case];
+	}
+
+	public ArrayList<Unite> getHeros() {
+		return heros;
+	}
+
+	/**
+	 * Monstres de la partie, morts compris, dans l'ordre de leur création.
+	 * La liste et les poignées des monstres sont créées au premier appel.
+	 * @return Les monstres
+	 */
+	public ArrayList<Unite> getMonstres() {
+		if(monstre == null) {
+			monstre = new ArrayList<Unite>();
+			for(int i = 0; i < armee.getNombre(); i++)
+				if(!armee.estHeros(i))
+					monstre.add(armee.getUnite(i));
+		}
+
+		return monstre;
+	}
+
+	public int getLargeur() {
+		return largeur;
+	}
+
+	public int getHauteur() {
+		return hauteur;
+	}
+
+	public int getTour() {
+		return tour;
+	}
+
+	public int getNbHerosRestant() {
+		return nbHerosRestant;
+	}
+
+	public int getNbMonstresRestant() {
+		return nbMonstresRestant;
+	}
+
+	public int getNbSoldatAJouer() {
+		return nbSoldatAJouer;
+	}
+
+	public boolean estTerminee() {
+		return terminee;
+	}
+}
@@ -0,0 +1,46 @@
+package wargame;
+
+/**
+ * Interface permettant d'appliquer des écouteurs sur le Moteur.
+ * Permet à l'affichage (sons, infobulles, animations) de suivre la partie sans que le moteur n'en dépende.
+ */
+public interface MoteurListener {
+	/**
+	 * Événement lorsqu'une action déclenche une phrase d'historique
+	 * @param s La phrase d'historique
+	 */
+	void historique(String s);
+	/**
+	 * Événement lorsqu'une unité se déplace
+	 * @param u L'unité déplacée
+	 * @param depart Numéro de la case de départ
+	 * @param arrivee Numéro de la case d'arrivée
+	 */
+	void deplacement(Unite u, int depart, int arrivee);
+	/**
+	 * Événement lorsque deux unités combattent
+	 * @param attaquant L'unité qui attaque
+	 * @param defenseur L'unité qui défend
+	 * @param distance La distance séparant les deux unités
+	 * @param degat Les dégâts reçus par le défenseur
+	 * @param riposte Les dégâts reçus par l'attaquant, -1 s'il n'y a pas eu de riposte
+	 */
+	void combat(Unite attaquant, Unite defenseur, int distance, int degat, int riposte);
+	/**
+	 * Événement lorsqu'une unité se repose
+	 * @param u L'unité qui se repose
+	 * @param regain La vie regagnée, -1 si la vie était déjà au maximum
+	 * @param afficher_message Le repos a-t-il été demandé par le joueur ?
+	 */
+	void repos(Unite u, int regain, boolean afficher_message);
+	/**
+	 * Événement lorsqu'une unité meurt
+	 * @param u L'unité morte
+	 */
+	void mort(Unite u);
+	/**
+	 * Événement lorsque la partie se termine
+	 * @param gagne Vrai si le joueur a gagné, faux s'il a perdu
+	 */
+	void finPartie(boolean gagne);
+}
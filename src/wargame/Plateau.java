@@ -0,0 +1,154 @@
+package wargame;
+
+
+/**
+ * Tables de bits de la carte, un bit par case : cases praticables et traversables (fixées par le terrain),
+ * et cases occupées par une unité. L'occupation est tenue à jour par le moteur à chaque placement, déplacement et mort.
+ * Les tables sont partagées : les lignes de vue et le brouillard lisent les cases traversables et occupées du plateau.
+ *
+ * Les questions sur une case ne lisent qu'un mot par table, sans passer par le tile ni par l'unité de la case.
+ * Les voisines libres d'une case s'obtiennent d'un coup : trois lectures de 3 bits, une par ligne.
+ */
+final class Plateau
+{
+	/**
+	 * Place dans le masque des voisines des 3 bits d'une ligne (gauche, milieu, droite en poids croissants) :
+	 * les bits d'une même ligne sont espacés de 3, le masque étant rangé colonne par colonne.
+	 */
+	private static final int[] ETALE = { 0, 01, 010, 011, 0100, 0101, 0110, 0111 };
+
+	private final int largeur;
+	private final int hauteur;
+
+	/** Bit à 1 pour les cases praticables, et pour les cases traversables par une flèche. */
+	private final long[] praticables;
+	private final long[] traversables;
+
+	/** Bit à 1 pour les cases occupées par une unité. */
+	private final long[] occupees;
+
+	/**
+	 * Constructeur d'un plateau sans terrain praticable et sans unité
+	 * @param largeur Largeur de la carte en nombre de cases
+	 * @param hauteur Hauteur de la carte en nombre de cases
+	 */
+	Plateau(int largeur, int hauteur)
+	{
+		int mots = (largeur * hauteur + 63) >>> 6;
+
+		this.largeur = largeur;
+		this.hauteur = hauteur;
+		praticables = new long[mots];
+		traversables = new long[mots];
+		occupees = new long[mots];
+	}
+
+	/**
+	 * Recalcule les tables du terrain à partir des tiles de la carte
+	 * @param carte Numéro du tile de chaque case
+	 */
+	void chargeTerrain(char[] carte)
+	{
+		for(int i = 0; i < praticables.length; i++)
+			praticables[i] = traversables[i] = 0;
+
+		for(int c = 0; c < largeur * hauteur; c++) {
+			if(Terrain.estPraticable(carte[c]))
+				praticables[c >>> 6] |= 1L << c;
+			if(Terrain.estTraversable(carte[c]))
+				traversables[c >>> 6] |= 1L << c;
+		}
+	}
+
+	/** Libère toutes les cases. */
+	void vide()
+	{
+		for(int i = 0; i < occupees.length; i++)
+			occupees[i] = 0;
+	}
+
+	/**
+	 * Occupe une case
+	 * @param num_case Numéro de la case
+	 */
+	void occupe(int num_case)
+	{
+		occupees[num_case >>> 6] |= 1L << num_case;
+	}
+
+	/**
+	 * Libère une case
+	 * @param num_case Numéro de la case
+	 */
+	void libere(int num_case)
+	{
+		occupees[num_case >>> 6] &= ~(1L << num_case);
+	}
+
+	boolean estPraticable(int num_case) {
+		return (praticables[num_case >>> 6] & (1L << num_case)) != 0;
+	}
+
+	/**
+	 * Teste si une case est praticable et sans unité
+	 */
+	boolean estLibre(int num_case) {
+		return ((praticables[num_case >>> 6] & ~occupees[num_case >>> 6]) & (1L << num_case)) != 0;
+	}
+
+	/**
+	 * Cases libres du carré 3 x 3 centré sur une case (la case elle-même comprise, si elle est libre)
+	 * @param num_case Case au centre
+	 * @return Un masque de 9 bits : la voisine (x + dx, y + dy) est libre si le bit 3 * (dx + 1) + (dy + 1) est à 1.
+	 * Les bits sont donc rangés colonne par colonne, de gauche à droite puis de haut en bas.
+	 */
+	int voisinesLibres(int num_case)
+	{
+		int x = num_case % largeur;
+
+		/* Les bits de gauche de la première colonne et de droite de la dernière sont sur une autre ligne */
+		int colonnes = ((x == 0) ? 06 : 07) & ((x == largeur - 1) ? 03 : 07);
+		int masque = 0;
+
+		for(int dy = 0; dy < 3; dy++)
+			masque |= ETALE[troisLibres(num_case + (dy - 1) * largeur - 1) & colonnes] << dy;
+
+		return masque;
+	}
+
+	/**
+	 * Lit les bits libres de trois cases consécutives, les bits hors de la carte valant 0
+	 * @param debut Numéro de la première case (peut être hors de la carte)
+	 */
+	private int troisLibres(int debut)
+	{
+		int m = debut >> 6, r = debut & 63;
+
+		/* Cas courant : les trois bits sont dans le même mot */
+		if(r <= 61 && m >= 0 && m < praticables.length)
+			return (int)((praticables[m] & ~occupees[m]) >>> r) & 7;
+
+		return (int)(LigneDeVue.motDecale(praticables, debut) & ~LigneDeVue.motDecale(occupees, debut)) & 7;
+	}
+
+	/**
+	 * Table des cases occupées, partagée avec le calcul des lignes de vue (à ne pas modifier)
+	 */
+	long[] getOccupees() {
+		return occupees;
+	}
+
+	/**
+	 * Table des cases traversables par une flèche, partagée avec les lignes de vue et le brouillard (à ne pas modifier)
+	 */
+	long[] getTraversables() {
+		return traversables;
+	}
+
+	/**
+	 * Table des cases praticables, partagée avec le champ de distances (à ne pas modifier)
+	 */
+	long[] getPraticables() {
+		return praticables;
+	}
+}
@@ -1,7 +1,6 @@
 package wargame;
 
 import java.awt.Point;
-import java.util.ArrayList;
 
 import wargame.Charset.Direction;
 
@@ -15,7 +14,7 @@ public class Position extends Point implements IConfig{
 	 * Constructeur de base, initialise une position aléatoire comprise dans la carte
 	 */
 	Position(){
-		super((int)(Math.random() * IConfig.LARGEUR_CARTE), (int)(Math.random() * IConfig.HAUTEUR_CARTE));
+		super(Aleatoire.nombreAleatoire(0, IConfig.LARGEUR_CARTE - 1), Aleatoire.nombreAleatoire(0, IConfig.HAUTEUR_CARTE - 1));
 	}
 
 	/**
@@ -105,36 +104,20 @@ public class Position extends Point implements IConfig{
 	
 	
 	/**
-	 * Méthode retournant les directions vers une autre position. Si c'est en diagonale, ce sera une liste de deux directions (au lieu d'une)
-	 * Ex : diagonale haut droite, la méthode retournera soit haut soit droite
+	 * Méthode retournant la direction vers une autre position, sans allocation. En diagonale, la direction horizontale l'emporte
+	 * Ex : diagonale haut droite, la méthode retournera droite
 	 * @param pos La position dont on se demande la direction
-	 * @return Une liste de direction (par exemple, juste HAUT ou bien HAUT, DROITE pour une direction en haut à droite
+	 * @return La direction (HAUT si les deux positions sont égales)
 	 */
-	public ArrayList<Direction> direction(Position pos){
-		int sx = x;
-		int sy = y;
-		int dx = pos.x;
-		int dy = pos.y;
-		
-		ArrayList<Direction> directions = new ArrayList<Direction>();
+	public Direction direction(Position pos){
+		if(pos.x > x)
+			return Direction.DROITE;
+		if(pos.x < x)
+			return Direction.GAUCHE;
+		if(pos.y > y)
+			return Direction.BAS;
 
-		if(dx > sx) {
-			directions.add(Direction.DROITE);
-		}
-		else if(dx < sx) {
-			directions.add(Direction.GAUCHE);
-		}
-		if(dy > sy) {
-			directions.add(Direction.BAS);
-		}
-		else if(dy < sy) {
-			directions.add(Direction.HAUT);
-		}
-		
-		if(directions.isEmpty())
-			directions.add(Direction.HAUT);
-		
-		return directions;
+		return Direction.HAUT;
 	}
 	
 	/**
@@ -0,0 +1,219 @@
+package wargame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Relecture d'une partie enregistrée par le Journal : l'instantané de départ (terrain, unités et état du générateur),
+ * puis les actions demandées au moteur, dans l'ordre. Le générateur repartant du même état, la partie se rejoue à l'identique,
+ * sans affichage et à pleine vitesse (rejoueTout, main), ou action par action dans la Carte qui anime chacune d'elles.
+ *
+ * Les instantanés écrits tous les IConfig.TOURS_AUTOSAUVEGARDE tours sont les images clés de l'enregistrement :
+ * se placer à un tour recharge la dernière image clé qui le précède, puis ne rejoue que les quelques tours restants.
+ */
+public final class Relecture
+{
+	/** Chemin de l'enregistrement de la dernière partie. */
+	static final String CHEMIN = IConfig.CHEMIN_SAUVEGARDE + IConfig.NOM_ENREGISTREMENT + ".relecture";
+
+	/** Actions de l'enregistrement, la position étant celle de la prochaine action à rejouer. */
+	private final ByteBuffer actions;
+
+	/** Tour et position (de l'action INSTANTANE) de chaque image clé, dans l'ordre de l'enregistrement. */
+	private int[] toursImages = new int[16];
+	private int[] positionsImages = new int[16];
+	private int nbImages;
+
+	/** Partie rejouée, remplacée à chaque image clé rechargée. */
+	private Moteur moteur;
+
+	/** Nombre d'actions rejouées depuis la dernière image clé rechargée. */
+	private int nbRejouees;
+
+	/** Vrai une fois l'enregistrement rejoué jusqu'à sa fin, ou jusqu'à une action incomplète ou invalide. */
+	private boolean terminee;
+
+	/**
+	 * Constructeur d'une relecture, placée au début de la partie
+	 * @param enregistrement Contenu de l'enregistrement
+	 * @throws IOException Si l'enregistrement n'est pas valide
+	 */
+	private Relecture(ByteBuffer enregistrement) throws IOException
+	{
+		if(enregistrement.remaining() < 4 || enregistrement.getInt() != Journal.MAGIQUE_ENREGISTREMENT)
+			throw new IOException("Enregistrement invalide");
+
+		actions = enregistrement.slice();
+		indexeImages();
+
+		if(nbImages == 0 || positionsImages[0] != 0)
+			throw new IOException("Enregistrement sans instantané de départ");
+
+		chargeImage(0);
+	}
+
+	/**
+	 * Lit un enregistrement
+	 * @param chemin Chemin de l'enregistrement
+	 * @return La relecture, placée au début de la partie
+	 * @throws IOException Si le fichier ne peut pas être lu ou n'est pas un enregistrement valide
+	 */
+	public static Relecture lit(String chemin) throws IOException
+	{
+		return new Relecture(Sauvegarde.litFichier(chemin));
+	}
+
+	/**
+	 * Parcourt les actions sans les rejouer, à la recherche des images clés.
+	 * Le parcours s'arrête à la première action incomplète ou invalide (enregistrement interrompu).
+	 */
+	private void indexeImages() throws IOException
+	{
+		int taille;
+
+		for(int p = 0; (taille = Journal.taille(actions, p)) != -1; p += taille) {
+			if(actions.get(p) != Journal.INSTANTANE)
+				continue;
+
+			if(nbImages == toursImages.length) {
+				toursImages = Arrays.copyOf(toursImages, 2 * nbImages);
+				positionsImages = Arrays.copyOf(positionsImages, 2 * nbImages);
+			}
+
+			toursImages[nbImages] = Sauvegarde.Entete.lit(image(p)).getTour();
+			positionsImages[nbImages] = p;
+			nbImages++;
+		}
+	}
+
+	/**
+	 * Sauvegarde contenue dans l'action INSTANTANE d'une position
+	 */
+	private ByteBuffer image(int position)
+	{
+		ByteBuffer image = actions.duplicate();
+		image.limit(position + 1 + 4 + actions.getInt(position + 1)).position(position + 1 + 4);
+
+		return image;
+	}
+
+	/**
+	 * Remplace la partie rejouée par une image clé, puis se place à l'action qui la suit
+	 */
+	private void chargeImage(int i) throws IOException
+	{
+		int position = positionsImages[i];
+
+		moteur = Sauvegarde.lit(image(position));
+		actions.position(position + Journal.taille(actions, position));
+		nbRejouees = 0;
+		terminee = false;
+	}
+
+	/**
+	 * Rejoue la prochaine action de l'enregistrement
+	 * @return Faux si l'enregistrement est terminé
+	 */
+	public boolean avance()
+	{
+		if(terminee)
+			return false;
+
+		if(!actions.hasRemaining() || !Journal.rejoue(moteur, actions)) {
+			terminee = true;
+			return false;
+		}
+
+		nbRejouees++;
+		return true;
+	}
+
+	/**
+	 * Rejoue tout l'enregistrement, sans affichage
+	 * @return La partie à la fin de l'enregistrement
+	 */
+	public Moteur rejoueTout()
+	{
+		while(avance())
+			;
+
+		return moteur;
+	}
+
+	/**
+	 * Se place au début d'un tour, ou à la fin de l'enregistrement s'il s'arrête avant.
+	 * La partie est repartie de la dernière image clé précédant le tour, sauf si la partie en cours est déjà entre les deux.
+	 * @param tour Le tour
+	 * @throws IOException Si l'image clé ne peut pas être relue
+	 */
+	public void placeAuTour(int tour) throws IOException
+	{
+		int i = nbImages - 1;
+		while(i > 0 && toursImages[i] > tour)
+			i--;
+
+		if(moteur.getTour() >= tour || actions.position() <= positionsImages[i])
+			chargeImage(i);
+
+		while(moteur.getTour() < tour && avance())
+			;
+	}
+
+	/**
+	 * Partie rejouée. Elle est remplacée lorsque placeAuTour recharge une image clé.
+	 * @return La partie, sans listener ni journal
+	 */
+	public Moteur getMoteur()
+	{
+		return moteur;
+	}
+
+	/**
+	 * L'enregistrement a-t-il été rejoué jusqu'à sa fin ?
+	 * @return Vrai si aucune action ne reste à rejouer
+	 */
+	public boolean estTerminee()
+	{
+		return terminee;
+	}
+
+	/**
+	 * Nombre d'images clés de l'enregistrement, son instantané de départ compris
+	 * @return Le nombre d'images clés
+	 */
+	public int getNbImages()
+	{
+		return nbImages;
+	}
+
+	/**
+	 * Rejoue un enregistrement sans affichage, à pleine vitesse, et affiche l'état de la partie à la fin.
+	 * Arguments (optionnels) : chemin de l'enregistrement (celui de la dernière partie par défaut), tour auquel s'arrêter
+	 * @param args Arguments de la ligne de commande
+	 * @throws IOException Si l'enregistrement ne peut pas être lu
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		String chemin = (args.length > 0) ? args[0] : CHEMIN;
+		long debut = System.nanoTime();
+
+		Relecture r = lit(chemin);
+		if(args.length > 1)
+			r.placeAuTour(Integer.parseInt(args[1]));
+		else
+			r.rejoueTout();
+
+		long duree = System.nanoTime() - debut;
+		Moteur m = r.getMoteur();
+
+		System.out.println(chemin + " : " + r.getNbImages() + " images clés, " + r.nbRejouees + " actions rejouées depuis la dernière en " + String.format("%.3f", duree / 1e6) + " ms");
+		System.out.println("Tour " + m.getTour() + " : " + m.getNbHerosRestant() + " héros, " + m.getNbMonstresRestant() + " monstres" + (m.estTerminee() ? ", partie terminée" : ""));
+
+		for(int i = 0; i < m.getArmee().getNombre(); i++) {
+			Unite u = m.getArmee().getUnite(i);
+			if(!u.estMort())
+				System.out.println("  " + i + (u.estHeros() ? " héros" : " monstre") + " case " + u.getCase() + ", vie " + u.getVie());
+		}
+	}
+}
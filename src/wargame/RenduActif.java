@@ -0,0 +1,315 @@
+package wargame;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.DisplayMode;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Toolkit;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferStrategy;
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Affichage actif de la carte : un Canvas à double tampon (BufferStrategy), placé sur la carte et redessiné en entier
+ * à chaque image, au rythme de l'écran. Le timer de la carte et la fusion des repaint de Swing ne décident plus du nombre
+ * d'images par seconde.
+ *
+ * Ce n'est qu'une cadence : l'image est toujours avancée et dessinée par le fil de l'interface, à qui appartient l'état
+ * de la partie et des soldats. Le fil de cadence ne fait que demander chaque image, présenter le tampon (en attendant l'écran)
+ * et mesurer les images. Le fil de l'interface reste donc la limite sur une grande carte : le temps qu'il passe sur chaque image
+ * est affiché à part pour le voir. Dessiner hors de ce fil demanderait une copie figée de l'état de la carte à chaque image
+ * (positions et images des soldats, brouillard, messages) publiée par le fil de l'interface. En attendant, ce mode n'est pas
+ * proposé dans les menus : il ne s'active que par IConfig.RENDU_ACTIF, pour les essais.
+ *
+ * Les clics et mouvements de la souris sur le Canvas sont renvoyés à la carte.
+ */
+final class RenduActif extends Canvas implements Runnable
+{
+	private static final long serialVersionUID = 6152938046717322149L;
+
+	/** Nombre d'images sur lesquelles la durée des images est mesurée. */
+	private static final int NB_MESURES = 128;
+
+	/** Carte affichée. */
+	private final Carte carte;
+
+	/** Fil de cadence, null lorsqu'il doit s'arrêter. */
+	private volatile Thread fil;
+
+	/** Tampons du Canvas. */
+	private BufferStrategy tampons;
+
+	/** Graphics du tampon où le fil de l'interface dessine l'image en cours. */
+	private Graphics graphique;
+
+	/** Vrai si l'image a été dessinée : faux une fois le Canvas retiré de la carte. */
+	private boolean dessinee;
+
+	/** Avance et dessine l'image en cours, depuis le fil de l'interface. */
+	private final Runnable image = new Runnable() {
+		public void run() {
+			dessinee = (fil != null && isDisplayable());
+			if(dessinee)
+				dessineImage();
+		}
+	};
+
+	/** Durée (de début à début), temps passé sur le fil de l'interface et temps de présentation des dernières images, en ns. */
+	private final long[] durees = new long[NB_MESURES];
+	private final long[] interfaces = new long[NB_MESURES];
+	private final long[] presentations = new long[NB_MESURES];
+	private int nbMesures;
+
+	/** Temps passé sur le fil de l'interface par l'image en cours, en ns. */
+	private long dureeInterface;
+
+	/** Statistiques affichées, recalculées une fois par seconde. */
+	private String statistiques = "";
+	private long derniereStatistique;
+
+	/**
+	 * Constructeur de l'affichage actif d'une carte
+	 * @param carte La carte
+	 */
+	RenduActif(Carte carte)
+	{
+		this.carte = carte;
+
+		setIgnoreRepaint(true);
+		setFocusable(false);
+		setBackground(carte.getBackground());
+
+		MouseAdapter souris = new MouseAdapter() {
+			public void mouseClicked(MouseEvent e) {
+				renvoie(e);
+			}
+
+			public void mousePressed(MouseEvent e) {
+				renvoie(e);
+			}
+
+			public void mouseReleased(MouseEvent e) {
+				renvoie(e);
+			}
+
+			public void mouseMoved(MouseEvent e) {
+				renvoie(e);
+			}
+
+			public void mouseDragged(MouseEvent e) {
+				renvoie(e);
+			}
+		};
+		addMouseListener(souris);
+		addMouseMotionListener(souris);
+	}
+
+	/**
+	 * Renvoie un évènement de la souris à la carte, dans ses coordonnées
+	 */
+	private void renvoie(MouseEvent e)
+	{
+		carte.dispatchEvent(SwingUtilities.convertMouseEvent(this, e, carte));
+	}
+
+	/**
+	 * Le Canvas est affichable : création des tampons et démarrage du fil de cadence
+	 */
+	public void addNotify()
+	{
+		super.addNotify();
+
+		createBufferStrategy(2);
+		tampons = getBufferStrategy();
+
+		fil = new Thread(this, "Cadence de l'affichage");
+		fil.setDaemon(true);
+		fil.start();
+	}
+
+	/**
+	 * Le Canvas n'est plus affichable : le fil de cadence s'arrête à la fin de l'image en cours
+	 */
+	public void removeNotify()
+	{
+		fil = null;
+		super.removeNotify();
+	}
+
+	/**
+	 * Durée d'une image : celle d'un rafraichissement de l'écran s'il est connu, sinon celle de IConfig.FPS
+	 */
+	private long periode()
+	{
+		int frequence = DisplayMode.REFRESH_RATE_UNKNOWN;
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+
+		if(gc != null)
+			frequence = gc.getDevice().getDisplayMode().getRefreshRate();
+
+		return (long)(1e9 / ((frequence != DisplayMode.REFRESH_RATE_UNKNOWN) ? frequence : IConfig.FPS));
+	}
+
+	/**
+	 * Boucle du fil de cadence : une image par période, dessinée par le fil de l'interface puis présentée.
+	 * Si les tampons sont échangés à la synchronisation verticale (page flipping), show attend déjà l'écran et la boucle n'attend pas en plus.
+	 * Une image en retard n'est pas rattrapée : la suivante part de maintenant, sans rafale.
+	 */
+	public void run()
+	{
+		Thread moi = Thread.currentThread();
+		long periode = periode();
+		boolean synchronise = tampons.getCapabilities().isPageFlipping();
+		long precedente = System.nanoTime();
+		long prochaine = precedente;
+
+		try {
+			while(fil == moi) {
+				long debut = System.nanoTime();
+				dureeInterface = 0;
+				if(!afficheImage())
+					break;
+
+				long maintenant = System.nanoTime();
+				mesure(maintenant - precedente, dureeInterface, maintenant - debut - dureeInterface, maintenant);
+				precedente = maintenant;
+
+				if(synchronise)
+					continue;
+
+				prochaine += periode;
+				if(prochaine < maintenant)
+					prochaine = maintenant;
+
+				attend(prochaine);
+			}
+		}
+		catch(InterruptedException e) {
+			/* Fin du fil */
+		}
+		catch(InvocationTargetException e) {
+			e.getCause().printStackTrace();
+		}
+		catch(IllegalStateException e) {
+			/* Canvas retiré pendant la présentation d'une image */
+		}
+	}
+
+	/**
+	 * Attend une heure : sommeil jusqu'à 2 ms avant, puis attente active pour ne pas dépendre de la précision du sommeil
+	 */
+	private static void attend(long heure) throws InterruptedException
+	{
+		long reste;
+
+		while((reste = heure - System.nanoTime()) > 2000000L)
+			Thread.sleep((reste - 2000000L) / 1000000L, (int)((reste - 2000000L) % 1000000L));
+
+		while(heure - System.nanoTime() > 0)
+			Thread.yield();
+	}
+
+	/**
+	 * Fait dessiner une image par le fil de l'interface, puis la présente, en recommençant si le contenu des tampons est perdu
+	 * @return Faux si le Canvas a été retiré de la carte
+	 */
+	private boolean afficheImage() throws InterruptedException, InvocationTargetException
+	{
+		do {
+			do {
+				graphique = tampons.getDrawGraphics();
+				long debut = System.nanoTime();
+				try {
+					SwingUtilities.invokeAndWait(image);
+				}
+				finally {
+					dureeInterface += System.nanoTime() - debut;
+					graphique.dispose();
+					graphique = null;
+				}
+
+				if(!dessinee)
+					return false;
+			} while(tampons.contentsRestored());
+
+			tampons.show();
+		} while(tampons.contentsLost());
+
+		Toolkit.getDefaultToolkit().sync();
+		return true;
+	}
+
+	/**
+	 * Avance la partie d'une image et la dessine en entier dans le tampon, avec les statistiques des images, depuis le fil de l'interface
+	 */
+	private void dessineImage()
+	{
+		carte.avanceImage();
+		carte.dessineImage(graphique, getWidth(), getHeight());
+
+		String s = getStatistiques();
+		if(s.isEmpty())
+			return;
+
+		/* En bas à gauche de la carte */
+		FontMetrics fm = graphique.getFontMetrics();
+		int bas = IConfig.HAUTEUR_CARTE * IConfig.NB_PIX_CASE;
+
+		graphique.setColor(Color.DARK_GRAY);
+		graphique.fillRect(0, bas - fm.getHeight() - 4, fm.stringWidth(s) + 8, fm.getHeight() + 4);
+		graphique.setColor(Color.WHITE);
+		graphique.drawString(s, 4, bas - fm.getDescent() - 2);
+	}
+
+	/**
+	 * Mesure une image, et recalcule les statistiques une fois par seconde
+	 * @param duree Durée depuis le début de l'image précédente, en ns
+	 * @param duree_interface Temps passé par le fil de l'interface à avancer et dessiner l'image (attente du fil comprise), en ns
+	 * @param presentation Temps passé à présenter l'image, attente de l'écran comprise, en ns
+	 * @param maintenant Heure de la fin de l'image, en ns
+	 */
+	private void mesure(long duree, long duree_interface, long presentation, long maintenant)
+	{
+		durees[nbMesures % NB_MESURES] = duree;
+		interfaces[nbMesures % NB_MESURES] = duree_interface;
+		presentations[nbMesures % NB_MESURES] = presentation;
+		nbMesures++;
+
+		if(maintenant - derniereStatistique < 1000000000L)
+			return;
+
+		derniereStatistique = maintenant;
+
+		int n = Math.min(nbMesures, NB_MESURES);
+		long somme = 0, pire = 0, somme_interfaces = 0, somme_presentations = 0;
+		for(int i = 0; i < n; i++) {
+			somme += durees[i];
+			pire = Math.max(pire, durees[i]);
+			somme_interfaces += interfaces[i];
+			somme_presentations += presentations[i];
+		}
+
+		String s = String.format("%.1f images/s, image %.1f ms (pire %.1f ms), fil de l'interface %.1f ms, présentation %.1f ms",
+				1e9 * n / somme, somme / 1e6 / n, pire / 1e6, somme_interfaces / 1e6 / n, somme_presentations / 1e6 / n);
+		synchronized(durees) {
+			statistiques = s;
+		}
+	}
+
+	/**
+	 * Statistiques des dernières images : images par seconde, durée moyenne et pire durée d'une image,
+	 * temps passé sur le fil de l'interface et à présenter l'image
+	 * @return Les statistiques, vides avant la première seconde d'affichage
+	 */
+	String getStatistiques()
+	{
+		synchronized(durees) {
+			return statistiques;
+		}
+	}
+}
@@ -0,0 +1,410 @@
+package wargame;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Format binaire des sauvegardes, écrit et lu d'un bloc à travers un FileChannel (entiers gros-boutistes) :
+ *
+ *   en-tête   : MAGIQUE (int), VERSION (short), largeur et hauteur (short), tour (int), état du générateur (4 long, voir Hasard.getEtat),
+ *               drapeaux (byte : bit 0 partie terminée), nombre d'unités (int),
+ *               héros et monstres restants (short), date de la sauvegarde (long, ms), position de la miniature (int)
+ *   terrain   : le numéro du tile de chaque case, un octet par case
+ *   unités    : TAILLE_UNITE octets par unité, dans l'ordre de l'armée : type (byte, voir Armee.getType),
+ *               drapeaux (byte : bit 0 morte, bit 1 a joué), vie (short), case (int)
+ *   miniature : 2 bits par case (voir MINIATURE_OBSTACLE), quatre cases par octet en commençant par les bits de poids faible
+ *
+ * L'en-tête a une taille fixe : les menus de chargement n'en lisent pas plus (voir IndexSauvegardes).
+ * Seule la version courante du format est lue : une sauvegarde d'une autre version est refusée.
+ *
+ * Le brouillard et les tables qui se déduisent du terrain et des unités (plateau, lignes de vue, index des héros)
+ * ne sont pas sauvegardés : ils sont recalculés au chargement, ce qui évite toute incohérence.
+ * Une partie de 25 x 15 cases et 25 unités tient en 736 octets.
+ *
+ * Les anciennes sauvegardes (sérialisation Java) sont reconnues à leur en-tête et lues par SauvegardeAncienne.
+ */
+final class Sauvegarde
+{
+	/** Premiers octets d'une sauvegarde : "WGSV". */
+	static final int MAGIQUE = 0x57475356;
+
+	/** Version du format, augmentée à chaque changement. */
+	static final short VERSION = 4;
+
+	/** Premiers octets d'un flux de sérialisation Java. */
+	private static final short MAGIQUE_SERIALISATION = (short)0xACED;
+
+	/** Tailles en octets de l'en-tête et d'une unité. */
+	static final int TAILLE_ENTETE = 4 + 2 + 2 + 2 + 4 + 4 * 8 + 1 + 4 + 2 + 2 + 8 + 4;
+	static final int TAILLE_UNITE = 1 + 1 + 2 + 4;
+
+	/** Contenu d'une case de la miniature : obstacle, case praticable, héros, monstre visible. */
+	static final int MINIATURE_OBSTACLE = 0, MINIATURE_PRATICABLE = 1, MINIATURE_HEROS = 2, MINIATURE_MONSTRE = 3;
+
+	/** Drapeaux de la partie et d'une unité. */
+	private static final int TERMINEE = 1;
+	private static final int MORTE = 1, A_JOUE = 2;
+
+	/**
+	 * En-tête d'une sauvegarde : ce qu'affichent les menus, sans charger la partie
+	 */
+	static final class Entete
+	{
+		private final int largeur, hauteur;
+		private final int tour;
+		private final long[] etatHasard = new long[4];
+		private final boolean terminee;
+		private final int nbUnites;
+		private final int nbHerosRestant, nbMonstresRestant;
+		private final long date;
+		private final int positionMiniature;
+
+		private Entete(ByteBuffer tampon) throws IOException
+		{
+			if(tampon.remaining() < TAILLE_ENTETE || tampon.getInt() != MAGIQUE)
+				throw new IOException("Ce n'est pas une sauvegarde");
+
+			int version = tampon.getShort();
+			if(version != VERSION)
+				throw new IOException("Sauvegarde de version " + version + " non supportée");
+
+			largeur = tampon.getShort();
+			hauteur = tampon.getShort();
+			tour = tampon.getInt();
+			for(int i = 0; i < etatHasard.length; i++)
+				etatHasard[i] = tampon.getLong();
+			terminee = (tampon.get() & TERMINEE) != 0;
+			nbUnites = tampon.getInt();
+			nbHerosRestant = tampon.getShort();
+			nbMonstresRestant = tampon.getShort();
+			date = tampon.getLong();
+			positionMiniature = tampon.getInt();
+
+			if(largeur <= 0 || hauteur <= 0 || nbUnites < 0 || (etatHasard[0] | etatHasard[1] | etatHasard[2] | etatHasard[3]) == 0)
+				throw new IOException("Sauvegarde invalide");
+		}
+
+		/**
+		 * Lit un en-tête, à partir de la position du tampon
+		 * @param tampon Le tampon, placé après l'en-tête
+		 * @return L'en-tête
+		 * @throws IOException Si le tampon ne commence pas par un en-tête valide
+		 */
+		static Entete lit(ByteBuffer tampon) throws IOException
+		{
+			return new Entete(tampon);
+		}
+
+		int getLargeur() {
+			return largeur;
+		}
+
+		int getHauteur() {
+			return hauteur;
+		}
+
+		int getTour() {
+			return tour;
+		}
+
+		/** Mot de l'état du générateur de la partie (voir Hasard.getEtat). */
+		long getEtatHasard(int i) {
+			return etatHasard[i];
+		}
+
+		boolean estTerminee() {
+			return terminee;
+		}
+
+		int getNbUnites() {
+			return nbUnites;
+		}
+
+		int getNbHerosRestant() {
+			return nbHerosRestant;
+		}
+
+		int getNbMonstresRestant() {
+			return nbMonstresRestant;
+		}
+
+		/** Date de la sauvegarde en millisecondes. */
+		long getDate() {
+			return date;
+		}
+
+		/** Position de la miniature dans le fichier. */
+		int getPositionMiniature() {
+			return positionMiniature;
+		}
+
+		/** Taille en octets de la miniature. */
+		int getTailleMiniature() {
+			return tailleMiniature(largeur * hauteur);
+		}
+	}
+
+	private Sauvegarde() {}
+
+	/**
+	 * Taille en octets de la miniature d'une carte
+	 * @param nb_cases Nombre de cases de la carte
+	 */
+	private static int tailleMiniature(int nb_cases)
+	{
+		return (nb_cases + 3) >>> 2;
+	}
+
+	/**
+	 * Sauvegarde une partie dans un fichier (voir instantane et ecrit(ByteBuffer, String)).
+	 * @param moteur La partie
+	 * @param chemin Chemin du fichier, remplacé s'il existe
+	 * @throws IOException Si le fichier ne peut pas être écrit
+	 */
+	static void ecrit(Moteur moteur, String chemin) throws IOException
+	{
+		ecrit(instantane(moteur), chemin);
+	}
+
+	/**
+	 * Copie l'état d'une partie, en quelques microsecondes : la partie peut continuer pendant que la copie est écrite par un autre fil.
+	 * L'état du générateur est copié sans être touché : la partie chargée continue comme celle sauvegardée, qui ne change pas.
+	 * @param moteur La partie
+	 * @return La sauvegarde, prête à être écrite
+	 * @throws IOException Si la partie ne tient pas dans le format
+	 */
+	static ByteBuffer instantane(Moteur moteur) throws IOException
+	{
+		ByteBuffer tampon = ByteBuffer.allocate(taille(moteur));
+		ecrit(moteur, tampon);
+		tampon.flip();
+
+		return tampon;
+	}
+
+	/**
+	 * Écrit une sauvegarde dans un fichier. Elle est d'abord écrite et forcée sur le disque dans un fichier temporaire,
+	 * qui remplace ensuite le fichier : une sauvegarde interrompue n'abîme pas la précédente.
+	 * @param instantane La sauvegarde, entre sa position et sa limite
+	 * @param chemin Chemin du fichier, remplacé s'il existe
+	 * @throws IOException Si le fichier ne peut pas être écrit
+	 */
+	static void ecrit(ByteBuffer instantane, String chemin) throws IOException
+	{
+		File fichier = new File(chemin), temporaire = new File(chemin + ".tmp");
+		ByteBuffer tampon = instantane.duplicate();
+
+		FileChannel canal = new FileOutputStream(temporaire).getChannel();
+		try {
+			while(tampon.hasRemaining())
+				canal.write(tampon);
+			canal.force(true);
+		}
+		finally {
+			canal.close();
+		}
+
+		/* renameTo ne remplace pas un fichier existant sur tous les systèmes */
+		if(!temporaire.renameTo(fichier) && !(fichier.delete() && temporaire.renameTo(fichier)))
+			throw new IOException("Impossible de remplacer " + chemin);
+	}
+
+	/**
+	 * Charge une partie depuis un fichier, au format binaire ou à l'ancien format
+	 * @param chemin Chemin du fichier
+	 * @return La partie, sans listener
+	 * @throws IOException Si le fichier ne peut pas être lu ou n'est pas une sauvegarde valide
+	 */
+	static Moteur lit(String chemin) throws IOException
+	{
+		ByteBuffer tampon = litFichier(chemin);
+
+		if(tampon.remaining() >= 2 && tampon.getShort(0) == MAGIQUE_SERIALISATION)
+			return SauvegardeAncienne.lit(new ByteArrayInputStream(tampon.array(), 0, tampon.limit()));
+
+		return lit(tampon);
+	}
+
+	/**
+	 * Lit tout un fichier d'un bloc
+	 * @param chemin Chemin du fichier
+	 * @return Le contenu du fichier, entre la position et la limite du tampon
+	 * @throws IOException Si le fichier ne peut pas être lu
+	 */
+	static ByteBuffer litFichier(String chemin) throws IOException
+	{
+		ByteBuffer tampon;
+
+		FileChannel canal = new FileInputStream(chemin).getChannel();
+		try {
+			if(canal.size() > Integer.MAX_VALUE)
+				throw new IOException("Fichier trop grand : " + chemin);
+
+			tampon = ByteBuffer.allocate((int)canal.size());
+			while(tampon.hasRemaining())
+				if(canal.read(tampon) < 0)
+					throw new IOException("Fichier tronqué : " + chemin);
+			tampon.flip();
+		}
+		finally {
+			canal.close();
+		}
+
+		return tampon;
+	}
+
+	/**
+	 * Taille en octets de la sauvegarde d'une partie
+	 * @param moteur La partie
+	 * @return Le nombre d'octets écrits par ecrit
+	 */
+	static int taille(Moteur moteur)
+	{
+		int nb_cases = moteur.getLargeur() * moteur.getHauteur();
+
+		return TAILLE_ENTETE + nb_cases + TAILLE_UNITE * moteur.getArmee().getNombre() + tailleMiniature(nb_cases);
+	}
+
+	/**
+	 * Écrit une partie dans un tampon, à partir de sa position
+	 * @param moteur La partie
+	 * @param tampon Tampon d'au moins taille(moteur) octets restants
+	 * @throws IOException Si un tile ne tient pas dans un octet
+	 */
+	static void ecrit(Moteur moteur, ByteBuffer tampon) throws IOException
+	{
+		Armee armee = moteur.getArmee();
+		int nb_cases = moteur.getLargeur() * moteur.getHauteur();
+
+		tampon.putInt(MAGIQUE);
+		tampon.putShort(VERSION);
+		tampon.putShort((short)moteur.getLargeur());
+		tampon.putShort((short)moteur.getHauteur());
+		tampon.putInt(moteur.getTour());
+		for(int i = 0; i < 4; i++)
+			tampon.putLong(moteur.getHasard().getEtat(i));
+		tampon.put((byte)(moteur.estTerminee() ? TERMINEE : 0));
+		tampon.putInt(armee.getNombre());
+		tampon.putShort((short)moteur.getNbHerosRestant());
+		tampon.putShort((short)moteur.getNbMonstresRestant());
+		tampon.putLong(System.currentTimeMillis());
+		tampon.putInt(taille(moteur) - tailleMiniature(nb_cases));
+
+		for(int c = 0; c < nb_cases; c++) {
+			char tile = moteur.getTile(c);
+			if(tile > 0xFF)
+				throw new IOException("Tile " + (int)tile + " hors du format de sauvegarde");
+
+			tampon.put((byte)tile);
+		}
+
+		for(int i = 0; i < armee.getNombre(); i++) {
+			tampon.put((byte)armee.getType(i));
+			tampon.put((byte)((armee.estMort(i) ? MORTE : 0) | (armee.aJoue(i) ? A_JOUE : 0)));
+			tampon.putShort((short)armee.getVie(i));
+			tampon.putInt(armee.getCase(i));
+		}
+
+		ecritMiniature(moteur, tampon);
+	}
+
+	/**
+	 * Écrit la miniature d'une partie : les monstres n'y figurent que s'ils sont visibles des héros
+	 */
+	private static void ecritMiniature(Moteur moteur, ByteBuffer tampon)
+	{
+		int nb_cases = moteur.getLargeur() * moteur.getHauteur();
+		Armee armee = moteur.getArmee();
+		int octet = 0;
+
+		for(int c = 0; c < nb_cases; c++) {
+			int u = moteur.getNumeroSoldat(c);
+			int contenu;
+
+			if(u != -1 && armee.estHeros(u))
+				contenu = MINIATURE_HEROS;
+			else if(u != -1 && moteur.estVisible(c))
+				contenu = MINIATURE_MONSTRE;
+			else
+				contenu = moteur.estPraticable(c) ? MINIATURE_PRATICABLE : MINIATURE_OBSTACLE;
+
+			octet |= contenu << (2 * (c & 3));
+			if((c & 3) == 3 || c == nb_cases - 1) {
+				tampon.put((byte)octet);
+				octet = 0;
+			}
+		}
+	}
+
+	/**
+	 * Lit la miniature d'une sauvegarde, sans lire le reste du fichier
+	 * @param chemin Chemin du fichier
+	 * @param entete En-tête de la sauvegarde
+	 * @return Le contenu de chaque case (MINIATURE_OBSTACLE, ...)
+	 * @throws IOException Si le fichier ne peut pas être lu
+	 */
+	static byte[] litMiniature(String chemin, Entete entete) throws IOException
+	{
+		ByteBuffer tampon = ByteBuffer.allocate(entete.getTailleMiniature());
+
+		FileChannel canal = new FileInputStream(chemin).getChannel();
+		try {
+			while(tampon.hasRemaining())
+				if(canal.read(tampon, entete.getPositionMiniature() + tampon.position()) < 0)
+					throw new IOException("Sauvegarde tronquée : " + chemin);
+		}
+		finally {
+			canal.close();
+		}
+
+		byte[] cases = new byte[entete.getLargeur() * entete.getHauteur()];
+		for(int c = 0; c < cases.length; c++)
+			cases[c] = (byte)((tampon.get(c >>> 2) >>> (2 * (c & 3))) & 3);
+
+		return cases;
+	}
+
+	/**
+	 * Lit une partie dans un tampon, à partir de sa position
+	 * @param tampon Le tampon
+	 * @return La partie, sans listener
+	 * @throws IOException Si le tampon ne contient pas une sauvegarde valide
+	 */
+	static Moteur lit(ByteBuffer tampon) throws IOException
+	{
+		Entete entete = Entete.lit(tampon);
+		int largeur = entete.getLargeur(), hauteur = entete.getHauteur();
+		int nb_unites = entete.getNbUnites();
+
+		if(tampon.remaining() < largeur * hauteur + (long)TAILLE_UNITE * nb_unites)
+			throw new IOException("Sauvegarde tronquée ou invalide");
+
+		char[] carte = new char[largeur * hauteur];
+		for(int c = 0; c < carte.length; c++)
+			carte[c] = (char)(tampon.get() & 0xFF);
+
+		Moteur moteur = new Moteur(largeur, hauteur);
+		moteur.restaure(carte, entete.getTour(), entete.estTerminee());
+		moteur.getHasard().setEtat(entete.getEtatHasard(0), entete.getEtatHasard(1), entete.getEtatHasard(2), entete.getEtatHasard(3));
+
+		for(int i = 0; i < nb_unites; i++) {
+			int type = tampon.get();
+			int etat = tampon.get();
+			int vie = tampon.getShort();
+			int num_case = tampon.getInt();
+			boolean morte = (etat & MORTE) != 0;
+
+			if(type < 0 || type >= Armee.NB_TYPES || num_case < 0 || num_case >= carte.length || (!morte && !moteur.estLibre(num_case)))
+				throw new IOException("Unité " + i + " invalide dans la sauvegarde");
+
+			moteur.restaureUnite(type, vie, num_case, morte, (etat & A_JOUE) != 0);
+		}
+
+		return moteur;
+	}
+}
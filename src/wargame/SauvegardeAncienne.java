@@ -0,0 +1,190 @@
+package wargame;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Lecture des anciennes sauvegardes (par exemple sauvegarde/wargame2.ser), écrites par sérialisation Java de l'ancienne Carte :
+ * le tour et les effectifs (un octet chacun, donc tronqués), la carte (char[]), les listes des monstres et des héros,
+ * la table des soldats et le brouillard (char[]), qui se déduisent des deux listes et ne sont pas relus.
+ *
+ * Les soldats y sont des Heros et Monstre de l'époque, qui héritaient de Charset (image, Timer).
+ * Ils sont relus dans des classes de remplacement ne contenant que leurs champs sauvegardés, avec les mêmes noms
+ * et les mêmes serialVersionUID : seul l'état des unités est gardé, sans rien créer de l'affichage.
+ */
+final class SauvegardeAncienne
+{
+	/** Ancien Soldat : champs sauvegardés de l'ancienne classe wargame.Soldat. */
+	private static abstract class AncienSoldat implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private boolean mort;
+		private int offsetX, offsetY;
+		private boolean seDeplace;
+		private boolean tourEffectue;
+		private int vie;
+		private AnciennePosition position;
+	}
+
+	/** Ancien Heros. */
+	private static final class AncienHeros extends AncienSoldat
+	{
+		private static final long serialVersionUID = -3793338387029787601L;
+
+		private ISoldat.TypesH typeHeros;
+	}
+
+	/** Ancien Monstre. */
+	private static final class AncienMonstre extends AncienSoldat
+	{
+		private static final long serialVersionUID = -2866246699288761404L;
+
+		private ISoldat.TypesM typeMonstre;
+	}
+
+	/** Ancienne Position : un Point en coordonnées de cases. */
+	private static final class AnciennePosition extends Point
+	{
+		private static final long serialVersionUID = 4537495200581219261L;
+	}
+
+	/** Classes de remplacement de chaque ancienne classe du flux. */
+	private static final HashMap<String, Class<?>> REMPLACANTS = new HashMap<String, Class<?>>();
+
+	static {
+		REMPLACANTS.put("wargame.Soldat", AncienSoldat.class);
+		REMPLACANTS.put("wargame.Heros", AncienHeros.class);
+		REMPLACANTS.put("wargame.Monstre", AncienMonstre.class);
+		REMPLACANTS.put("wargame.Position", AnciennePosition.class);
+		REMPLACANTS.put("[Lwargame.Soldat;", AncienSoldat[].class);
+	}
+
+	/**
+	 * Flux remplaçant la description des anciennes classes par celle de leur classe de remplacement,
+	 * après avoir vérifié qu'elles ont la même version et les mêmes champs
+	 */
+	private static final class Lecteur extends ObjectInputStream
+	{
+		Lecteur(InputStream in) throws IOException
+		{
+			super(in);
+		}
+
+		protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException
+		{
+			ObjectStreamClass ancienne = super.readClassDescriptor();
+			Class<?> remplacant = REMPLACANTS.get(ancienne.getName());
+
+			if(remplacant == null)
+				return ancienne;
+
+			ObjectStreamClass nouvelle = ObjectStreamClass.lookup(remplacant);
+
+			if(!remplacant.isArray() && (nouvelle.getSerialVersionUID() != ancienne.getSerialVersionUID() || !memesChamps(ancienne, nouvelle)))
+				throw new InvalidClassException(ancienne.getName(), "version de l'ancienne sauvegarde inconnue");
+
+			return nouvelle;
+		}
+
+		/**
+		 * Compare les noms et les types (sans le nom des classes) des champs sauvegardés
+		 */
+		private static boolean memesChamps(ObjectStreamClass a, ObjectStreamClass b)
+		{
+			ObjectStreamField[] fa = a.getFields(), fb = b.getFields();
+
+			if(fa.length != fb.length)
+				return false;
+
+			for(int i = 0; i < fa.length; i++)
+				if(!fa[i].getName().equals(fb[i].getName()) || fa[i].getTypeCode() != fb[i].getTypeCode())
+					return false;
+
+			return true;
+		}
+	}
+
+	private SauvegardeAncienne() {}
+
+	/**
+	 * Lit une ancienne sauvegarde. La largeur de la carte est celle de la configuration (les positions y étaient calculées),
+	 * sa hauteur se déduit du nombre de cases. Le générateur de la partie, qui n'était pas sauvegardé, est ensemencé au hasard.
+	 * @param in Flux de l'ancienne sauvegarde
+	 * @return La partie, sans listener
+	 * @throws IOException Si le flux n'est pas une ancienne sauvegarde valide
+	 */
+	static Moteur lit(InputStream in) throws IOException
+	{
+		ObjectInputStream ois = new Lecteur(in);
+
+		try {
+			int tour = ois.read();
+			ois.read();
+			ois.read();
+
+			char[] carte = (char[])ois.readObject();
+			ArrayList<?> monstres = (ArrayList<?>)ois.readObject();
+			ArrayList<?> heros = (ArrayList<?>)ois.readObject();
+
+			int largeur = IConfig.LARGEUR_CARTE;
+			if(tour < 0 || carte.length == 0 || carte.length % largeur != 0)
+				throw new IOException("Ancienne sauvegarde invalide");
+
+			Moteur moteur = new Moteur(largeur, carte.length / largeur);
+			moteur.restaure(carte, tour, false);
+
+			/* Les héros d'abord, comme à la génération */
+			for(Object o : heros) {
+				AncienHeros h = (AncienHeros)o;
+				if(h.typeHeros == null)
+					throw new IOException("Héros sans type dans l'ancienne sauvegarde");
+
+				restaure(moteur, Armee.type(h.typeHeros), h);
+			}
+
+			for(Object o : monstres) {
+				AncienMonstre m = (AncienMonstre)o;
+				if(m.typeMonstre == null)
+					throw new IOException("Monstre sans type dans l'ancienne sauvegarde");
+
+				restaure(moteur, Armee.type(m.typeMonstre), m);
+			}
+
+			moteur.verifieFin();
+			return moteur;
+		}
+		catch(ClassNotFoundException e) {
+			throw new IOException("Ancienne sauvegarde invalide : " + e);
+		}
+		catch(ClassCastException e) {
+			throw new IOException("Ancienne sauvegarde invalide : " + e);
+		}
+		finally {
+			ois.close();
+		}
+	}
+
+	/**
+	 * Ajoute au moteur l'unité d'un ancien soldat
+	 */
+	private static void restaure(Moteur moteur, int type, AncienSoldat s) throws IOException
+	{
+		if(s.position == null || !moteur.estValide(s.position.x, s.position.y))
+			throw new IOException("Soldat hors de la carte dans l'ancienne sauvegarde");
+
+		int num_case = s.position.x + moteur.getLargeur() * s.position.y;
+		if(!s.mort && !moteur.estLibre(num_case))
+			throw new IOException("Soldat sur une case occupée dans l'ancienne sauvegarde");
+
+		moteur.restaureUnite(type, s.vie, num_case, s.mort, s.tourEffectue);
+	}
+}
@@ -0,0 +1,259 @@
+package wargame;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Classe permettant de jouer un grand nombre de parties sans affichage, en parallèle sur tous les coeurs.
+ * Chaque partie possède son propre Moteur et son propre générateur aléatoire : aucune donnée n'est partagée entre les parties.
+ * Les héros sont joués par une stratégie simple (attaquer si possible, sinon avancer vers le monstre le plus proche).
+ */
+public final class Simulation
+{
+	/** Nombre de tours au delà duquel une partie est déclarée nulle. */
+	public static final int TOURS_MAX = 500;
+
+	/** Nombre de parties jouées à la suite par une même tâche, en dessous duquel on ne découpe plus. */
+	private static final int SEUIL_DECOUPAGE = 16;
+
+	private Simulation(){}
+
+	/**
+	 * Classe regroupant les résultats d'un ensemble de parties
+	 */
+	public static final class Resultat
+	{
+		private int nbParties;
+		private int nbVictoires;
+		private int nbDefaites;
+		private long nbTours;
+		private int toursMin = Integer.MAX_VALUE;
+		private int toursMax;
+
+		/** Durée de la simulation en nanosecondes. */
+		private long duree;
+
+		/**
+		 * Ajoute le résultat d'une partie
+		 * @param m Le moteur de la partie jouée
+		 */
+		private void ajoute(Moteur m)
+		{
+			nbParties++;
+			nbTours += m.getTour();
+			toursMin = Math.min(toursMin, m.getTour());
+			toursMax = Math.max(toursMax, m.getTour());
+
+			if(m.estTerminee()) {
+				if(m.getNbMonstresRestant() <= 0)
+					nbVictoires++;
+				else
+					nbDefaites++;
+			}
+		}
+
+		/**
+		 * Fusionne les résultats d'un autre ensemble de parties
+		 * @param r Les autres résultats
+		 * @return Les résultats fusionnés
+		 */
+		private Resultat fusionne(Resultat r)
+		{
+			nbParties += r.nbParties;
+			nbVictoires += r.nbVictoires;
+			nbDefaites += r.nbDefaites;
+			nbTours += r.nbTours;
+			toursMin = Math.min(toursMin, r.toursMin);
+			toursMax = Math.max(toursMax, r.toursMax);
+
+			return this;
+		}
+
+		public int getNbParties() {
+			return nbParties;
+		}
+
+		public int getNbVictoires() {
+			return nbVictoires;
+		}
+
+		public int getNbDefaites() {
+			return nbDefaites;
+		}
+
+		public int getNbNulles() {
+			return nbParties - nbVictoires - nbDefaites;
+		}
+
+		public double getToursMoyen() {
+			return (nbParties == 0) ? 0 : nbTours / (double)nbParties;
+		}
+
+		/**
+		 * Débit de la simulation
+		 * @return Nombre de parties jouées par seconde
+		 */
+		public double getPartiesParSeconde() {
+			return (duree == 0) ? 0 : nbParties * 1e9 / duree;
+		}
+
+		/**
+		 * Résultats formatés
+		 */
+		public String toString() {
+			String chaine = nbParties + " parties en " + String.format("%.3f", duree / 1e9) + " s";
+			chaine += "\nVictoires : " + nbVictoires + " (" + String.format("%.1f", 100.0 * nbVictoires / Math.max(1, nbParties)) + " %)";
+			chaine += "\nDéfaites : " + nbDefaites + " (" + String.format("%.1f", 100.0 * nbDefaites / Math.max(1, nbParties)) + " %)";
+			chaine += "\nNulles : " + getNbNulles();
+			chaine += "\nTours : moyenne " + String.format("%.1f", getToursMoyen()) + ", min " + (nbParties == 0 ? 0 : toursMin) + ", max " + toursMax;
+			chaine += "\nDébit : " + String.format("%.0f", getPartiesParSeconde()) + " parties/s";
+
+			return chaine;
+		}
+	}
+
+	/**
+	 * Tâche jouant les parties d'un intervalle de numéros, en se découpant en deux tant que l'intervalle est grand
+	 */
+	private static final class Tache extends RecursiveTask<Resultat>
+	{
+		private static final long serialVersionUID = -4075816343931504617L;
+
+		private final long graine;
+		private final int debut, fin;
+
+		Tache(long graine, int debut, int fin)
+		{
+			this.graine = graine;
+			this.debut = debut;
+			this.fin = fin;
+		}
+
+		protected Resultat compute()
+		{
+			if(fin - debut <= SEUIL_DECOUPAGE) {
+				Resultat r = new Resultat();
+
+				for(int i = debut; i < fin; i++)
+					r.ajoute(joue(graine + i));
+
+				return r;
+			}
+
+			int milieu = (debut + fin) >>> 1;
+			Tache gauche = new Tache(graine, debut, milieu);
+			gauche.fork();
+
+			Resultat droite = new Tache(graine, milieu, fin).compute();
+			return droite.fusionne(gauche.join());
+		}
+	}
+
+	/**
+	 * Joue une partie complète, de sa génération jusqu'à la victoire d'une armée (ou TOURS_MAX tours)
+	 * @param graine Graine de la partie
+	 * @return Le moteur de la partie terminée
+	 */
+	public static Moteur joue(long graine)
+	{
+		Moteur m = new Moteur(IConfig.LARGEUR_CARTE, IConfig.HAUTEUR_CARTE, graine);
+		m.generer();
+
+		while(!m.estTerminee() && m.getTour() < TOURS_MAX) {
+			joueHeros(m);
+
+			if(!m.estTerminee())
+				m.finTour();
+		}
+
+		return m;
+	}
+
+	/**
+	 * Fait jouer tous les héros : chacun attaque le monstre visible le plus proche à sa portée,
+	 * sinon fait un pas vers le monstre le plus proche. Les héros n'ayant pas joué se reposeront en fin de tour.
+	 * @param m Le moteur de la partie
+	 */
+	private static void joueHeros(Moteur m)
+	{
+		for(int i = 0; i < m.getHeros().size() && !m.estTerminee(); i++) {
+			Unite h = m.getHeros().get(i);
+
+			if(h.estMort() || h.getAJoue())
+				continue;
+
+			Unite cible = null, plus_proche = null;
+			int distance_cible = Integer.MAX_VALUE, distance_plus_proche = Integer.MAX_VALUE;
+
+			for(Unite monstre : m.getMonstres()) {
+				if(monstre.estMort())
+					continue;
+
+				int distance = m.distance(h.getCase(), monstre.getCase());
+
+				if(distance < distance_plus_proche) {
+					plus_proche = monstre;
+					distance_plus_proche = distance;
+				}
+
+				if(distance <= h.getPortee() && distance < distance_cible && !m.obstacleEntreCase(h.getCase(), monstre.getCase())) {
+					cible = monstre;
+					distance_cible = distance;
+				}
+			}
+
+			if(cible != null) {
+				m.faitCombattre(h, cible, distance_cible);
+			}
+			else if(plus_proche != null) {
+				int hx = h.getCase() % m.getLargeur(), hy = h.getCase() / m.getLargeur();
+				int x = hx + Integer.signum(plus_proche.getCase() % m.getLargeur() - hx);
+				int y = hy + Integer.signum(plus_proche.getCase() / m.getLargeur() - hy);
+
+				if(m.estValide(x, y) && m.estLibre(x + m.getLargeur() * y)) {
+					try {
+						m.deplaceSoldat(h, x + m.getLargeur() * y);
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Joue un nombre de parties en parallèle
+	 * @param nb_parties Nombre de parties à jouer
+	 * @param graine Graine de la première partie, les suivantes utilisant graine + 1, graine + 2...
+	 * @param pool Pool de threads sur lequel jouer les parties
+	 * @return Les résultats des parties
+	 */
+	public static Resultat lance(int nb_parties, long graine, ForkJoinPool pool)
+	{
+		long debut = System.nanoTime();
+
+		Resultat r = pool.invoke(new Tache(graine, 0, nb_parties));
+		r.duree = System.nanoTime() - debut;
+
+		return r;
+	}
+
+	/**
+	 * Lance une simulation.
+	 * Arguments (optionnels) : nombre de parties, nombre de threads, graine
+	 * @param args Arguments de la ligne de commande
+	 */
+	public static void main(String[] args)
+	{
+		int nb_parties = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+		int nb_threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		long graine = (args.length > 2) ? Long.parseLong(args[2]) : System.nanoTime();
+
+		ForkJoinPool pool = new ForkJoinPool(nb_threads);
+
+		System.out.println("Simulation de " + nb_parties + " parties sur " + nb_threads + " threads (graine " + graine + ")");
+		System.out.println(lance(nb_parties, graine, pool));
+
+		pool.shutdown();
+	}
+}
@@ -2,20 +2,21 @@ package wargame;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.event.ActionEvent;
+import java.awt.Rectangle;
 
 
 /**
- * Classe abstraite représentant la base d'un soldat
+ * Classe abstraite représentant l'affichage d'un soldat.
+ * L'état du soldat (vie, case, tour) est celui de son unité dans le moteur.
  */
 public abstract class Soldat extends Charset implements ISoldat
 {
 	private static final long serialVersionUID = 1L;
 
-	/** Vie d'un soldat. */
-	protected int vie;
+	/** Unité du moteur représentée par ce soldat. */
+	protected Unite unite;
 	
-	/** Numéro de la case où se situe le soldat. */
+	/** Position affichée du soldat, mise à jour à la fin du déplacement. */
 	private Position position;
 
 	/** Est mort ? */
@@ -24,17 +25,38 @@ public abstract class Soldat extends Charset implements ISoldat
 	/** En train de se deplacer. */
 	private boolean seDeplace = false;
 	
-	/** Le tour est effectué */
-	private boolean tourEffectue = false;
-	
 	/** Offset utilisé pendant le déplacement. */
 	protected int offsetX = 0;
 	protected int offsetY = 0;
 
+	/** Position en pixels (case et offset) avant l'image courante du déplacement : l'affichage glisse de celle-ci à la position courante. */
+	private int precedentX, precedentY;
+
+	/** Zone où le soldat est dessiné (image et barre de vie), et ce qui y est dessiné, au dernier relevé des modifications. */
+	private Rectangle zoneAffichee = new Rectangle();
+	private int etatAffiche = -1;
+
+	/** Zone calculée au relevé en cours, échangée avec zoneAffichee lorsqu'elle change : un relevé n'alloue rien. */
+	private Rectangle zoneCourante = new Rectangle();
+
 	/** 
 	 * Constructeur de base d'un soldat
+	 * @param unite Unité du moteur représentée
 	 */
-	Soldat() {}
+	Soldat(Unite unite)
+	{
+		this.unite = unite;
+		this.position = new Position(unite.getCase());
+	}
+	
+	/**
+	 * Permet de récupérer l'unité du moteur représentée par ce soldat
+	 * @return L'unité
+	 */
+	public Unite getUnite()
+	{
+		return unite;
+	}
 	
 	/**
 	 * Permet de récupérer le nombre de points de vie du soldat
@@ -42,7 +64,7 @@ public abstract class Soldat extends Charset implements ISoldat
 	 */
 	public int getVie() 
 	{
-		return vie;
+		return unite.getVie();
 	}
 	
 	/**
@@ -50,18 +72,9 @@ public abstract class Soldat extends Charset implements ISoldat
 	 * @return Le pourcentage des points de vie du soldat
 	 */
 	public double getPourcentageVie(){
-		return ((double)(vie/(double)this.getVieMax())) * 100.;
+		return unite.getPourcentageVie();
 	}
 
-	/**
-	 * Permet de spécifier un nouveau nombre de points de vie d'un soldat
-	 * @param vie Le nombre de points de vie d'un soldat
-	 */
-	public void setVie(int vie) 
-	{
-		this.vie = ((vie > this.getVieMax()) ? this.getVieMax() : (vie < 0 ) ? 0 : vie);
-	}
-	
 	/**
 	 * Permet de dire si le soldat est en train de se déplacer ou non
 	 * @param value Vrai si le soldat est en train de se déplacer, faux sinon
@@ -80,7 +93,7 @@ public abstract class Soldat extends Charset implements ISoldat
 		return this.seDeplace;
 	}
 	
-	/** Mettre le statut du personnage à mort.
+	/** Mettre le statut du personnage à mort, ce qui lance son animation de mort.
 	 * @param mort Vrai si le personnage est mort, faux sinon
 	 */
 	public void setMort(boolean mort) {
@@ -88,7 +101,8 @@ public abstract class Soldat extends Charset implements ISoldat
 			this.mort = true;
 			this.direction = Direction.HAUT;
 			this.animation = 0;
-		    this.timer.setDelay(350);
+			this.delai = 350;
+			anime();
 		}
 		else{
 			this.mort = false;
@@ -107,120 +121,135 @@ public abstract class Soldat extends Charset implements ISoldat
 	 * @return Vrai si il a déjà joué, faux sinon
 	 */
 	public boolean getAJoue() {
-		return tourEffectue;
+		return unite.getAJoue();
 	}
 	
 	/**
-	 * Permet de dire si le soldat a joué ou non
-	 * @param value Vrai si le soldat a déjà joué, faux sinon
-	 */
-	public void setAJoue(boolean value) {
-		tourEffectue = value;
-	}
-	
-	/**
-	 * Permet de récupérer la position courante du soldat
-	 * @return La position courante du soldat
+	 * Permet de récupérer la position affichée du soldat
+	 * @return La position affichée du soldat
 	 */
 	public Position getPosition() {
 		return position;
 	}
 
 	/** 
-	 * Permet de changer la position courante du soldat
+	 * Permet de changer la position affichée du soldat
 	 * @param position La nouvelle position du soldat
 	 */
 	public void setPosition(Position position) {
 		this.position = position;
 	}
 	
-    
 	/**
-	 * Fonction permettant de créer un combat entre 2 soldats
-	 * @param soldat Instance du soldat à attaquer
-	 * @param distance Distance séparant soldat1 de soldat2
-	 * @return -1 si le soldat qui attaque est mort, 1 si le soldat attaqué est mort, 0 sinon
+	 * Lance l'animation de déplacement du soldat d'une case vers une case voisine
+	 * @param depart Numéro de la case de départ
+	 * @param arrivee Numéro de la case d'arrivée
 	 */
-	public int combat(Soldat soldat, int distance)
-	{	
-		int valeur_retour = 0;
-		
-		/* On joue le bruitage approprié */
-		if(distance > 1)
-			Son.joueArc();
-		else
-			Son.joueEpee();
-		
-		/* On calcule un dégat aléatoire, selon si on est côté à côté ou éloigné du soldat attaque */
-		int degat = (distance == 1) ? Aleatoire.nombreAleatoire(1, this.getPuissance()) : this.getTir();
-		int numCase = soldat.position.getNumCase();
-		
-		Infobulle.newMessage(numCase, "-" + degat, IConfig.MESSAGE_NEGATIF, IConfig.MOUV_INFOBULLE_BAS, 30);
-				
-		/* On met à jour la nouvelle vie du soldat attaqué */
-		int vie = soldat.getVie() - degat;
-		soldat.setVie(vie);
+	public void deplacer(int depart, int arrivee)
+	{
+		Direction direction = Direction.HAUT;
+		int x = 0;
+		int y = 0;
+		int dx = arrivee % IConfig.LARGEUR_CARTE - depart % IConfig.LARGEUR_CARTE;
+		int dy = arrivee / IConfig.LARGEUR_CARTE - depart / IConfig.LARGEUR_CARTE;
 
-		/* S'il lui reste encore de la vie */
-		if(vie > 0) {
-			/* Et si le soldat a une portée assez grande pour répliquer */
-			if(soldat.getPortee() >= distance) {
-				/* Alors une réplique est crée */
-				degat = (distance == 1) ? soldat.getPuissance() / IConfig.COEFFICIENT_REDUC : soldat.getTir() / IConfig.COEFFICIENT_REDUC;
-				
-				vie = this.getVie() - degat;
-				numCase = this.position.getNumCase();
-				
-				Infobulle.newMessage(numCase, "-" + degat, IConfig.MESSAGE_NEGATIF, IConfig.MOUV_INFOBULLE_BAS, 0);
-				this.setVie(vie);
-				
-				/* Si la réplique est fatale, le soldat qui a attaqué meurt */
-				if(this.getVie() <= 0) {
-					Son.joueMourir(this);
-					this.setMort(true);
-					valeur_retour = -1;
-				}				
-			}
+		if(dx > 0) {
+			x = 2;
+			direction = Direction.DROITE;
 		}
-		else {
-			Son.joueMourir(soldat);
-			soldat.setMort(true);	
-			valeur_retour = 1;
+		else if(dx < 0) {
+			x = -2;
+			direction = Direction.GAUCHE;
 		}
-		
-		this.setAJoue(true);
-		
-		return(valeur_retour);
+		if(dy > 0) {
+			y = 2;
+			direction = Direction.BAS;
+		}
+		else if(dy < 0) {
+			y = -2;
+			direction = Direction.HAUT;
+		}
+
+		/* L'affichage part de là où il en est, même si le déplacement précédent finit juste de glisser */
+		int ax = getXAffiche();
+		int ay = getYAffiche();
+
+		position.setNumCase(depart);
+		offsetX = x;
+		offsetY = y;
+		setDirection(direction);
+		setSeDeplace(true);
+
+		precedentX = ax;
+		precedentY = ay;
+		marqueImage();
+		anime();
 	}
-	
+
+	/**
+	 * Abscisse où le soldat est affiché, en pixels : entre la position de l'image précédente du déplacement et la position courante,
+	 * selon la part écoulée de l'image courante. La vitesse affichée ne dépend donc ni du nombre d'images par seconde ni de leur régularité.
+	 * @return L'abscisse, en pixels
+	 */
+	int getXAffiche()
+	{
+		int x = position.x * IConfig.NB_PIX_CASE + offsetX;
+		return precedentX + (int)Math.round((x - precedentX) * getFraction());
+	}
+
 	/**
-	 * Méthode permettant de mettre en repos le soldat
-	 * @param afficher_message Si vrai, un message sera affiché
-	 * @return -1 si vie au max, >= 0 pour la vie récupérée
+	 * Ordonnée où le soldat est affiché, en pixels, voir getXAffiche
+	 * @return L'ordonnée, en pixels
 	 */
-	public int repos(boolean afficher_message) {
+	int getYAffiche()
+	{
+		int y = position.y * IConfig.NB_PIX_CASE + offsetY;
+		return precedentY + (int)Math.round((y - precedentY) * getFraction());
+	}
 
-		int regain = Aleatoire.nombreAleatoire(0, IConfig.REPOS_MAX);
-		int case_courante = this.getPosition().getNumCase();
-		
-		/* Si la vie du soldat est déjà au max on considere pas qu'il a joué. Cependant on lui met un message */
-		if(vie == this.getVieMax()) {
-			
-			if(!afficher_message)
-				return -1;
-			
-			Infobulle.newMessage(case_courante, "Vie au max", IConfig.MESSAGE_NEUTRE, 2, 0);
-			return -1;
+	/**
+	 * Relève si l'affichage du soldat a changé depuis le dernier relevé : déplacement, image d'animation, direction, vie...
+	 * @param zone_modifiee Zone à redessiner, agrandie de l'ancienne zone du soldat et de la nouvelle si l'affichage a changé
+	 * @return Vrai si l'affichage a changé
+	 */
+	boolean releveZone(Rectangle zone_modifiee)
+	{
+		int etat = animation | direction.getValeur() << 8 | (estVisible ? 1 << 11 : 0) | (mort ? 1 << 12 : 0) | getVie() << 13;
+
+		Rectangle zone = zoneCourante;
+		int ax = getXAffiche();
+		int ay = getYAffiche();
+		getZone(0, 0, ax, ay, zone);
+
+		/* Barre de vie, voir dessineVie */
+		int bx = ax + IConfig.NB_PIX_CASE;
+		int by = ay + 2;
+		if(zone.isEmpty())
+			zone.setBounds(bx, by, 5, IConfig.NB_PIX_CASE - 1);
+		else {
+			zone.add(bx, by);
+			zone.add(bx + 5, by + IConfig.NB_PIX_CASE - 1);
 		}
 
-		/* Définition du message et de sa couleur */
-		Infobulle.newMessage(case_courante, "+ " + regain, IConfig.MESSAGE_POSITIF, IConfig.MOUV_INFOBULLE_HAUT, 0);
+		if(etat == etatAffiche && zone.equals(zoneAffichee))
+			return false;
 
-		/* On met a jour sa vie et on indique qu'il a joué */
-		this.setVie(vie + regain);
-		this.setAJoue(true);
-		
-		return regain;
+		Infobulle.ajouteZone(zone_modifiee, zoneAffichee);
+		Infobulle.ajouteZone(zone_modifiee, zone);
+
+		zoneCourante = zoneAffichee;
+		zoneAffichee = zone;
+		etatAffiche = etat;
+		return true;
+	}
+
+	/**
+	 * Zone où le soldat était dessiné au dernier relevé des modifications
+	 * @return La zone, en pixels
+	 */
+	Rectangle getZoneAffichee()
+	{
+		return zoneAffichee;
 	}
 
 	/** Dessine la barre de vie du Héros.
@@ -238,17 +267,17 @@ public abstract class Soldat extends Charset implements ISoldat
 		else
 			color = Color.red;
 		
-		int dx = this.position.x * IConfig.NB_PIX_CASE + IConfig.NB_PIX_CASE;
-		int dy = this.position.y * IConfig.NB_PIX_CASE + 2;
+		int dx = getXAffiche() + IConfig.NB_PIX_CASE;
+		int dy = getYAffiche() + 2;
 		
 		/* Contenant. */
 		g.setColor(Color.black);
-		g.drawRect(dx + offsetX, dy + offsetY, 4, IConfig.NB_PIX_CASE - 2);
+		g.drawRect(dx, dy, 4, IConfig.NB_PIX_CASE - 2);
 		
 		/* Contenu. */
-		int offset = (int)(IConfig.NB_PIX_CASE * vie / (double)this.getVieMax());
+		int offset = (int)(IConfig.NB_PIX_CASE * getVie() / (double)this.getVieMax());
 		g.setColor(color);
-		g.fillRect(dx + 1 + offsetX , dy + 1 + offsetY + IConfig.NB_PIX_CASE - offset, 3, offset - 3);
+		g.fillRect(dx + 1, dy + 1 + IConfig.NB_PIX_CASE - offset, 3, offset - 3);
 
 	}
 	
@@ -258,7 +287,7 @@ public abstract class Soldat extends Charset implements ISoldat
 	 */
 	public String toString(){
 		String chaine = this.getNom() + " " + getPosition().toString();
-		chaine += "\nVie: " + this.vie + " /" + this.getVieMax();
+		chaine += "\nVie: " + getVie() + " /" + this.getVieMax();
 		chaine += "\nPuissance: " + this.getPuissance();
 		chaine += "\nTir: " + this.getTir();
 		chaine += "\nPortee: " + this.getPortee();
@@ -266,13 +295,16 @@ public abstract class Soldat extends Charset implements ISoldat
 		return chaine;
 	}
 	
-	/** Met à jour le statut du soldat.
-	 *  @param e Évènement appellant, le timer.
+	/** Met à jour le statut du soldat, appelé par l'horloge.
+	 *  @return Vrai tant que le soldat se déplace ou que son animation de mort n'est pas finie.
 	 */
-    public void actionPerformed(ActionEvent e)
+    protected boolean avance()
     {    
-    	/* Mise à jour du déplacement. */
+    	/* Mise à jour du déplacement, l'affichage glissant depuis la position actuelle. */
     	if(seDeplace) {
+    		precedentX = position.x * IConfig.NB_PIX_CASE + offsetX;
+    		precedentY = position.y * IConfig.NB_PIX_CASE + offsetY;
+
     		if(offsetX > 0)      
     			offsetX += IConfig.VITESSE_DEPLACEMENT;
     		else if(offsetX < 0) 
@@ -323,5 +355,7 @@ public abstract class Soldat extends Charset implements ISoldat
     				animation = 0;
     		}
         }
+        
+        return seDeplace || (mort && estVisible);
 	}
 }
@@ -110,7 +110,7 @@ public final class Son {
 			musiqueEvenement = null;
 		}
 		
-		int num = 1 + (int)(Math.random() * (IConfig.NOMBRE_MUSIQUE_ARRIERE_PLAN));
+		int num = Aleatoire.nombreAleatoire(1, IConfig.NOMBRE_MUSIQUE_ARRIERE_PLAN);
 		try {
 			/* On charge une autre séquence */
 			sequence = MidiSystem.getSequence(this.getClass().getResource(IConfig.CHEMIN_MUSIQUE + "arriere_plan" + num + ".mid"));
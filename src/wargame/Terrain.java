@@ -0,0 +1,46 @@
+package wargame;
+
+/**
+ * Propriétés des tiles du tileset (praticabilité, traversabilité).
+ * Ne dépend pas de l'image du tileset : utilisable par le moteur sans affichage.
+ */
+final class Terrain
+{
+	/** Largeur du tileset en nombre de cases. */
+	static final int LARGEUR_TILESET = 8;
+
+	/** Tiles d'herbe. */
+	static final char HERBE_1 = 0, HERBE_2 = 1, HERBE_3 = 8, HERBE_4 = 9;
+
+	/** Premier tile de rocher (les rochers sont les 4 tiles suivants). */
+	static final char ROCHER = 16;
+
+	/** Nombre de rochers différents. */
+	static final int NB_ROCHERS = 4;
+
+	/** Tiles praticables, un bit par tile : l'herbe. */
+	private static final long PRATICABLE = (1L << HERBE_1) | (1L << HERBE_2) | (1L << HERBE_3) | (1L << HERBE_4);
+
+	/** Tiles traversables, un bit par tile : l'herbe et l'eau. */
+	private static final long TRAVERSABLE = PRATICABLE | (1L << 24) | (1L << 25) | (1L << 32) | (1L << 33);
+
+	private Terrain() {}
+
+	/** Teste si un tile est praticable.
+	 * @param num_tile Numéro du tile.
+	 * @return true si une personne peut marcher dessus, false sinon.
+	 */
+	static boolean estPraticable(int num_tile)
+	{
+		return num_tile >= 0 && num_tile < Long.SIZE && ((PRATICABLE >>> num_tile) & 1L) != 0;
+	}
+
+	/** Teste si un tile est traversable.
+	 * @param num_tile Numéro du tile.
+	 * @return true si une flèche peut le traverser, false sinon.
+	 */
+	static boolean estTraversable(int num_tile)
+	{
+		return num_tile >= 0 && num_tile < Long.SIZE && ((TRAVERSABLE >>> num_tile) & 1L) != 0;
+	}
+}
@@ -0,0 +1,162 @@
+package wargame;
+
+/**
+ * Classe représentant un soldat (héros ou monstre) dans le moteur de jeu.
+ * Ne contient que l'état du soldat, sans image ni animation : cet état est rangé dans l'armée de la partie,
+ * l'unité n'en est que la poignée.
+ */
+public class Unite implements ISoldat
+{
+	private static final long serialVersionUID = -5218300924463912735L;
+
+	/** Armée contenant l'état de l'unité. */
+	private final Armee armee;
+
+	/** Numéro de l'unité dans son armée. */
+	private final int indice;
+
+	/**
+	 * Constructeur d'une poignée sur une unité de l'armée (voir Armee.ajoute)
+	 * @param armee Armée contenant l'état de l'unité
+	 * @param indice Numéro de l'unité dans l'armée
+	 */
+	Unite(Armee armee, int indice)
+	{
+		this.armee = armee;
+		this.indice = indice;
+	}
+
+	/**
+	 * Permet de récupérer le numéro de l'unité dans son armée
+	 * @return Le numéro, de 0 au nombre d'unités créées dans la partie
+	 */
+	int getIndice()
+	{
+		return indice;
+	}
+
+	/**
+	 * Permet de savoir si l'unité est un héros
+	 * @return Vrai si c'est un héros, faux si c'est un monstre
+	 */
+	public boolean estHeros()
+	{
+		return armee.estHeros(indice);
+	}
+
+	/**
+	 * Permet de récupérer le type du héros
+	 * @return Le type du héros, null s'il s'agit d'un monstre
+	 */
+	public TypesH getTypeHeros()
+	{
+		return armee.getTypeHeros(indice);
+	}
+
+	/**
+	 * Permet de récupérer le type du monstre
+	 * @return Le type du monstre, null s'il s'agit d'un héros
+	 */
+	public TypesM getTypeMonstre()
+	{
+		return armee.getTypeMonstre(indice);
+	}
+
+	public int getPortee(){
+		return armee.getPortee(indice);
+	}
+
+	public int getPuissance(){
+		return armee.getPuissance(indice);
+	}
+
+	public int getTir(){
+		return armee.getTir(indice);
+	}
+
+	public String getNom(){
+		return armee.getNom(indice);
+	}
+
+	public int getVieMax(){
+		return armee.getVieMax(indice);
+	}
+
+	/**
+	 * Permet de récupérer le nombre de points de vie de l'unité
+	 * @return Le nombre de points de vie de l'unité
+	 */
+	public int getVie()
+	{
+		return armee.getVie(indice);
+	}
+
+	/**
+	 * Permet de spécifier un nouveau nombre de points de vie, borné entre 0 et la vie maximale
+	 * @param vie Le nombre de points de vie
+	 */
+	public void setVie(int vie)
+	{
+		armee.setVie(indice, vie);
+	}
+
+	/**
+	 * Permet de récupérer le pourcentage des points de vie de l'unité
+	 * @return Le pourcentage des points de vie de l'unité
+	 */
+	public double getPourcentageVie(){
+		return armee.getPourcentageVie(indice);
+	}
+
+	/**
+	 * Permet de récupérer le numéro de la case de l'unité
+	 * @return Le numéro de la case, -1 si l'unité n'est pas placée
+	 */
+	public int getCase()
+	{
+		return armee.getCase(indice);
+	}
+
+	/**
+	 * Permet de changer la case de l'unité. Seul le moteur déplace les unités.
+	 * @param num_case Le numéro de la nouvelle case
+	 */
+	void setCase(int num_case)
+	{
+		armee.setCase(indice, num_case);
+	}
+
+	/** Teste si l'unité est morte.
+	 * @return true si morte, false sinon.
+	 */
+	public boolean estMort()
+	{
+		return armee.estMort(indice);
+	}
+
+	/** Mettre le statut de l'unité à mort.
+	 * @param mort Vrai si l'unité est morte, faux sinon
+	 */
+	void setMort(boolean mort)
+	{
+		armee.setMort(indice, mort);
+	}
+
+	/**
+	 * Teste si l'unité a déjà joué
+	 * @return Vrai si elle a déjà joué, faux sinon
+	 */
+	public boolean getAJoue()
+	{
+		return armee.aJoue(indice);
+	}
+
+	/**
+	 * Permet de dire si l'unité a joué ou non
+	 * @param value Vrai si l'unité a déjà joué, faux sinon
+	 */
+	public void setAJoue(boolean value)
+	{
+		armee.setAJoue(indice, value);
+	}
+}